@@ -0,0 +1,158 @@
+package com.clt.dialogos.httpplugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded background queue for fire-and-forget requests. The dialog thread only
+ * enqueues an already prepared request; a small pool of worker threads sends it.
+ */
+class AsyncDispatcher {
+
+    enum OverflowPolicy {
+        DROP, BLOCK, ERROR;
+
+        static OverflowPolicy fromProperty(String value) {
+            if ("block".equals(value)) {
+                return BLOCK;
+            } else if ("error".equals(value)) {
+                return ERROR;
+            }
+            return DROP;
+        }
+    }
+
+    private static final long SHUTDOWN_GRACE_MILLIS = 2000;
+
+    /**
+     * A queued request together with the options of the node that sent it.
+     */
+    private static final class Delivery {
+        final HttpHandler.PreparedRequest request;
+        final RequestOptions options;
+
+        Delivery(HttpHandler.PreparedRequest request, RequestOptions options) {
+            this.request = request;
+            this.options = options;
+        }
+    }
+
+    private final HttpPluginRuntime runtime;
+    private final BlockingQueue<Delivery> queue;
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    AsyncDispatcher(HttpPluginRuntime runtime, int queueSize, int workerCount) {
+        this.runtime = runtime;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+
+        int count = Math.max(1, workerCount);
+        for (int i = 0; i < count; i++) {
+            Thread worker = new Thread(this::drain, "http-plugin-async-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Hands a request to the background workers. Returns false if the request was
+     * not accepted and the caller should take its error edge.
+     */
+    boolean submit(HttpHandler.PreparedRequest request, RequestOptions options, OverflowPolicy policy) {
+        if (!running) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        Delivery delivery = new Delivery(request, options);
+        boolean accepted;
+        if (policy == OverflowPolicy.BLOCK) {
+            try {
+                queue.put(delivery);
+                accepted = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = queue.offer(delivery);
+        }
+
+        if (accepted) {
+            queued.incrementAndGet();
+            return true;
+        }
+
+        dropped.incrementAndGet();
+        System.err.println("Async HTTP queue is full, dropped " + request.method + " " + request.url);
+        return policy != OverflowPolicy.ERROR;
+    }
+
+    private void drain() {
+        while (running || !queue.isEmpty()) {
+            Delivery delivery;
+            try {
+                delivery = queue.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (delivery == null) {
+                continue;
+            }
+
+            HttpHandler.PreparedRequest request = delivery.request;
+            try {
+                HttpHandler.HttpResult result = HttpHandler.execute(runtime, request, delivery.options);
+                if (result.success) {
+                    sent.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                    System.err.println("Async HTTP request failed: " + request.method + " " + request.url + " (" + result.errorMessage + ")");
+                }
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                System.err.println("Async HTTP request failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops accepting requests and gives the workers a short grace period to
+     * send what is still queued.
+     */
+    void shutdown() {
+        running = false;
+        long deadline = System.currentTimeMillis() + SHUTDOWN_GRACE_MILLIS;
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        int abandoned = queue.size();
+        queue.clear();
+        dropped.addAndGet(abandoned);
+    }
+
+    @Override
+    public String toString() {
+        return "queued=" + queued.get() + ", sent=" + sent.get() + ", failed=" + failed.get()
+            + ", dropped=" + dropped.get() + ", pending=" + queue.size();
+    }
+}
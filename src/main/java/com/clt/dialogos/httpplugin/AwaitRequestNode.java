@@ -0,0 +1,199 @@
+package com.clt.dialogos.httpplugin;
+
+import com.clt.dialogos.plugin.PluginRuntime;
+import com.clt.diamant.*;
+import com.clt.diamant.graph.Graph;
+import com.clt.diamant.graph.Node;
+import com.clt.diamant.graph.nodes.NodeExecutionException;
+import com.clt.script.exp.Value;
+import com.clt.script.exp.values.StringValue;
+import com.clt.xml.XMLReader;
+import com.clt.xml.XMLWriter;
+import org.xml.sax.SAXException;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Waits for a request started by a {@link StartRequestNode} and maps its response
+ * with the mappings configured there. If the request is still running when the
+ * timeout expires, the handle stays valid, so that a later node can wait again.
+ */
+public class AwaitRequestNode extends Node {
+    private static final String HANDLE_VAR = "handleVariable";
+    private static final String AWAIT_TIMEOUT = "awaitTimeout";
+
+    public AwaitRequestNode() {
+        this.addEdge("Success");
+        this.addEdge("Error");
+        this.addEdge("Timeout");
+
+        this.getEdge(0).setColor(new Color(0, 150, 0));
+        this.getEdge(1).setColor(new Color(200, 0, 0));
+        this.getEdge(2).setColor(new Color(230, 140, 0));
+
+        this.setProperty(HANDLE_VAR, "");
+        this.setProperty(AWAIT_TIMEOUT, "5000");
+    }
+
+    @Override
+    public void writeVoiceXML(XMLWriter w, IdMap uid_map) {}
+
+    public static String getNodeTypeName(Class<?> c) {
+        return "Http Await Request Node";
+    }
+
+    @Override
+    public Node execute(WozInterface comm, InputCenter input, ExecutionLogger logger) {
+        logNode(logger);
+        HttpPluginRuntime.nodeEntered(this, comm);
+        String handle = null;
+        PendingRequests pendingRequests = null;
+        try {
+            Value handleValue = getSlot(String.valueOf(this.getProperty(HANDLE_VAR)).trim()).getValue();
+            handle = handleValue instanceof StringValue ? ((StringValue) handleValue).getString() : String.valueOf(handleValue);
+            HttpPluginRuntime runtime = getHttpRuntime(comm);
+            pendingRequests = (runtime != null ? runtime : HttpPluginRuntime.getFallback()).getPendingRequests();
+            PendingRequests.Pending pending = pendingRequests.get(handle);
+            if (pending == null) {
+                System.err.println("No started request with handle '" + handle + "' (already awaited or never started)");
+                return getEdge(1).getTarget();
+            }
+
+            long timeout = RequestOptions.parseLong(this.getProperty(AWAIT_TIMEOUT), 5000);
+            long waitStart = System.currentTimeMillis();
+            HttpHandler.HttpResult result;
+            try {
+                result = pending.result.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                System.err.println("✗ Request " + handle + " still running after waiting " + timeout + " ms: " + pending.description);
+                return getTimeoutTarget();
+            }
+            pendingRequests.remove(handle);
+            long waited = System.currentTimeMillis() - waitStart;
+            System.out.println("Request " + handle + " took " + (pending.finishedAt - pending.startedAt) + " ms, of which the dialog waited "
+                + waited + " ms: " + pending.description);
+
+            if (!result.success) {
+                System.err.println("HTTP request failed: " + result.errorMessage);
+                return getEdge(1).getTarget();
+            }
+            pending.definition.mapResponse(result, this::getSlot);
+            return getEdge(0).getTarget();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return getEdge(1).getTarget();
+        } catch (ExecutionException | CancellationException e) {
+            pendingRequests.remove(handle);
+            System.err.println("Request " + handle + " failed: " + e.getMessage());
+            return getEdge(1).getTarget();
+        } catch (Exception e) {
+            System.err.println("Error in AwaitRequestNode: " + e.getMessage());
+            return getEdge(1).getTarget();
+        }
+    }
+
+    /**
+     * The timeout edge is optional; graphs that do not connect it take the error edge.
+     */
+    private Node getTimeoutTarget() {
+        if (numEdges() > 2 && getEdge(2).getTarget() != null) {
+            return getEdge(2).getTarget();
+        }
+        return getEdge(1).getTarget();
+    }
+
+    private Slot getSlot(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
+        }
+        throw new NodeExecutionException(this, "Unable to find variable: " + name);
+    }
+
+    private HttpPluginRuntime getHttpRuntime(WozInterface comm) {
+        PluginRuntime runtime = getPluginRuntime(HttpPlugin.class, comm);
+        return runtime instanceof HttpPluginRuntime ? (HttpPluginRuntime) runtime : null;
+    }
+
+    @Override
+    public JComponent createEditorComponent(Map<String, Object> properties) {
+        JPanel mainPanel = new JPanel(new BorderLayout());
+
+        JPanel awaitPanel = new JPanel(new GridBagLayout());
+        awaitPanel.setBorder(BorderFactory.createTitledBorder("Await"));
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(2, 2, 2, 2);
+
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.weightx = 0;
+        awaitPanel.add(new JLabel("Handle Variable:"), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JTextField handleField = new JTextField(properties.getOrDefault(HANDLE_VAR, "").toString(), 20);
+        handleField.setToolTipText("Variable that the start node stored the handle in");
+        handleField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void update() {
+                properties.put(HANDLE_VAR, handleField.getText());
+            }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { update(); }
+        });
+        awaitPanel.add(handleField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.weightx = 0;
+        awaitPanel.add(new JLabel("Wait at most (ms):"), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        int timeout = (int) RequestOptions.parseLong(properties.get(AWAIT_TIMEOUT), 5000);
+        JSpinner timeoutSpinner = new JSpinner(new SpinnerNumberModel(Math.max(0, Math.min(timeout, 600000)), 0, 600000, 500));
+        timeoutSpinner.setToolTipText("0 only takes a response that has already arrived");
+        timeoutSpinner.addChangeListener(e -> properties.put(AWAIT_TIMEOUT, timeoutSpinner.getValue().toString()));
+        awaitPanel.add(timeoutSpinner, gbc);
+
+        mainPanel.add(awaitPanel, BorderLayout.NORTH);
+        return mainPanel;
+    }
+
+    @Override
+    protected void writeAttributes(XMLWriter out, IdMap uid_map) {
+        Graph.printAtt(out, HANDLE_VAR, this.getProperty(HANDLE_VAR).toString());
+        Graph.printAtt(out, AWAIT_TIMEOUT, this.getProperty(AWAIT_TIMEOUT).toString());
+    }
+
+    @Override
+    protected void readAttribute(XMLReader r, String name, String value, IdMap uid_map) throws SAXException {
+        if (name.equals(HANDLE_VAR) || name.equals(AWAIT_TIMEOUT)) {
+            this.setProperty(name, value);
+        } else {
+            super.readAttribute(r, name, value, uid_map);
+        }
+    }
+
+    @Override
+    public Color getPortColor(int portNumber) {
+        if (portNumber == 0) {
+            return new Color(0, 150, 0); // Success - green
+        } else if (portNumber == 1) {
+            return new Color(200, 0, 0); // Error - red
+        } else if (portNumber == 2) {
+            return new Color(230, 140, 0); // Timeout - orange
+        }
+        return super.getPortColor(portNumber);
+    }
+}
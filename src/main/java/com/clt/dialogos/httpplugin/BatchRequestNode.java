@@ -0,0 +1,444 @@
+package com.clt.dialogos.httpplugin;
+
+import com.clt.dialogos.plugin.PluginRuntime;
+import com.clt.diamant.*;
+import com.clt.diamant.graph.Graph;
+import com.clt.diamant.graph.Node;
+import com.clt.diamant.graph.nodes.NodeExecutionException;
+import com.clt.script.exp.Value;
+import com.clt.xml.XMLReader;
+import com.clt.xml.XMLWriter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.xml.sax.SAXException;
+
+import javax.swing.*;
+import java.awt.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Sends one request per element of a list slot, e.g. to fetch the details of each
+ * order of a previous response. The element is stored in a loop variable while the
+ * request for it is resolved, so it can be used in the path, query and body mappings.
+ * At most a configured number of requests are on the wire at once, and the results are
+ * collected into a list slot in the order of the elements. A failed element leaves a
+ * null entry and its error in the optional errors list; it does not stop the batch.
+ */
+public class BatchRequestNode extends Node {
+    private static final String LIST_VAR = "listVariable";
+    private static final String ITEM_VAR = "itemVariable";
+    private static final String OUTPUT_VAR = "outputVariable";
+    private static final String ERRORS_VAR = "errorsVariable";
+    private static final String PARALLELISM = "parallelism";
+    private static final String REQUEST_TIMEOUT = "requestTimeout";
+
+    private static final String[] REQUEST_KEYS = {
+        RequestDefinition.URL, RequestDefinition.HTTP_METHOD, RequestDefinition.PATH_VARIABLES,
+        RequestDefinition.QUERY_VARIABLES, RequestDefinition.BODY_VARIABLES, RequestDefinition.AUTH_TYPE,
+        RequestDefinition.AUTH_VALUE, RequestDefinition.CUSTOM_HEADERS, RequestDefinition.BODY_MODE,
+        RequestDefinition.RAW_BODY, RequestDefinition.TRUST_ALL_CERTS, RequestDefinition.RESPONSE_MODE,
+        RequestDefinition.RESPONSE_MAPPINGS, RequestDefinition.RESPONSE_AS_STRING
+    };
+    private static final String[] BATCH_KEYS = {
+        LIST_VAR, ITEM_VAR, OUTPUT_VAR, ERRORS_VAR, PARALLELISM, REQUEST_TIMEOUT
+    };
+
+    private static final String[] HTTP_METHODS = {"GET", "POST", "PUT", "DELETE", "PATCH"};
+    private static final String[] AUTH_TYPES = {"None", "Bearer Token", "Basic Auth", "API Key"};
+
+    public BatchRequestNode() {
+        this.addEdge("Success");
+        this.addEdge("Partial");
+        this.addEdge("Failure");
+
+        this.getEdge(0).setColor(new Color(0, 150, 0));
+        this.getEdge(1).setColor(new Color(230, 140, 0));
+        this.getEdge(2).setColor(new Color(200, 0, 0));
+
+        this.setProperty(RequestDefinition.URL, "");
+        this.setProperty(RequestDefinition.HTTP_METHOD, "GET");
+        this.setProperty(RequestDefinition.PATH_VARIABLES, "");
+        this.setProperty(RequestDefinition.QUERY_VARIABLES, "");
+        this.setProperty(RequestDefinition.BODY_VARIABLES, "");
+        this.setProperty(RequestDefinition.AUTH_TYPE, "None");
+        this.setProperty(RequestDefinition.AUTH_VALUE, "");
+        this.setProperty(RequestDefinition.CUSTOM_HEADERS, "");
+        this.setProperty(RequestDefinition.BODY_MODE, "mapping");
+        this.setProperty(RequestDefinition.RAW_BODY, "");
+        this.setProperty(RequestDefinition.TRUST_ALL_CERTS, "false");
+        this.setProperty(RequestDefinition.RESPONSE_MODE, "single");
+        this.setProperty(RequestDefinition.RESPONSE_MAPPINGS, "");
+        this.setProperty(RequestDefinition.RESPONSE_AS_STRING, "false");
+        this.setProperty(LIST_VAR, "");
+        this.setProperty(ITEM_VAR, "");
+        this.setProperty(OUTPUT_VAR, "");
+        this.setProperty(ERRORS_VAR, "");
+        this.setProperty(PARALLELISM, "4");
+        this.setProperty(REQUEST_TIMEOUT, "10000");
+    }
+
+    @Override
+    public void writeVoiceXML(XMLWriter w, IdMap uid_map) {}
+
+    public static String getNodeTypeName(Class<?> c) {
+        return "Http Batch Request Node";
+    }
+
+    @Override
+    public Node execute(WozInterface comm, InputCenter input, ExecutionLogger logger) {
+        logNode(logger);
+        HttpPluginRuntime.nodeEntered(this, comm);
+        try {
+            RequestDefinition definition = RequestDefinition.fromProperties(this::getProperty);
+            Object list = JsonConverter.valueToJson(getSlot(property(LIST_VAR)).getValue());
+            if (!(list instanceof JSONArray)) {
+                System.err.println("BatchRequestNode: " + property(LIST_VAR) + " is not a list");
+                return getEdge(2).getTarget();
+            }
+            JSONArray elements = (JSONArray) list;
+            Slot itemSlot = getSlot(property(ITEM_VAR));
+            Slot outputSlot = getSlot(property(OUTPUT_VAR));
+            Slot errorsSlot = property(ERRORS_VAR).isEmpty() ? null : getSlot(property(ERRORS_VAR));
+
+            HttpPluginRuntime runtime = getHttpRuntime(comm);
+            HttpPluginRuntime effectiveRuntime = runtime != null ? runtime : HttpPluginRuntime.getFallback();
+            RequestOptions options = RequestOptions.defaults()
+                .withTimeout(Duration.ofMillis(Math.max(1, RequestOptions.parseLong(this.getProperty(REQUEST_TIMEOUT), 10000))))
+                .withDeadline(effectiveRuntime.getTurnDeadline());
+            int parallelism = (int) Math.max(1, RequestOptions.parseLong(this.getProperty(PARALLELISM), 4));
+
+            long start = System.currentTimeMillis();
+            List<CompletableFuture<HttpHandler.HttpResult>> futures =
+                sendAll(effectiveRuntime, definition, options, elements, itemSlot, parallelism);
+
+            JSONArray results = new JSONArray();
+            JSONArray errors = new JSONArray();
+            int successes = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                HttpHandler.HttpResult result = await(futures.get(i));
+                String error = result.success ? null : result.errorMessage;
+                Object value = JSONObject.NULL;
+                if (result.success) {
+                    try {
+                        value = toResult(definition, result);
+                        successes++;
+                    } catch (Exception e) {
+                        error = "Invalid response: " + e.getMessage();
+                    }
+                }
+                if (error != null) {
+                    System.err.println("Batch request #" + (i + 1) + " failed: " + error);
+                }
+                results.put(value);
+                errors.put(error == null ? "" : error);
+            }
+
+            outputSlot.setValue(Value.fromJson(results));
+            if (errorsSlot != null) {
+                errorsSlot.setValue(Value.fromJson(errors));
+            }
+            System.out.println("Batch finished: " + successes + " of " + elements.length() + " requests succeeded in "
+                + (System.currentTimeMillis() - start) + " ms (at most " + parallelism + " at once)");
+
+            if (successes == elements.length()) {
+                return getEdge(0).getTarget();
+            } else if (successes > 0) {
+                return getEdge(1).getTarget();
+            } else {
+                return getEdge(2).getTarget();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return getEdge(2).getTarget();
+        } catch (Exception e) {
+            System.err.println("Error in BatchRequestNode: " + e.getMessage());
+            return getEdge(2).getTarget();
+        }
+    }
+
+    /**
+     * Resolves the request of each element on the dialog thread, with the element in
+     * the loop variable, and sends it as soon as fewer than {@code parallelism}
+     * requests are running. The loop variable gets its previous value back afterwards.
+     */
+    private List<CompletableFuture<HttpHandler.HttpResult>> sendAll(HttpPluginRuntime runtime, RequestDefinition definition,
+                                                                   RequestOptions options, JSONArray elements, Slot itemSlot,
+                                                                   int parallelism) throws InterruptedException {
+        Semaphore running = new Semaphore(parallelism);
+        List<CompletableFuture<HttpHandler.HttpResult>> futures = new ArrayList<>();
+        Value previous = itemSlot.getValue();
+        try {
+            for (int i = 0; i < elements.length(); i++) {
+                HttpHandler.PreparedRequest request;
+                try {
+                    itemSlot.setValue(JsonConverter.jsonToValue(elements.get(i)));
+                    request = definition.prepare(this::getSlotOrNull);
+                } catch (Exception e) {
+                    futures.add(CompletableFuture.completedFuture(
+                        new HttpHandler.HttpResult(false, null, 0, "Request could not be prepared: " + e.getMessage())));
+                    continue;
+                }
+                running.acquire();
+                System.out.println("Batch request #" + (i + 1) + ": " + request.method + " " + request.url);
+                CompletableFuture<HttpHandler.HttpResult> future = CompletableFuture.supplyAsync(
+                    () -> HttpHandler.execute(runtime, request, options), runtime.getTaskExecutor());
+                future.whenComplete((result, error) -> running.release());
+                futures.add(future);
+            }
+        } finally {
+            itemSlot.setValue(previous);
+        }
+        return futures;
+    }
+
+    private static HttpHandler.HttpResult await(CompletableFuture<HttpHandler.HttpResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return HttpHandler.HttpResult.failure(0, cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Returns the list entry for a response: the whole response in single mode, or in
+     * multiple mode an object with a field per mapping, e.g. {@code price=price}.
+     */
+    private static Object toResult(RequestDefinition definition, HttpHandler.HttpResult result) {
+        if ("single".equals(definition.get(RequestDefinition.RESPONSE_MODE))
+            && Boolean.parseBoolean(definition.get(RequestDefinition.RESPONSE_AS_STRING))) {
+            return result.response == null ? "" : result.response;
+        }
+        Object payload = result.payload != null ? result.payload : RequestDefinition.parseResponsePayload(result.response);
+        Map<String, String> mappings = RequestDefinition.parseMappingsToMap(definition.get(RequestDefinition.RESPONSE_MAPPINGS));
+        if ("single".equals(definition.get(RequestDefinition.RESPONSE_MODE)) || mappings.isEmpty()) {
+            return payload;
+        }
+        Object json = payload instanceof JSONArray ? RequestDefinition.wrapArrayResponse((JSONArray) payload) : payload;
+        JSONObject fields = new JSONObject();
+        for (Map.Entry<String, String> mapping : mappings.entrySet()) {
+            Object value = JsonConverter.resolvePath(json, mapping.getKey());
+            fields.put(mapping.getValue(), value == null ? JSONObject.NULL : value);
+        }
+        return fields;
+    }
+
+    private String property(String key) {
+        Object value = this.getProperty(key);
+        return value == null ? "" : value.toString().trim();
+    }
+
+    private Slot getSlot(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
+        }
+        throw new NodeExecutionException(this, "Unable to find variable: " + name);
+    }
+
+    private Slot getSlotOrNull(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
+        }
+        return null;
+    }
+
+    private HttpPluginRuntime getHttpRuntime(WozInterface comm) {
+        PluginRuntime runtime = getPluginRuntime(HttpPlugin.class, comm);
+        return runtime instanceof HttpPluginRuntime ? (HttpPluginRuntime) runtime : null;
+    }
+
+    @Override
+    public JComponent createEditorComponent(Map<String, Object> properties) {
+        JPanel mainPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.anchor = GridBagConstraints.NORTHWEST;
+        gbc.gridx = 0;
+        gbc.weightx = 1.0;
+
+        gbc.gridy = 0;
+        mainPanel.add(createBatchPanel(properties), gbc);
+
+        gbc.gridy = 1;
+        mainPanel.add(createRequestPanel(properties), gbc);
+
+        gbc.gridy = 2;
+        mainPanel.add(createResultPanel(properties), gbc);
+
+        // push sections to the top
+        gbc.gridy = 99;
+        gbc.weighty = 1.0;
+        mainPanel.add(Box.createVerticalGlue(), gbc);
+
+        return new JScrollPane(mainPanel);
+    }
+
+    private JPanel createBatchPanel(Map<String, Object> properties) {
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBorder(BorderFactory.createTitledBorder("Batch"));
+        int row = 0;
+
+        addTextRow(panel, row++, "List Variable:", LIST_VAR, "List with one element per request", properties);
+        addTextRow(panel, row++, "Loop Variable:", ITEM_VAR,
+            "Holds the current element while its request is built; use it in the mappings below", properties);
+        addTextRow(panel, row++, "Output Variable:", OUTPUT_VAR,
+            "Receives a list with one result per element, null for failed requests", properties);
+        addTextRow(panel, row++, "Errors Variable:", ERRORS_VAR,
+            "Optional: receives a list with the error of each element, empty if it succeeded", properties);
+        addSpinnerRow(panel, row++, "Parallel requests:", PARALLELISM, 4, 1, 64, 1,
+            "How many requests may be on the wire at the same time", properties);
+        addSpinnerRow(panel, row, "Timeout per request (ms):", REQUEST_TIMEOUT, 10000, 100, 600000, 500,
+            "A request without a response after this time counts as failed", properties);
+
+        return panel;
+    }
+
+    private JPanel createRequestPanel(Map<String, Object> properties) {
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBorder(BorderFactory.createTitledBorder("Request"));
+        int row = 0;
+
+        addComboRow(panel, row++, "HTTP Method:", HTTP_METHODS, HTTP_METHODS, RequestDefinition.HTTP_METHOD, properties);
+        addTextRow(panel, row++, "HTTP URL:", RequestDefinition.URL, "e.g. https://api.example.com/orders/{id}", properties);
+        addTextRow(panel, row++, "Path Variables:", RequestDefinition.PATH_VARIABLES, "pathVar=variable, e.g. id=order.id", properties);
+        addTextRow(panel, row++, "Query Parameters:", RequestDefinition.QUERY_VARIABLES, "paramKey=variable, ...", properties);
+        addComboRow(panel, row++, "Authorization:", AUTH_TYPES, AUTH_TYPES, RequestDefinition.AUTH_TYPE, properties);
+        addTextRow(panel, row++, "Authorization Value:", RequestDefinition.AUTH_VALUE,
+            "token, username:password or headerName:value", properties);
+        addTextRow(panel, row++, "Custom Headers:", RequestDefinition.CUSTOM_HEADERS, "Header=value, ...", properties);
+        addComboRow(panel, row++, "Body Mode:", new String[]{"mapping", "raw"}, new String[]{"mapping", "raw"},
+            RequestDefinition.BODY_MODE, properties);
+        addTextRow(panel, row++, "Body Mappings:", RequestDefinition.BODY_VARIABLES, "jsonKey=variable, ...", properties);
+        addTextRow(panel, row++, "Raw JSON Body:", RequestDefinition.RAW_BODY, "Use ${variable} to insert slot values", properties);
+        addCheckBoxRow(panel, row, "Trust all SSL certificates (insecure)", RequestDefinition.TRUST_ALL_CERTS, properties);
+
+        return panel;
+    }
+
+    private JPanel createResultPanel(Map<String, Object> properties) {
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBorder(BorderFactory.createTitledBorder("Result per Element"));
+        int row = 0;
+
+        addComboRow(panel, row++, "Result:", new String[]{"single", "multiple"},
+            new String[]{"Whole response", "Selected fields"}, RequestDefinition.RESPONSE_MODE, properties);
+        addTextRow(panel, row++, "Fields:", RequestDefinition.RESPONSE_MAPPINGS,
+            "jsonPath=field, e.g. details.price=price", properties);
+        addCheckBoxRow(panel, row, "Store whole response as String", RequestDefinition.RESPONSE_AS_STRING, properties);
+
+        return panel;
+    }
+
+    private void addTextRow(JPanel panel, int row, String label, String key, String tooltip,
+                            Map<String, Object> properties) {
+        GridBagConstraints gbc = rowConstraints(row);
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JTextField field = new JTextField(properties.getOrDefault(key, "").toString(), 25);
+        field.setToolTipText(tooltip);
+        field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void update() {
+                properties.put(key, field.getText());
+            }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { update(); }
+        });
+        panel.add(field, gbc);
+    }
+
+    private void addComboRow(JPanel panel, int row, String label, String[] values, String[] labels, String key,
+                             Map<String, Object> properties) {
+        GridBagConstraints gbc = rowConstraints(row);
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JComboBox<String> combo = new JComboBox<>(labels);
+        int selected = Arrays.asList(values).indexOf(properties.getOrDefault(key, "").toString());
+        combo.setSelectedIndex(Math.max(0, selected));
+        combo.addActionListener(e -> properties.put(key, values[combo.getSelectedIndex()]));
+        panel.add(combo, gbc);
+    }
+
+    private void addSpinnerRow(JPanel panel, int row, String label, String key, int defaultValue, int min, int max,
+                               int step, String tooltip, Map<String, Object> properties) {
+        GridBagConstraints gbc = rowConstraints(row);
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        int value = (int) RequestOptions.parseLong(properties.get(key), defaultValue);
+        JSpinner spinner = new JSpinner(new SpinnerNumberModel(Math.max(min, Math.min(value, max)), min, max, step));
+        spinner.setToolTipText(tooltip);
+        spinner.addChangeListener(e -> properties.put(key, spinner.getValue().toString()));
+        panel.add(spinner, gbc);
+    }
+
+    private void addCheckBoxRow(JPanel panel, int row, String label, String key, Map<String, Object> properties) {
+        GridBagConstraints gbc = rowConstraints(row);
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+
+        JCheckBox checkBox = new JCheckBox(label);
+        checkBox.setSelected(Boolean.parseBoolean(properties.getOrDefault(key, "false").toString()));
+        checkBox.addActionListener(e -> properties.put(key, Boolean.toString(checkBox.isSelected())));
+        panel.add(checkBox, gbc);
+    }
+
+    private static GridBagConstraints rowConstraints(int row) {
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(2, 2, 2, 2);
+        gbc.gridy = row;
+        gbc.gridx = 0;
+        gbc.weightx = 0;
+        return gbc;
+    }
+
+    @Override
+    protected void writeAttributes(XMLWriter out, IdMap uid_map) {
+        for (String key : REQUEST_KEYS) {
+            Graph.printAtt(out, key, this.getProperty(key).toString());
+        }
+        for (String key : BATCH_KEYS) {
+            Graph.printAtt(out, key, this.getProperty(key).toString());
+        }
+    }
+
+    @Override
+    protected void readAttribute(XMLReader r, String name, String value, IdMap uid_map) throws SAXException {
+        if (Arrays.asList(REQUEST_KEYS).contains(name) || Arrays.asList(BATCH_KEYS).contains(name)) {
+            this.setProperty(name, value);
+        } else {
+            super.readAttribute(r, name, value, uid_map);
+        }
+    }
+
+    @Override
+    public Color getPortColor(int portNumber) {
+        if (portNumber == 0) {
+            return new Color(0, 150, 0); // Success - green
+        } else if (portNumber == 1) {
+            return new Color(230, 140, 0); // Partial - orange
+        } else if (portNumber == 2) {
+            return new Color(200, 0, 0); // Failure - red
+        }
+        return super.getPortColor(portNumber);
+    }
+}
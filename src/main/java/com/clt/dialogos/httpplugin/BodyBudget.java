@@ -0,0 +1,55 @@
+package com.clt.dialogos.httpplugin;
+
+/**
+ * Bytes that all response bodies being received at the same time may occupy, shared
+ * by all dialogs in the JVM, so that a few misbehaving backends cannot exhaust the
+ * heap of the dialog server. Bodies reserve their bytes while they are received and
+ * release them once they have been turned into a string.
+ */
+class BodyBudget {
+    static final BodyBudget GLOBAL = new BodyBudget(256L * 1024 * 1024);
+
+    private long limit;
+    private boolean configured = false;
+    private long inUse = 0;
+    private long peak = 0;
+    private long refused = 0;
+
+    BodyBudget(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Applies the budget from the settings of a dialog. The first dialog replaces the
+     * default; after that the largest budget wins, so that starting a dialog cannot
+     * take memory away from responses that other dialogs are receiving.
+     */
+    synchronized void configure(long limit) {
+        limit = Math.max(0, limit);
+        this.limit = configured ? Math.max(this.limit, limit) : limit;
+        configured = true;
+    }
+
+    synchronized long getLimit() {
+        return limit;
+    }
+
+    synchronized boolean tryReserve(long bytes) {
+        if (inUse + bytes > limit) {
+            refused++;
+            return false;
+        }
+        inUse += bytes;
+        peak = Math.max(peak, inUse);
+        return true;
+    }
+
+    synchronized void release(long bytes) {
+        inUse = Math.max(0, inUse - bytes);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "limit=" + (limit / 1024) + " KB, peak=" + (peak / 1024) + " KB, refused=" + refused;
+    }
+}
@@ -0,0 +1,150 @@
+package com.clt.dialogos.httpplugin;
+
+/**
+ * Circuit breaker for one host. It records the outcome of the last calls in a sliding
+ * window and opens when too many of them failed or were slow. While open, requests
+ * fail immediately; after the open duration a few probe requests are let through
+ * (half-open), and the circuit closes again once all of them succeed.
+ */
+class CircuitBreaker {
+    static final int WINDOW_SIZE = 20;
+    static final int MINIMUM_CALLS = 10;
+    static final int HALF_OPEN_PROBES = 3;
+
+    enum State {CLOSED, OPEN, HALF_OPEN}
+
+    /**
+     * Cause of the result of a request that was not sent because the circuit is open.
+     */
+    static final class OpenException extends Exception {
+        OpenException(String host) {
+            super("Circuit breaker open for " + host);
+        }
+    }
+
+    private final String host;
+    private final int failureRateThreshold;
+    private final long slowCallMillis;
+    private final int slowCallRateThreshold;
+    private final long openMillis;
+
+    private final boolean[] failures = new boolean[WINDOW_SIZE];
+    private final boolean[] slowCalls = new boolean[WINDOW_SIZE];
+    private int recorded = 0;
+    private int next = 0;
+
+    private State state = State.CLOSED;
+    private long openedAt = 0;
+    private int probesInFlight = 0;
+    private int probesSucceeded = 0;
+
+    private long rejected = 0;
+    private long opened = 0;
+
+    CircuitBreaker(String host, int failureRateThreshold, long slowCallMillis, int slowCallRateThreshold, long openMillis) {
+        this.host = host;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallMillis = slowCallMillis;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Returns whether a request may be sent now. Every permitted request must be
+     * followed by a call to {@link #onResult} or {@link #onIgnored}.
+     */
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                rejected++;
+                return false;
+            }
+            transitionTo(State.HALF_OPEN, "open duration elapsed");
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probesSucceeded >= HALF_OPEN_PROBES) {
+                rejected++;
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    synchronized void onResult(boolean failure, long durationMillis) {
+        boolean slow = durationMillis >= slowCallMillis;
+        switch (state) {
+            case HALF_OPEN:
+                probesInFlight = Math.max(0, probesInFlight - 1);
+                if (failure || slow) {
+                    transitionTo(State.OPEN, "probe " + (failure ? "failed" : "was slow"));
+                } else if (++probesSucceeded >= HALF_OPEN_PROBES) {
+                    transitionTo(State.CLOSED, HALF_OPEN_PROBES + " probes succeeded");
+                }
+                break;
+            case CLOSED:
+                failures[next] = failure;
+                slowCalls[next] = slow;
+                next = (next + 1) % WINDOW_SIZE;
+                recorded = Math.min(WINDOW_SIZE, recorded + 1);
+                if (recorded >= MINIMUM_CALLS) {
+                    int failureRate = rate(failures);
+                    int slowRate = rate(slowCalls);
+                    if (failureRate >= failureRateThreshold || slowRate >= slowCallRateThreshold) {
+                        transitionTo(State.OPEN, "failure rate " + failureRate + "%, slow calls " + slowRate + "%");
+                    }
+                }
+                break;
+            default:
+                // calls that started before the circuit opened do not count
+                break;
+        }
+    }
+
+    /**
+     * Ends a permitted request whose outcome says nothing about the host, e.g. one that
+     * was cancelled or never sent: frees its probe slot without recording a sample.
+     */
+    synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+        }
+    }
+
+    private int rate(boolean[] outcomes) {
+        int count = 0;
+        for (int i = 0; i < recorded; i++) {
+            if (outcomes[i]) {
+                count++;
+            }
+        }
+        return count * 100 / recorded;
+    }
+
+    private void transitionTo(State newState, String reason) {
+        System.out.println("Circuit breaker for " + host + ": " + state + " -> " + newState + " (" + reason + ")");
+        state = newState;
+        probesInFlight = 0;
+        probesSucceeded = 0;
+        if (newState == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+            opened++;
+        } else if (newState == State.CLOSED) {
+            recorded = 0;
+            next = 0;
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return host + ": state=" + state + ", opened=" + opened + ", rejected=" + rejected;
+    }
+}
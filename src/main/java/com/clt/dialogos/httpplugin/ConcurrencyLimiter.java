@@ -0,0 +1,123 @@
+package com.clt.dialogos.httpplugin;
+
+/**
+ * Bulkhead for one host whose size adapts to the measured latency (AIMD, with the
+ * long-term average latency as baseline as in gradient limiters). The limit grows by
+ * about one for every limit's worth of normal responses and shrinks by a tenth
+ * whenever a response is much slower than the baseline, times out or reports
+ * overload. Requests beyond the limit wait for a free slot for a bounded time or are
+ * shed right away.
+ */
+class ConcurrencyLimiter {
+    static final int MIN_LIMIT = 1;
+    static final int MAX_WAITING = 50;
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double BASELINE_SMOOTHING = 0.05;
+
+    /**
+     * Cause of the result of a request that was shed because the host is at its limit.
+     */
+    static final class LimitExceededException extends Exception {
+        LimitExceededException(String host, int limit) {
+            super("Concurrency limit of " + limit + " reached for " + host);
+        }
+    }
+
+    private final String host;
+    private final int maxLimit;
+    private double limit;
+    private int inFlight = 0;
+    private int waiting = 0;
+
+    private double baselineLatency = -1;
+
+    private int peakInFlight = 0;
+    private long shed = 0;
+
+    ConcurrencyLimiter(String host, int initialLimit, int maxLimit) {
+        this.host = host;
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.limit = Math.max(MIN_LIMIT, Math.min(initialLimit, this.maxLimit));
+    }
+
+    /**
+     * Takes a slot, waiting up to the given time for one to become free. Every
+     * successful call must be followed by {@link #release}.
+     */
+    synchronized boolean acquire(long maxWaitMillis) throws InterruptedException {
+        if (inFlight >= currentLimit()) {
+            if (maxWaitMillis <= 0 || waiting >= MAX_WAITING) {
+                shed++;
+                return false;
+            }
+            long deadline = System.currentTimeMillis() + maxWaitMillis;
+            waiting++;
+            try {
+                while (inFlight >= currentLimit()) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        shed++;
+                        return false;
+                    }
+                    wait(remaining);
+                }
+            } finally {
+                waiting--;
+            }
+        }
+        inFlight++;
+        peakInFlight = Math.max(peakInFlight, inFlight);
+        return true;
+    }
+
+    /**
+     * Frees the slot and adapts the limit to the outcome of the request.
+     *
+     * @param overloaded whether the request timed out or the host reported overload
+     */
+    synchronized void release(long latencyMillis, boolean overloaded) {
+        inFlight--;
+
+        boolean slow = baselineLatency > 0 && latencyMillis > baselineLatency * LATENCY_TOLERANCE;
+        if (!overloaded) {
+            baselineLatency = baselineLatency < 0
+                ? latencyMillis
+                : baselineLatency + BASELINE_SMOOTHING * (latencyMillis - baselineLatency);
+        }
+
+        if (overloaded || slow) {
+            limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+        } else if (inFlight + 1 >= limit / 2) {
+            // only grow while the limit is actually being used
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Frees the slot without adapting the limit, e.g. for cancelled requests.
+     */
+    synchronized void releaseWithoutSample() {
+        inFlight--;
+        notifyAll();
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    synchronized int getLimit() {
+        return currentLimit();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return host + ": limit=" + currentLimit() + ", peakInFlight=" + peakInFlight + ", shed=" + shed;
+    }
+}
@@ -0,0 +1,206 @@
+package com.clt.dialogos.httpplugin;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Negotiates and decodes compressed response bodies, and compresses large request
+ * bodies. Requests announce gzip and deflate; compressed bodies are inflated while
+ * they are read, so neither the compressed nor the decompressed body has to be held
+ * in memory as a whole. Request bodies are deflated while the client sends them.
+ */
+class ContentEncoding {
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+    static final String GZIP = "gzip";
+
+    /** Minimal gzip header: deflate, no flags, no mtime, unknown OS. */
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Bytes received over the wire and after decoding, for all responses of a runtime.
+     */
+    static final class Stats {
+        private long responses = 0;
+        private long compressedResponses = 0;
+        private long wireBytes = 0;
+        private long decodedBytes = 0;
+        private long compressedRequests = 0;
+        private long requestBytes = 0;
+        private long requestWireBytes = 0;
+
+        synchronized void recordRequest(long body, long wire) {
+            compressedRequests++;
+            requestBytes += body;
+            requestWireBytes += wire;
+        }
+
+        synchronized void record(boolean compressed, long wire, long decoded) {
+            responses++;
+            if (compressed) {
+                compressedResponses++;
+            }
+            wireBytes += wire;
+            decodedBytes += decoded;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "responses=" + responses + ", compressed=" + compressedResponses + ", received="
+                + (wireBytes / 1024) + " KB, decoded=" + (decodedBytes / 1024) + " KB, compressed requests="
+                + compressedRequests + " (" + (requestBytes / 1024) + " KB sent as " + (requestWireBytes / 1024) + " KB)";
+        }
+    }
+
+    /**
+     * Counts the bytes read from a stream.
+     */
+    static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    static boolean isCompressed(String encoding) {
+        String normalized = normalize(encoding);
+        return !normalized.isEmpty() && !normalized.equals("identity");
+    }
+
+    /**
+     * True for responses that never have a body, whatever their Content-Encoding says:
+     * answers to HEAD requests, 204 No Content and 304 Not Modified.
+     */
+    static boolean hasNoBody(int statusCode, String method) {
+        return statusCode == 204 || statusCode == 304 || "HEAD".equalsIgnoreCase(method);
+    }
+
+    /**
+     * Wraps the raw body in a decoder for the given Content-Encoding. An empty body is
+     * returned as it is, since the decoders fail on a missing gzip or zlib header.
+     */
+    static InputStream decode(InputStream body, String encoding) throws IOException {
+        String normalized = normalize(encoding);
+        if (isCompressed(encoding)) {
+            PushbackInputStream peek = new PushbackInputStream(body, 1);
+            int first = peek.read();
+            if (first < 0) {
+                return peek;
+            }
+            peek.unread(first);
+            body = peek;
+        }
+        switch (normalized) {
+            case "":
+            case "identity":
+                return body;
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(body, BUFFER_SIZE);
+            case "deflate":
+                // "deflate" should be zlib-wrapped, but some servers send raw deflate data
+                BufferedInputStream buffered = new BufferedInputStream(body, BUFFER_SIZE);
+                buffered.mark(2);
+                int first = buffered.read();
+                int second = buffered.read();
+                buffered.reset();
+                boolean zlib = first >= 0 && second >= 0 && (first & 0x0F) == 8 && ((first << 8) | second) % 31 == 0;
+                Inflater inflater = new Inflater(!zlib);
+                return new InflaterInputStream(buffered, inflater, BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        inflater.end();
+                    }
+                };
+            default:
+                throw new IOException("Unsupported Content-Encoding: " + encoding);
+        }
+    }
+
+    /**
+     * Returns a new stream of the gzip encoding of the body, compressed as it is read.
+     * The sizes are recorded once the stream has been read to the end.
+     */
+    static InputStream gzip(byte[] body, Stats stats) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        byte[] trailer = new byte[8];
+        writeIntLE(trailer, 0, (int) crc.getValue());
+        writeIntLE(trailer, 4, body.length);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        InputStream deflated = new DeflaterInputStream(new ByteArrayInputStream(body), deflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                deflater.end();
+            }
+        };
+        InputStream gzip = new SequenceInputStream(
+            new SequenceInputStream(new ByteArrayInputStream(GZIP_HEADER), deflated),
+            new ByteArrayInputStream(trailer));
+
+        return new CountingInputStream(gzip) {
+            private boolean recorded = false;
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                if (n < 0 && !recorded) {
+                    recorded = true;
+                    System.out.println("Request body: " + body.length + " bytes -> " + getCount() + " bytes gzip");
+                    if (stats != null) {
+                        stats.recordRequest(body.length, getCount());
+                    }
+                }
+                return n;
+            }
+        };
+    }
+
+    private static void writeIntLE(byte[] buffer, int offset, int value) {
+        for (int i = 0; i < 4; i++) {
+            buffer[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static String normalize(String encoding) {
+        return encoding == null ? "" : encoding.trim().toLowerCase();
+    }
+}
@@ -0,0 +1,62 @@
+package com.clt.dialogos.httpplugin;
+
+import java.time.Duration;
+
+/**
+ * Point in time by which the HTTP requests of a dialog turn must be answered. Each
+ * request only gets the time that is left as its timeout, and waits for retries,
+ * rate limits or concurrency slots are cut short by it.
+ */
+class Deadline {
+
+    /**
+     * Cause of the result of a request that ran out of its deadline, whether it was
+     * still sent or not.
+     */
+    static final class ExceededException extends Exception {
+        ExceededException(long budgetMillis) {
+            super("Deadline of " + budgetMillis + " ms exceeded");
+        }
+    }
+
+    private final long budgetMillis;
+    private final long expiresAtNanos;
+
+    private Deadline(long budgetMillis) {
+        this.budgetMillis = Math.max(0, budgetMillis);
+        this.expiresAtNanos = System.nanoTime() + this.budgetMillis * 1_000_000;
+    }
+
+    static Deadline in(long budgetMillis) {
+        return new Deadline(budgetMillis);
+    }
+
+    long remainingMillis() {
+        return Math.max(0, (expiresAtNanos - System.nanoTime()) / 1_000_000);
+    }
+
+    boolean isExpired() {
+        return System.nanoTime() - expiresAtNanos >= 0;
+    }
+
+    /**
+     * Shortens the timeout to the time that is left, but never below one millisecond,
+     * which the HTTP client would reject.
+     */
+    Duration cap(Duration timeout) {
+        return Duration.ofMillis(Math.max(1, Math.min(timeout.toMillis(), remainingMillis())));
+    }
+
+    long cap(long waitMillis) {
+        return Math.min(waitMillis, remainingMillis());
+    }
+
+    long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    HttpHandler.HttpResult exceeded() {
+        return HttpHandler.HttpResult.failure(408, "Deadline of " + budgetMillis + " ms exceeded",
+            new ExceededException(budgetMillis));
+    }
+}
@@ -0,0 +1,470 @@
+package com.clt.dialogos.httpplugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Second, persistent tier of the {@link ResponseCache}. Responses are appended to
+ * memory-mapped segment files of fixed size; an in-memory index in LRU order points
+ * to the latest record of each key and is rebuilt by scanning the segments on start.
+ * When the directory grows beyond its budget, the least recently used entries are
+ * dropped and the live records of the oldest segment are moved to the newest one
+ * before the oldest segment file is deleted.
+ *
+ * Record layout: magic, record length, stored-at, expires-at, status code, followed
+ * by the key, the headers (as JSON) and the body, each as length-prefixed UTF-8. The
+ * magic number is written last, so a record cut off by a crash is never read back.
+ * A removed key is recorded as a tombstone, a record with status code -1, so that
+ * the scan on the next start does not bring the entry back.
+ *
+ * All runtimes in the JVM that use the same directory share one instance, see
+ * {@link #open}; a lock file keeps other processes out of the directory.
+ */
+class DiskCache {
+
+    static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final int RECORD_MAGIC = 0x48504331;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String LOCK_FILE = "lock";
+    private static final int TOMBSTONE = -1;
+
+    private static final Map<Path, DiskCache> OPEN = new HashMap<>();
+
+    /**
+     * A response read back from disk.
+     */
+    static final class Record {
+        final long storedAt;
+        final long expiresAt;
+        final int statusCode;
+        final Map<String, List<String>> headers;
+        final String body;
+
+        private Record(long storedAt, long expiresAt, int statusCode, Map<String, List<String>> headers, String body) {
+            this.storedAt = storedAt;
+            this.expiresAt = expiresAt;
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePosition = 0;
+        long liveBytes = 0;
+
+        Segment(int id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        }
+    }
+
+    private static final class Location {
+        final Segment segment;
+        final int offset;
+        final int length;
+
+        Location(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final Path directory;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private int users = 1;
+    private final int maxSegments;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final LinkedHashMap<String, Location> index = new LinkedHashMap<>(256, 0.75f, true);
+    private Segment active;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long writes = 0;
+    private long evictions = 0;
+    private long compactions = 0;
+
+    /**
+     * Returns the cache in the directory, opening it if no runtime of the JVM uses it
+     * yet. Each call must be followed by a {@link #close}. The size limit is the one
+     * of the first caller.
+     */
+    static DiskCache open(Path directory, long maxBytes) throws IOException {
+        Path key = directory.toAbsolutePath().normalize();
+        synchronized (OPEN) {
+            DiskCache cache = OPEN.get(key);
+            if (cache != null) {
+                cache.users++;
+                return cache;
+            }
+            cache = new DiskCache(key, maxBytes);
+            OPEN.put(key, cache);
+            return cache;
+        }
+    }
+
+    /**
+     * Opens the cache in the directory, creating it if needed, and indexes the
+     * records of existing segment files.
+     */
+    private DiskCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxSegments = (int) Math.max(2, maxBytes / SEGMENT_SIZE);
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+        if (acquired == null) {
+            lockChannel.close();
+            throw new IOException("directory is in use by another process");
+        }
+        this.lock = acquired;
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            for (Segment segment : segments.values()) {
+                close(segment);
+            }
+            lockChannel.close();
+            throw e;
+        }
+        System.out.println("Opened disk cache in " + directory + " (" + index.size() + " entries, " + segments.size() + " segments)");
+    }
+
+    private void load() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Ignoring unexpected file in disk cache: " + file);
+                }
+            }
+        }
+        ids.sort(null);
+        for (int id : ids) {
+            Segment segment = new Segment(id, segmentPath(id));
+            segments.put(id, segment);
+            scan(segment);
+        }
+        active = segments.isEmpty() ? createSegment(0) : segments.lastEntry().getValue();
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Segment segment = new Segment(id, segmentPath(id));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_SIZE <= SEGMENT_SIZE && buffer.getInt(position) == RECORD_MAGIC) {
+            int length = buffer.getInt(position + 4);
+            if (length < HEADER_SIZE || position + length > SEGMENT_SIZE) {
+                break;
+            }
+            String key = readString(buffer, position + HEADER_SIZE);
+            if (buffer.getInt(position + 24) == TOMBSTONE) {
+                unindex(key);
+            } else {
+                index(key, new Location(segment, position, length));
+            }
+            position += length;
+        }
+        segment.writePosition = position;
+    }
+
+    private void index(String key, Location location) {
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            previous.segment.liveBytes -= previous.length;
+        }
+        location.segment.liveBytes += location.length;
+    }
+
+    private boolean unindex(String key) {
+        Location removed = index.remove(key);
+        if (removed != null) {
+            removed.segment.liveBytes -= removed.length;
+        }
+        return removed != null;
+    }
+
+    /**
+     * Returns the latest record for the key, fresh or not, or null.
+     */
+    synchronized Record get(String key) {
+        Location location = index.get(key);
+        if (location == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+
+        ByteBuffer buffer = location.segment.buffer;
+        int position = location.offset;
+        long storedAt = buffer.getLong(position + 8);
+        long expiresAt = buffer.getLong(position + 16);
+        int statusCode = buffer.getInt(position + 24);
+
+        position += HEADER_SIZE;
+        position += 4 + buffer.getInt(position);
+        String headerJson = readString(buffer, position);
+        position += 4 + buffer.getInt(position);
+        String body = readString(buffer, position);
+
+        return new Record(storedAt, expiresAt, statusCode, parseHeaders(headerJson), body);
+    }
+
+    /**
+     * Appends a record for the key. Returns false if it does not fit into a segment.
+     */
+    synchronized boolean put(String key, long storedAt, long expiresAt, int statusCode,
+                             Map<String, List<String>> headers, String body) {
+        try {
+            Location location = append(key, storedAt, expiresAt, statusCode, headersToJson(headers), body);
+            if (location == null) {
+                return false;
+            }
+            index(key, location);
+            writes++;
+            compact();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Failed to write to disk cache: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Drops the entry for the key and appends a tombstone, so that it stays removed
+     * after a restart.
+     */
+    synchronized void remove(String key) {
+        if (!unindex(key)) {
+            return;
+        }
+        try {
+            append(key, 0, 0, TOMBSTONE, "{}", null);
+        } catch (IOException e) {
+            System.err.println("Failed to write to disk cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a record to the active segment and returns its location, or null if it
+     * does not fit into a segment.
+     */
+    private Location append(String key, long storedAt, long expiresAt, int statusCode,
+                            String headerJson, String body) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] headerBytes = headerJson.getBytes(StandardCharsets.UTF_8);
+        byte[] bodyBytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_SIZE + 4 + keyBytes.length + 4 + headerBytes.length + 4 + bodyBytes.length;
+        if (length > SEGMENT_SIZE) {
+            return null;
+        }
+
+        int position = reserve(length);
+        ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(position + 4);
+        buffer.putInt(length);
+        buffer.putLong(storedAt);
+        buffer.putLong(expiresAt);
+        buffer.putInt(statusCode);
+        buffer.putInt(keyBytes.length).put(keyBytes);
+        buffer.putInt(headerBytes.length).put(headerBytes);
+        buffer.putInt(bodyBytes.length).put(bodyBytes);
+        active.buffer.putInt(position, RECORD_MAGIC);
+        return new Location(active, position, length);
+    }
+
+    /**
+     * Returns the offset for a record of the given length in the active segment,
+     * starting a new segment if the active one is full.
+     */
+    private int reserve(int length) throws IOException {
+        if (active.writePosition + length > SEGMENT_SIZE) {
+            active.buffer.force();
+            active = createSegment(active.id + 1);
+        }
+        int position = active.writePosition;
+        active.writePosition += length;
+        return position;
+    }
+
+    private void compact() throws IOException {
+        for (int round = 0; segments.size() > maxSegments && round < maxSegments; round++) {
+            // drop least recently used entries until the live data fits well into the remaining segments
+            long target = (long) (maxSegments - 1) * SEGMENT_SIZE * 3 / 4;
+            List<String> evicted = new ArrayList<>();
+            Iterator<Map.Entry<String, Location>> lru = index.entrySet().iterator();
+            while (liveBytes() > target && lru.hasNext()) {
+                Map.Entry<String, Location> entry = lru.next();
+                lru.remove();
+                entry.getValue().segment.liveBytes -= entry.getValue().length;
+                evicted.add(entry.getKey());
+                evictions++;
+            }
+            // records in segments that are kept would come back on the next start
+            for (String key : evicted) {
+                append(key, 0, 0, TOMBSTONE, "{}", null);
+            }
+
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active) {
+                return;
+            }
+
+            // iterating and setValue keep the LRU order of the index intact
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                Location location = entry.getValue();
+                if (location.segment != oldest) {
+                    continue;
+                }
+                int position = reserve(location.length);
+                ByteBuffer source = oldest.buffer.duplicate();
+                source.position(location.offset).limit(location.offset + location.length);
+                ByteBuffer destination = active.buffer.duplicate();
+                destination.position(position);
+                destination.put(source);
+                entry.setValue(new Location(active, position, location.length));
+                active.liveBytes += location.length;
+            }
+
+            segments.remove(oldest.id);
+            close(oldest);
+            try {
+                Files.deleteIfExists(oldest.path);
+            } catch (IOException e) {
+                // mapped files cannot be deleted on some platforms until the mapping is collected
+                oldest.path.toFile().deleteOnExit();
+            }
+            compactions++;
+        }
+    }
+
+    private long liveBytes() {
+        long live = 0;
+        for (Segment segment : segments.values()) {
+            live += segment.liveBytes;
+        }
+        return live;
+    }
+
+    /**
+     * Closes the cache once the last runtime that opened it has closed it.
+     */
+    void close() {
+        synchronized (OPEN) {
+            if (--users > 0) {
+                return;
+            }
+            OPEN.remove(directory);
+        }
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                close(segment);
+            }
+            segments.clear();
+            index.clear();
+            try {
+                lock.release();
+                lockChannel.close();
+            } catch (IOException e) {
+                System.err.println("Failed to unlock disk cache " + directory + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void close(Segment segment) {
+        try {
+            segment.buffer.force();
+            segment.channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close disk cache segment " + segment.path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes a length-prefixed string from the mapped segment into a new String.
+     * This is a copy: the response cache parses the body again on a disk hit.
+     */
+    private static String readString(ByteBuffer buffer, int position) {
+        int length = buffer.getInt(position);
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(position + 4).limit(position + 4 + length);
+        return StandardCharsets.UTF_8.decode(slice).toString();
+    }
+
+    private static String headersToJson(Map<String, List<String>> headers) {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey() != null) {
+                json.put(header.getKey(), new JSONArray(header.getValue()));
+            }
+        }
+        return json.toString();
+    }
+
+    private static Map<String, List<String>> parseHeaders(String headerJson) {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        JSONObject json = new JSONObject(headerJson);
+        for (String name : json.keySet()) {
+            JSONArray values = json.getJSONArray(name);
+            List<String> list = new ArrayList<>();
+            for (int i = 0; i < values.length(); i++) {
+                list.add(values.getString(i));
+            }
+            headers.put(name, list);
+        }
+        return headers;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "entries=" + index.size() + ", segments=" + segments.size() + ", hits=" + hits + ", misses=" + misses
+            + ", writes=" + writes + ", evictions=" + evictions + ", compactions=" + compactions;
+    }
+}
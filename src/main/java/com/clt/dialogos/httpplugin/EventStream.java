@@ -0,0 +1,82 @@
+package com.clt.dialogos.httpplugin;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads Server-Sent Events ({@code text/event-stream}) one event at a time, as they
+ * arrive. Multi-line data fields are joined with newlines, comments are skipped, and
+ * an event is complete at the first blank line after it.
+ */
+class EventStream implements Closeable {
+
+    static final class Event {
+        final String type;
+        final String data;
+        final String id;
+
+        Event(String type, String data, String id) {
+            this.type = type;
+            this.data = data;
+            this.id = id;
+        }
+    }
+
+    private final BufferedReader reader;
+    private String lastEventId = "";
+
+    EventStream(Reader source) {
+        this.reader = new BufferedReader(source);
+    }
+
+    /**
+     * Blocks until the next event is complete and returns it, or null at the end of
+     * the stream. Events without data are skipped, as the specification demands.
+     */
+    Event next() throws IOException {
+        String type = "";
+        StringBuilder data = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data != null) {
+                    return new Event(type.isEmpty() ? "message" : type, data.toString(), lastEventId);
+                }
+                type = "";
+                continue;
+            }
+            if (line.startsWith(":")) {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+            switch (field) {
+                case "data":
+                    data = data == null ? new StringBuilder(value) : data.append('\n').append(value);
+                    break;
+                case "event":
+                    type = value;
+                    break;
+                case "id":
+                    lastEventId = value;
+                    break;
+                default:
+                    // "retry" and unknown fields only matter to reconnecting clients
+                    break;
+            }
+        }
+        // an event that is not terminated by a blank line is incomplete and dropped
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,530 @@
+package com.clt.dialogos.httpplugin;
+
+import com.clt.dialogos.plugin.PluginRuntime;
+import com.clt.diamant.*;
+import com.clt.diamant.graph.Graph;
+import com.clt.diamant.graph.Node;
+import com.clt.diamant.graph.nodes.NodeExecutionException;
+import com.clt.script.exp.values.StringValue;
+import com.clt.xml.XMLReader;
+import com.clt.xml.XMLWriter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.xml.sax.SAXException;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Receives a Server-Sent Events stream, e.g. the tokens of a language model, and
+ * writes the text of each event or of each complete sentence into a slot while the
+ * stream is still running. If the "First chunk" edge is connected, the dialog
+ * continues there as soon as the slot has its first text, so that speech output can
+ * start early; the rest of the stream keeps updating the slot in the background.
+ */
+public class EventStreamNode extends Node {
+    private static final String TARGET_VAR = "targetVariable";
+    private static final String STATUS_VAR = "statusVariable";
+    private static final String DATA_PATH = "dataPath";
+    private static final String UPDATE_MODE = "updateMode";
+    private static final String CHUNKING = "chunking";
+    private static final String DONE_MARKER = "doneMarker";
+    private static final String REQUEST_TIMEOUT = "requestTimeout";
+    private static final String STREAM_TIMEOUT = "streamTimeout";
+
+    private static final String UPDATE_APPEND = "append";
+    private static final String UPDATE_REPLACE = "replace";
+    private static final String CHUNK_EVENT = "event";
+    private static final String CHUNK_SENTENCE = "sentence";
+
+    private static final String STATUS_STREAMING = "streaming";
+    private static final String STATUS_DONE = "done";
+    private static final String STATUS_ERROR = "error";
+
+    private static final String[] REQUEST_KEYS = {
+        RequestDefinition.URL, RequestDefinition.HTTP_METHOD, RequestDefinition.PATH_VARIABLES,
+        RequestDefinition.QUERY_VARIABLES, RequestDefinition.BODY_VARIABLES, RequestDefinition.AUTH_TYPE,
+        RequestDefinition.AUTH_VALUE, RequestDefinition.CUSTOM_HEADERS, RequestDefinition.BODY_MODE,
+        RequestDefinition.RAW_BODY, RequestDefinition.TRUST_ALL_CERTS
+    };
+    private static final String[] STREAM_KEYS = {
+        TARGET_VAR, STATUS_VAR, DATA_PATH, UPDATE_MODE, CHUNKING, DONE_MARKER, REQUEST_TIMEOUT, STREAM_TIMEOUT
+    };
+
+    private static final String[] HTTP_METHODS = {"GET", "POST", "PUT", "DELETE", "PATCH"};
+    private static final String[] AUTH_TYPES = {"None", "Bearer Token", "Basic Auth", "API Key"};
+
+    /** End of a sentence: terminal punctuation, possibly closed by quotes or brackets, before whitespace; or a line break. */
+    private static final Pattern SENTENCE_END = Pattern.compile("[.!?…]+[\"')\\]”]*(?=\\s)|\\n");
+
+    public EventStreamNode() {
+        this.addEdge("Done");
+        this.addEdge("Error");
+        this.addEdge("First chunk");
+
+        this.getEdge(0).setColor(new Color(0, 150, 0));
+        this.getEdge(1).setColor(new Color(200, 0, 0));
+        this.getEdge(2).setColor(new Color(0, 120, 215));
+
+        this.setProperty(RequestDefinition.URL, "");
+        this.setProperty(RequestDefinition.HTTP_METHOD, "POST");
+        this.setProperty(RequestDefinition.PATH_VARIABLES, "");
+        this.setProperty(RequestDefinition.QUERY_VARIABLES, "");
+        this.setProperty(RequestDefinition.BODY_VARIABLES, "");
+        this.setProperty(RequestDefinition.AUTH_TYPE, "None");
+        this.setProperty(RequestDefinition.AUTH_VALUE, "");
+        this.setProperty(RequestDefinition.CUSTOM_HEADERS, "");
+        this.setProperty(RequestDefinition.BODY_MODE, "raw");
+        this.setProperty(RequestDefinition.RAW_BODY, "");
+        this.setProperty(RequestDefinition.TRUST_ALL_CERTS, "false");
+        this.setProperty(TARGET_VAR, "");
+        this.setProperty(STATUS_VAR, "");
+        this.setProperty(DATA_PATH, "");
+        this.setProperty(UPDATE_MODE, UPDATE_APPEND);
+        this.setProperty(CHUNKING, CHUNK_EVENT);
+        this.setProperty(DONE_MARKER, "[DONE]");
+        this.setProperty(REQUEST_TIMEOUT, "30000");
+        this.setProperty(STREAM_TIMEOUT, "120000");
+    }
+
+    @Override
+    public void writeVoiceXML(XMLWriter w, IdMap uid_map) {}
+
+    public static String getNodeTypeName(Class<?> c) {
+        return "Http Event Stream Node";
+    }
+
+    @Override
+    public Node execute(WozInterface comm, InputCenter input, ExecutionLogger logger) {
+        logNode(logger);
+        HttpPluginRuntime.nodeEntered(this, comm);
+        try {
+            RequestDefinition definition = RequestDefinition.fromProperties(this::getProperty);
+            HttpHandler.PreparedRequest request = definition.prepare(this::getSlotOrNull);
+            Slot target = getSlot(property(TARGET_VAR));
+            Slot status = property(STATUS_VAR).isEmpty() ? null : getSlot(property(STATUS_VAR));
+
+            HttpPluginRuntime runtime = getHttpRuntime(comm);
+            if (runtime == null) {
+                runtime = HttpPluginRuntime.getFallback();
+            }
+            Session session = new Session(runtime, request, target, status);
+            System.out.println("Opening event stream: " + request.method + " " + request.url);
+            CompletableFuture<Boolean> done = CompletableFuture.supplyAsync(session::run, runtime.getTaskExecutor());
+            // closing the stream ends the session, also after the dialog has moved on
+            long streamTimeout = RequestOptions.parseLong(this.getProperty(STREAM_TIMEOUT), 120000);
+            ScheduledFuture<?> timeout = runtime.schedule(session::timeOut, streamTimeout);
+            done.whenComplete((finished, error) -> timeout.cancel(false));
+
+            if (numEdges() > 2 && getEdge(2).getTarget() != null) {
+                CompletableFuture.anyOf(session.firstChunk, done).get();
+                if (session.firstChunk.isDone()) {
+                    return getEdge(2).getTarget();
+                }
+            }
+            return done.get() ? getEdge(0).getTarget() : getEdge(1).getTarget();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return getEdge(1).getTarget();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("Error in EventStreamNode: " + cause.getMessage());
+            return getEdge(1).getTarget();
+        } catch (Exception e) {
+            System.err.println("Error in EventStreamNode: " + e.getMessage());
+            return getEdge(1).getTarget();
+        }
+    }
+
+    /**
+     * One run of the stream: reads the events on a worker thread and writes their
+     * text into the target slot.
+     * <p>
+     * Threading: the target and status slots are written from the worker thread,
+     * also after the dialog has continued at the "First chunk" edge. Each write
+     * replaces the slot value as a whole, so the dialog reads the text up to some
+     * chunk, never a partial one. While the status is "streaming", the dialog must
+     * only read these slots; a value it writes would be overwritten by the next
+     * chunk. Once the status is "done" or "error", the session no longer touches them.
+     */
+    private final class Session implements Closeable {
+        final CompletableFuture<Void> firstChunk = new CompletableFuture<>();
+
+        private final HttpPluginRuntime runtime;
+        private final HttpHandler.PreparedRequest request;
+        private final Slot target;
+        private final Slot status;
+        private final String dataPath = property(DATA_PATH);
+        private final String doneMarker = property(DONE_MARKER);
+        private final boolean append = !UPDATE_REPLACE.equals(property(UPDATE_MODE));
+        private final boolean sentences = CHUNK_SENTENCE.equals(property(CHUNKING));
+        private final Duration requestTimeout = Duration.ofMillis(
+            Math.max(1, RequestOptions.parseLong(getProperty(REQUEST_TIMEOUT), 30000)));
+        private final long startNanos = System.nanoTime();
+
+        private final StringBuilder text = new StringBuilder();
+        private final StringBuilder pending = new StringBuilder();
+        private int events = 0;
+        private int chunks = 0;
+
+        private InputStream body;
+        private boolean closed = false;
+        private volatile boolean timedOut = false;
+
+        Session(HttpPluginRuntime runtime, HttpHandler.PreparedRequest request, Slot target, Slot status) {
+            this.runtime = runtime;
+            this.request = request;
+            this.target = target;
+            this.status = status;
+        }
+
+        boolean run() {
+            setStatus(STATUS_STREAMING);
+            runtime.registerStream(this);
+            try {
+                HttpResponse<InputStream> response = HttpHandler.openEventStream(runtime, request, requestTimeout);
+                if (!opened(response.body())) {
+                    throw new IOException("stream closed");
+                }
+                try (EventStream stream = new EventStream(
+                        new InputStreamReader(response.body(), ResponseBodyLimit.charsetOf(response)))) {
+                    EventStream.Event event;
+                    while ((event = stream.next()) != null) {
+                        events++;
+                        if (!doneMarker.isEmpty() && event.data.trim().equals(doneMarker)) {
+                            break;
+                        }
+                        receive(textOf(event));
+                    }
+                }
+                if (pending.length() > 0) {
+                    emit(pending.toString());
+                }
+                System.out.println("✓ Event stream finished after " + elapsedMillis() + " ms: " + events + " events, "
+                    + chunks + " slot updates, " + text.length() + " characters");
+                setStatus(STATUS_DONE);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.err.println("✗ Event stream interrupted: " + request.url);
+            } catch (Exception e) {
+                String reason = timedOut ? "no end within " + getProperty(STREAM_TIMEOUT) + " ms" : e.getMessage();
+                System.err.println("✗ Event stream failed after " + elapsedMillis() + " ms (" + reason + "): " + request.url);
+            } finally {
+                runtime.unregisterStream(this);
+            }
+            setStatus(STATUS_ERROR);
+            return false;
+        }
+
+        private void receive(String chunk) {
+            if (chunk == null || chunk.isEmpty()) {
+                return;
+            }
+            if (!sentences) {
+                emit(chunk);
+                return;
+            }
+            pending.append(chunk);
+            int end = -1;
+            Matcher matcher = SENTENCE_END.matcher(pending);
+            while (matcher.find()) {
+                end = matcher.end();
+            }
+            if (end > 0) {
+                emit(pending.substring(0, end));
+                pending.delete(0, end);
+            }
+        }
+
+        private void emit(String chunk) {
+            if (append) {
+                text.append(chunk);
+                target.setValue(new StringValue(text.toString()));
+            } else {
+                text.setLength(0);
+                text.append(chunk.trim());
+                if (text.length() == 0) {
+                    return;
+                }
+                target.setValue(new StringValue(text.toString()));
+            }
+            chunks++;
+            if (!firstChunk.isDone()) {
+                System.out.println("✓ First chunk after " + elapsedMillis() + " ms");
+                firstChunk.complete(null);
+            }
+        }
+
+        /**
+         * Returns the text of an event: its data, or the value at the data path if
+         * the data is JSON. Events without text at the path return null.
+         */
+        private String textOf(EventStream.Event event) {
+            if (dataPath.isEmpty()) {
+                return event.data;
+            }
+            Object json;
+            try {
+                json = new JSONTokener(event.data).nextValue();
+            } catch (Exception e) {
+                return null;
+            }
+            if (!(json instanceof JSONObject) && !(json instanceof JSONArray)) {
+                return null;
+            }
+            Object value = JsonConverter.resolvePath(json, dataPath);
+            return value == null || value == JSONObject.NULL ? null : value.toString();
+        }
+
+        private void setStatus(String value) {
+            if (status != null) {
+                status.setValue(new StringValue(value));
+            }
+        }
+
+        private long elapsedMillis() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        private synchronized boolean opened(InputStream stream) throws IOException {
+            if (closed) {
+                stream.close();
+                return false;
+            }
+            body = stream;
+            return true;
+        }
+
+        void timeOut() {
+            timedOut = true;
+            try {
+                close();
+            } catch (IOException e) {
+                System.err.println("Failed to close event stream: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            closed = true;
+            if (body != null) {
+                body.close();
+            }
+        }
+    }
+
+    private String property(String key) {
+        Object value = this.getProperty(key);
+        return value == null ? "" : value.toString().trim();
+    }
+
+    private Slot getSlot(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
+        }
+        throw new NodeExecutionException(this, "Unable to find variable: " + name);
+    }
+
+    private Slot getSlotOrNull(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
+        }
+        return null;
+    }
+
+    private HttpPluginRuntime getHttpRuntime(WozInterface comm) {
+        PluginRuntime runtime = getPluginRuntime(HttpPlugin.class, comm);
+        return runtime instanceof HttpPluginRuntime ? (HttpPluginRuntime) runtime : null;
+    }
+
+    @Override
+    public JComponent createEditorComponent(Map<String, Object> properties) {
+        JPanel mainPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.anchor = GridBagConstraints.NORTHWEST;
+        gbc.gridx = 0;
+        gbc.weightx = 1.0;
+
+        gbc.gridy = 0;
+        mainPanel.add(createRequestPanel(properties), gbc);
+
+        gbc.gridy = 1;
+        mainPanel.add(createStreamPanel(properties), gbc);
+
+        // push sections to the top
+        gbc.gridy = 99;
+        gbc.weighty = 1.0;
+        mainPanel.add(Box.createVerticalGlue(), gbc);
+
+        return new JScrollPane(mainPanel);
+    }
+
+    private JPanel createRequestPanel(Map<String, Object> properties) {
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBorder(BorderFactory.createTitledBorder("Request"));
+        int row = 0;
+
+        addComboRow(panel, row++, "HTTP Method:", HTTP_METHODS, HTTP_METHODS, RequestDefinition.HTTP_METHOD, properties);
+        addTextRow(panel, row++, "HTTP URL:", RequestDefinition.URL, "e.g. https://api.example.com/v1/chat/completions", properties);
+        addTextRow(panel, row++, "Path Variables:", RequestDefinition.PATH_VARIABLES, "pathVar=variable, ...", properties);
+        addTextRow(panel, row++, "Query Parameters:", RequestDefinition.QUERY_VARIABLES, "paramKey=variable, ...", properties);
+        addComboRow(panel, row++, "Authorization:", AUTH_TYPES, AUTH_TYPES, RequestDefinition.AUTH_TYPE, properties);
+        addTextRow(panel, row++, "Authorization Value:", RequestDefinition.AUTH_VALUE,
+            "token, username:password or headerName:value", properties);
+        addTextRow(panel, row++, "Custom Headers:", RequestDefinition.CUSTOM_HEADERS, "Header=value, ...", properties);
+        addComboRow(panel, row++, "Body Mode:", new String[]{"mapping", "raw"}, new String[]{"mapping", "raw"},
+            RequestDefinition.BODY_MODE, properties);
+        addTextRow(panel, row++, "Body Mappings:", RequestDefinition.BODY_VARIABLES, "jsonKey=variable, ...", properties);
+        addTextRow(panel, row++, "Raw JSON Body:", RequestDefinition.RAW_BODY,
+            "Use ${variable} to insert slot values, e.g. {\"stream\": true, \"prompt\": \"${question}\"}", properties);
+        addCheckBoxRow(panel, row, "Trust all SSL certificates (insecure)", RequestDefinition.TRUST_ALL_CERTS, properties);
+
+        return panel;
+    }
+
+    private JPanel createStreamPanel(Map<String, Object> properties) {
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBorder(BorderFactory.createTitledBorder("Stream"));
+        int row = 0;
+
+        addTextRow(panel, row++, "Target Variable:", TARGET_VAR, "String variable that receives the streamed text", properties);
+        addTextRow(panel, row++, "Data Path:", DATA_PATH,
+            "Path of the text in JSON event data, e.g. choices[0].delta.content; empty to use the data as it is", properties);
+        addComboRow(panel, row++, "Update:", new String[]{UPDATE_APPEND, UPDATE_REPLACE},
+            new String[]{"Append to the text so far", "Replace with the latest chunk"}, UPDATE_MODE, properties);
+        addComboRow(panel, row++, "Chunks:", new String[]{CHUNK_EVENT, CHUNK_SENTENCE},
+            new String[]{"Every event", "Complete sentences"}, CHUNKING, properties);
+        addTextRow(panel, row++, "End Marker:", DONE_MARKER, "Event data that ends the stream, e.g. [DONE]", properties);
+        addTextRow(panel, row++, "Status Variable:", STATUS_VAR,
+            "Optional: receives \"streaming\", \"done\" or \"error\"", properties);
+        addSpinnerRow(panel, row++, "Response timeout (ms):", REQUEST_TIMEOUT, 30000,
+            "How long to wait for the stream to start", properties);
+        addSpinnerRow(panel, row, "Stream timeout (ms):", STREAM_TIMEOUT, 120000,
+            "The stream is closed if it has not ended after this time", properties);
+
+        return panel;
+    }
+
+    private void addTextRow(JPanel panel, int row, String label, String key, String tooltip,
+                            Map<String, Object> properties) {
+        GridBagConstraints gbc = rowConstraints(row);
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JTextField field = new JTextField(properties.getOrDefault(key, "").toString(), 25);
+        field.setToolTipText(tooltip);
+        field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void update() {
+                properties.put(key, field.getText());
+            }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { update(); }
+        });
+        panel.add(field, gbc);
+    }
+
+    private void addComboRow(JPanel panel, int row, String label, String[] values, String[] labels, String key,
+                             Map<String, Object> properties) {
+        GridBagConstraints gbc = rowConstraints(row);
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JComboBox<String> combo = new JComboBox<>(labels);
+        int selected = Arrays.asList(values).indexOf(properties.getOrDefault(key, "").toString());
+        combo.setSelectedIndex(Math.max(0, selected));
+        combo.addActionListener(e -> properties.put(key, values[combo.getSelectedIndex()]));
+        panel.add(combo, gbc);
+    }
+
+    private void addSpinnerRow(JPanel panel, int row, String label, String key, int defaultValue, String tooltip,
+                               Map<String, Object> properties) {
+        GridBagConstraints gbc = rowConstraints(row);
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        int value = (int) RequestOptions.parseLong(properties.get(key), defaultValue);
+        JSpinner spinner = new JSpinner(new SpinnerNumberModel(Math.max(100, Math.min(value, 3600000)), 100, 3600000, 1000));
+        spinner.setToolTipText(tooltip);
+        spinner.addChangeListener(e -> properties.put(key, spinner.getValue().toString()));
+        panel.add(spinner, gbc);
+    }
+
+    private void addCheckBoxRow(JPanel panel, int row, String label, String key, Map<String, Object> properties) {
+        GridBagConstraints gbc = rowConstraints(row);
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+
+        JCheckBox checkBox = new JCheckBox(label);
+        checkBox.setSelected(Boolean.parseBoolean(properties.getOrDefault(key, "false").toString()));
+        checkBox.addActionListener(e -> properties.put(key, Boolean.toString(checkBox.isSelected())));
+        panel.add(checkBox, gbc);
+    }
+
+    private static GridBagConstraints rowConstraints(int row) {
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(2, 2, 2, 2);
+        gbc.gridy = row;
+        gbc.gridx = 0;
+        gbc.weightx = 0;
+        return gbc;
+    }
+
+    @Override
+    protected void writeAttributes(XMLWriter out, IdMap uid_map) {
+        for (String key : REQUEST_KEYS) {
+            Graph.printAtt(out, key, this.getProperty(key).toString());
+        }
+        for (String key : STREAM_KEYS) {
+            Graph.printAtt(out, key, this.getProperty(key).toString());
+        }
+    }
+
+    @Override
+    protected void readAttribute(XMLReader r, String name, String value, IdMap uid_map) throws SAXException {
+        if (Arrays.asList(REQUEST_KEYS).contains(name) || Arrays.asList(STREAM_KEYS).contains(name)) {
+            this.setProperty(name, value);
+        } else {
+            super.readAttribute(r, name, value, uid_map);
+        }
+    }
+
+    @Override
+    public Color getPortColor(int portNumber) {
+        if (portNumber == 0) {
+            return new Color(0, 150, 0); // Done - green
+        } else if (portNumber == 1) {
+            return new Color(200, 0, 0); // Error - red
+        } else if (portNumber == 2) {
+            return new Color(0, 120, 215); // First chunk - blue
+        }
+        return super.getPortColor(portNumber);
+    }
+}
@@ -5,31 +5,45 @@ import com.clt.script.exp.Value;
 import com.clt.script.exp.values.StringValue;
 import org.json.JSONObject;
 
-import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-import java.io.BufferedReader;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.ProtocolException;
+import java.net.Socket;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 public class HttpHandler {
 
+    static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
     @FunctionalInterface
     private interface HeaderConsumer {
         void accept(String key, String value);
@@ -40,16 +54,115 @@ public class HttpHandler {
         public final String response;
         public final int statusCode;
         public final String errorMessage;
+        public final Map<String, List<String>> headers;
+        /** The parsed JSON response, if it is already known (e.g. from the cache). */
+        public final Object payload;
+        /** The exception that made the request fail, if any. */
+        public final Throwable cause;
         
         public HttpResult(boolean success, String response, int statusCode, String errorMessage) {
+            this(success, response, statusCode, errorMessage, Collections.emptyMap(), null);
+        }
+
+        public HttpResult(boolean success, String response, int statusCode, String errorMessage,
+                          Map<String, List<String>> headers, Object payload) {
+            this(success, response, statusCode, errorMessage, headers, payload, null);
+        }
+
+        public HttpResult(boolean success, String response, int statusCode, String errorMessage,
+                          Map<String, List<String>> headers, Object payload, Throwable cause) {
             this.success = success;
             this.response = response;
             this.statusCode = statusCode;
             this.errorMessage = errorMessage;
+            this.headers = headers;
+            this.payload = payload;
+            this.cause = cause;
+        }
+
+        static HttpResult failure(int statusCode, String errorMessage, Throwable cause) {
+            return new HttpResult(false, null, statusCode, errorMessage, Collections.emptyMap(), null, cause);
+        }
+
+        HttpResult withPayload(Object payload) {
+            return new HttpResult(success, response, statusCode, errorMessage, headers, payload, cause);
+        }
+
+        /**
+         * Returns the first value of the response header, ignoring case, or null.
+         */
+        public String header(String name) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (header.getKey() != null && header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+                    return header.getValue().get(0);
+                }
+            }
+            return null;
         }
     }
     
+    /**
+     * A request whose URL, headers and body have already been resolved against the
+     * dialog's slots, so it can be sent later or from another thread.
+     */
+    public static class PreparedRequest {
+        public final String method;
+        public final String url;
+        public final Map<String, String> headers;
+        public final String body;
+        public final boolean trustAllCertificates;
+
+        public PreparedRequest(String method, String url, Map<String, String> headers, String body, boolean trustAllCertificates) {
+            this.method = method;
+            this.url = url;
+            this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+            this.body = body;
+            this.trustAllCertificates = trustAllCertificates;
+        }
+
+        /**
+         * Returns the value of the request header, ignoring case, or an empty string.
+         */
+        public String header(String name) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+            return "";
+        }
+
+        /**
+         * Identifies requests that may share a response: same method, final URL,
+         * trust mode and request headers. The headers, which include the credentials,
+         * only go into the key as a hash, since cache keys are written to disk.
+         */
+        String key() {
+            TreeMap<String, String> sorted = new TreeMap<>();
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                sorted.put(header.getKey().toLowerCase(Locale.ROOT), header.getValue());
+            }
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                for (Map.Entry<String, String> header : sorted.entrySet()) {
+                    digest.update((header.getKey() + ": " + header.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+                StringBuilder key = new StringBuilder();
+                key.append(method).append(' ').append(url);
+                key.append(trustAllCertificates ? " trust-all" : "");
+                key.append(" headers=");
+                for (byte b : digest.digest()) {
+                    key.append(String.format("%02x", b));
+                }
+                return key.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+
     public static HttpResult sendHttpRequest(
+            HttpPluginRuntime runtime,
             String baseUrl,
             String httpMethod,
             String[] pathVarMappings,
@@ -60,269 +173,668 @@ public class HttpHandler {
             String authValue,
             String customHeaders,
             boolean trustAllCertificates) {
-        
-        String url = buildUrlWithPathVariables(baseUrl, pathVarMappings, slotProvider);
-        
-        Map<String, String> resolvedQueryParams = buildQueryParameters(queryParams, slotProvider);
-        
-        String finalUrl = appendQueryParameters(url, resolvedQueryParams);
+        return sendHttpRequest(runtime, baseUrl, httpMethod, pathVarMappings, queryParams, jsonBody, slotProvider,
+            authType, authValue, customHeaders, trustAllCertificates, RequestOptions.defaults());
+    }
+
+    static HttpResult sendHttpRequest(
+            HttpPluginRuntime runtime,
+            String baseUrl,
+            String httpMethod,
+            String[] pathVarMappings,
+            Map<String, String> queryParams,
+            JSONObject jsonBody,
+            Function<String, Slot> slotProvider,
+            String authType,
+            String authValue,
+            String customHeaders,
+            boolean trustAllCertificates,
+            RequestOptions options) {
 
-        if (trustAllCertificates) {
-            return sendHttpRequestWithHostnameBypass(
-                finalUrl,
+        PreparedRequest request;
+        try {
+            request = prepareRequest(
+                baseUrl,
                 httpMethod,
+                pathVarMappings,
+                queryParams,
                 jsonBody,
+                slotProvider,
                 authType,
                 authValue,
                 customHeaders,
-                slotProvider
+                trustAllCertificates
             );
+        } catch (Exception e) {
+            System.err.println("\n✗ HTTP request could not be prepared: " + e.getMessage());
+            e.printStackTrace();
+            return new HttpResult(false, null, 0, e.getMessage());
         }
+        return execute(runtime, request, options);
+    }
+
+    /**
+     * Resolves path variables, query parameters and headers against the current slot
+     * values. The returned request no longer depends on the dialog state.
+     */
+    public static PreparedRequest prepareRequest(
+            String baseUrl,
+            String httpMethod,
+            String[] pathVarMappings,
+            Map<String, String> queryParams,
+            JSONObject jsonBody,
+            Function<String, Slot> slotProvider,
+            String authType,
+            String authValue,
+            String customHeaders,
+            boolean trustAllCertificates) {
 
+        String url = buildUrlWithPathVariables(baseUrl, pathVarMappings, slotProvider);
+        
+        Map<String, String> resolvedQueryParams = buildQueryParameters(queryParams, slotProvider);
+        
+        String finalUrl = appendQueryParameters(url, resolvedQueryParams);
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        HeaderConsumer headerConsumer = headers::put;
+        addAuthorizationHeader(headerConsumer, authType, authValue, slotProvider);
+        addCustomHeaders(headerConsumer, customHeaders, slotProvider);
+
+        String method = normalizeMethod(httpMethod);
+        String body = methodHasBody(method) ? jsonBody.toString() : null;
+
+        return new PreparedRequest(method, finalUrl, headers, body, trustAllCertificates);
+    }
+
+    public static HttpResult execute(HttpPluginRuntime runtime, PreparedRequest prepared) {
+        return execute(runtime, prepared, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    public static HttpResult execute(HttpPluginRuntime runtime, PreparedRequest prepared, Duration timeout) {
+        return execute(runtime, prepared, RequestOptions.defaults().withTimeout(timeout));
+    }
+
+    /**
+     * Sends the request with the given per-node options. Cacheable GET responses are
+     * served from and stored in the runtime's response cache; successful results
+     * from the cache or of a cacheable request carry their parsed payload.
+     */
+    static HttpResult execute(HttpPluginRuntime runtime, PreparedRequest request, RequestOptions options) {
+        HttpPluginRuntime effectiveRuntime = runtime != null ? runtime : HttpPluginRuntime.getFallback();
+        PreparedRequest prepared = options.retry.prepare(request);
+
+        HttpResult result = executeCached(effectiveRuntime, prepared, options);
+        if (result.cause instanceof CircuitBreaker.OpenException) {
+            result = circuitOpenFallback(effectiveRuntime, prepared, options, result);
+        }
+        if (options.timedOutByDeadline(result)) {
+            System.err.println("✗ Deadline of " + options.deadline.getBudgetMillis() + " ms exceeded: " + prepared.method + " " + prepared.url);
+            return options.deadline.exceeded();
+        }
+        return result;
+    }
+
+    private static HttpResult executeCached(HttpPluginRuntime effectiveRuntime, PreparedRequest prepared, RequestOptions options) {
+        ResponseCache cache = effectiveRuntime.getResponseCache();
+        if (!options.cacheEnabled || options.extractor != null || !ResponseCache.appliesTo(prepared)) {
+            return coalesce(effectiveRuntime, prepared, options);
+        }
+
+        String key = prepared.key();
+        ResponseCache.Entry cached = cache.lookup(key);
+        long now = System.currentTimeMillis();
+
+        if (cached != null && cached.isFresh(now)) {
+            cache.hit();
+            System.out.println("✓ Response served from cache: " + prepared.method + " " + prepared.url);
+            if (cached.isDueForRefresh(now, options.refreshAheadPercent)) {
+                refreshInBackground(effectiveRuntime, key, prepared, options, cached);
+            }
+            return cached.toResult();
+        }
+
+        if (cached != null && cached.isUsableWhileRevalidating(now, options.staleWhileRevalidateSeconds)) {
+            cache.staleHit();
+            System.out.println("✓ Expired response served from cache while it is refreshed: " + prepared.url);
+            refreshInBackground(effectiveRuntime, key, prepared, options, cached);
+            return cached.toResult();
+        }
+
+        cache.miss();
+        HttpResult result = fetch(effectiveRuntime, key, prepared, options, cached);
+        if (!result.success && cached != null && cached.isUsableOnError(now, options.staleIfErrorSeconds)) {
+            cache.staleOnError();
+            System.out.println("✓ Request failed (" + result.errorMessage + "), expired response served from cache: " + prepared.url);
+            return cached.toResult();
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the result of a request rejected by an open circuit breaker with the
+     * node's fallback: any cached response for the request, or a configured payload.
+     */
+    private static HttpResult circuitOpenFallback(HttpPluginRuntime runtime, PreparedRequest prepared,
+                                                  RequestOptions options, HttpResult rejected) {
+        if (RequestOptions.FALLBACK_CACHE.equals(options.breakerFallback) && ResponseCache.appliesTo(prepared)) {
+            ResponseCache.Entry cached = runtime.getResponseCache().lookup(prepared.key());
+            if (cached != null) {
+                System.out.println("✓ Circuit open, cached response used as fallback: " + prepared.url);
+                return cached.toResult();
+            }
+        } else if (RequestOptions.FALLBACK_PAYLOAD.equals(options.breakerFallback)) {
+            try {
+                Object payload = RequestDefinition.parseResponsePayload(options.breakerFallbackPayload);
+                System.out.println("✓ Circuit open, fallback payload used: " + prepared.url);
+                return new HttpResult(true, options.breakerFallbackPayload, 200, null, Collections.emptyMap(), payload);
+            } catch (Exception e) {
+                System.err.println("Invalid circuit breaker fallback payload: " + e.getMessage());
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Sends the request for a cache miss, conditionally if the previous entry has
+     * validators, and stores the outcome in the cache.
+     */
+    private static HttpResult fetch(HttpPluginRuntime runtime, String key, PreparedRequest prepared,
+                                    RequestOptions options, ResponseCache.Entry previous) {
+        ResponseCache cache = runtime.getResponseCache();
+        ResponseCache.Entry revalidating = previous != null && previous.hasValidators() ? previous : null;
+
+        HttpResult result = coalesce(runtime, revalidating != null ? revalidating.conditional(prepared) : prepared, options);
+        if (revalidating != null && result.statusCode == 304) {
+            System.out.println("✓ Cached response is still valid (304 Not Modified): " + prepared.url);
+            return cache.revalidated(key, revalidating, result, options.cacheTtlSeconds).toResult();
+        }
+        if (result.success && result.statusCode == 200 && result.payload == null) {
+            try {
+                result = result.withPayload(RequestDefinition.parseResponsePayload(result.response));
+            } catch (Exception e) {
+                // not JSON, so the caller will report it; nothing worth caching
+                return result;
+            }
+            cache.put(key, result, options.cacheTtlSeconds);
+        }
+        return result;
+    }
+
+    /**
+     * Refreshes a cache entry on the runtime's task executor, unless a refresh of
+     * the same entry is already running.
+     */
+    private static void refreshInBackground(HttpPluginRuntime runtime, String key, PreparedRequest prepared,
+                                            RequestOptions options, ResponseCache.Entry previous) {
+        ResponseCache cache = runtime.getResponseCache();
+        if (!cache.beginRefresh(key)) {
+            return;
+        }
+        try {
+            runtime.getTaskExecutor().execute(() -> {
+                try {
+                    fetch(runtime, key, prepared, options, previous);
+                } catch (Exception e) {
+                    System.err.println("Background refresh of " + prepared.url + " failed: " + e.getMessage());
+                } finally {
+                    cache.endRefresh(key);
+                }
+            });
+        } catch (Exception e) {
+            cache.endRefresh(key);
+            System.err.println("Background refresh of " + prepared.url + " not started: " + e.getMessage());
+        }
+    }
+
+    private static HttpResult coalesce(HttpPluginRuntime runtime, PreparedRequest prepared, RequestOptions options) {
+        RequestCoalescer coalescer = runtime.getCoalescer();
+        if (coalescer != null && options.extractor == null && coalescer.appliesTo(prepared)) {
+            return coalescer.execute(prepared, options, () -> sendWithRetries(runtime, prepared, options));
+        }
+        return sendWithRetries(runtime, prepared, options);
+    }
+
+    private static HttpResult sendWithRetries(HttpPluginRuntime runtime, PreparedRequest prepared, RequestOptions options) {
+        return options.retry.run(prepared, runtime.getRetryBudget(), options.deadline, request -> sendHedged(runtime, request, options));
+    }
+
+    /**
+     * GET, PUT and DELETE, and other requests that carry an Idempotency-Key header,
+     * can be sent more than once without duplicate effects.
+     */
+    static boolean isIdempotent(PreparedRequest request) {
+        switch (request.method) {
+            case "GET":
+            case "PUT":
+            case "DELETE":
+                return true;
+            default:
+                return !request.header(RetryPolicy.IDEMPOTENCY_KEY_HEADER).isEmpty();
+        }
+    }
+
+    /**
+     * Sends the request and, if hedging is enabled and no response has arrived after
+     * the hedging delay, an identical second one. The first successful response wins
+     * and the other request is cancelled.
+     */
+    private static HttpResult sendHedged(HttpPluginRuntime runtime, PreparedRequest prepared, RequestOptions options) {
+        if (!options.hedgeEnabled || !isIdempotent(prepared)) {
+            return sendThrottled(runtime, prepared, options);
+        }
+        RetryBudget budget = runtime.getHedgeBudget();
+        budget.onRequest();
+        long delay = options.hedgeDelayFor(runtime.getLatencyTracker(prepared.url));
+
+        CompletionService<HttpResult> completion = new ExecutorCompletionService<>(runtime.getTaskExecutor());
+        List<Future<HttpResult>> requests = new ArrayList<>();
         try {
-            HttpClient.Builder clientBuilder = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10));
+            requests.add(completion.submit(() -> sendThrottled(runtime, prepared, options)));
+            Future<HttpResult> done = completion.poll(delay, TimeUnit.MILLISECONDS);
+            if (done == null && budget.tryAcquire()) {
+                System.out.println("No response after " + delay + " ms, sending hedged request: " + prepared.method + " " + prepared.url);
+                requests.add(completion.submit(() -> sendThrottled(runtime, prepared, options)));
+            }
 
-            HttpClient client = clientBuilder.build();
+            HttpResult result = (done != null ? done : completion.take()).get();
+            for (int pending = requests.size() - 1; !result.success && pending > 0; pending--) {
+                HttpResult other = completion.take().get();
+                if (other.success) {
+                    result = other;
+                }
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return HttpResult.failure(0, "Request interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return HttpResult.failure(0, cause.getMessage(), cause);
+        } finally {
+            for (Future<HttpResult> request : requests) {
+                request.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Sends the request once the rate limit of its host allows it, and lets the
+     * limiter learn from the status and rate limit headers of the response.
+     */
+    private static HttpResult sendThrottled(HttpPluginRuntime runtime, PreparedRequest prepared, RequestOptions options) {
+        if (options.isDeadlineExpired()) {
+            System.err.println("\n✗ Deadline exceeded, request not sent: " + prepared.method + " " + prepared.url);
+            return options.deadline.exceeded();
+        }
+        RateLimiter limiter = runtime.getRateLimiter(prepared.url);
+        if (limiter == null) {
+            return sendGuarded(runtime, prepared, options);
+        }
+        try {
+            if (!limiter.acquire(options.capWait(runtime.getRateLimitMaxWaitMillis()))) {
+                System.err.println("\n✗ Rate limit reached, request not sent: " + prepared.method + " " + prepared.url);
+                return HttpResult.failure(429, "Rate limit reached for " + limiter.getHost(),
+                    new RateLimiter.RateLimitedException(limiter.getHost(), runtime.getRateLimitMaxWaitMillis()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return HttpResult.failure(0, "Request interrupted", e);
+        }
+        HttpResult result = sendGuarded(runtime, prepared, options);
+        limiter.onResponse(result);
+        return result;
+    }
+
+    /**
+     * Sends the request through the circuit breaker of its host, if there is one.
+     */
+    private static HttpResult sendGuarded(HttpPluginRuntime runtime, PreparedRequest prepared, RequestOptions options) {
+        CircuitBreaker breaker = runtime.getCircuitBreaker(prepared.url);
+        if (breaker == null) {
+            return sendLimited(runtime, prepared, options);
+        }
+        if (!breaker.tryAcquire()) {
+            System.err.println("\n✗ Circuit breaker open, request not sent: " + prepared.method + " " + prepared.url);
+            return HttpResult.failure(503, "Circuit breaker open for " + breaker.getHost(),
+                new CircuitBreaker.OpenException(breaker.getHost()));
+        }
+        long start = System.nanoTime();
+        HttpResult result = sendLimited(runtime, prepared, options);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        // cancelled hedges, timeouts shortened by the deadline and requests the
+        // concurrency limiter did not send say nothing about the health of the host
+        if (result.cause instanceof InterruptedException || result.cause instanceof ConcurrencyLimiter.LimitExceededException
+                || options.timedOutByDeadline(result)) {
+            breaker.onIgnored();
+        } else {
+            breaker.onResult(isServerFailure(result), elapsed);
+        }
+        return result;
+    }
+
+    /**
+     * Sends the request within the concurrency limit of its host, if there is one,
+     * waiting for a free slot as long as the node allows.
+     */
+    private static HttpResult sendLimited(HttpPluginRuntime runtime, PreparedRequest prepared, RequestOptions options) {
+        ConcurrencyLimiter limiter = runtime.getConcurrencyLimiter(prepared.url);
+        if (limiter == null) {
+            return sendTimed(runtime, prepared, options);
+        }
+        try {
+            if (!limiter.acquire(options.capWait(options.limiterWaitMillis))) {
+                System.err.println("\n✗ Too many concurrent requests, request not sent: " + prepared.method + " " + prepared.url);
+                return HttpResult.failure(503, "Concurrency limit reached for " + limiter.getHost(),
+                    new ConcurrencyLimiter.LimitExceededException(limiter.getHost(), limiter.getLimit()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return HttpResult.failure(0, "Request interrupted", e);
+        }
+
+        long start = System.nanoTime();
+        HttpResult result = null;
+        try {
+            result = sendTimed(runtime, prepared, options);
+            return result;
+        } finally {
+            if (result == null || result.cause instanceof InterruptedException || options.timedOutByDeadline(result)) {
+                limiter.releaseWithoutSample();
+            } else {
+                boolean overloaded = result.cause instanceof HttpTimeoutException
+                    || result.statusCode == 408 || result.statusCode == 429 || result.statusCode == 503;
+                limiter.release((System.nanoTime() - start) / 1_000_000, overloaded);
+            }
+        }
+    }
+
+    /**
+     * Sends the request and records the latency of successful responses for the host.
+     */
+    private static HttpResult sendTimed(HttpPluginRuntime runtime, PreparedRequest prepared, RequestOptions options) {
+        long start = System.nanoTime();
+        HttpResult result = send(runtime, prepared, options);
+        LatencyTracker latencies = runtime.getLatencyTracker(prepared.url);
+        if (result.success && latencies != null) {
+            latencies.record((System.nanoTime() - start) / 1_000_000);
+        }
+        return result;
+    }
+
+    /**
+     * True if the result indicates a problem of the server or the network rather
+     * than of the request, i.e. an exception, a timeout or a 5xx status.
+     */
+    static boolean isServerFailure(HttpResult result) {
+        if (result.success || result.cause instanceof InterruptedException
+                || result.cause instanceof ConcurrencyLimiter.LimitExceededException
+                || result.cause instanceof RateLimiter.RateLimitedException) {
+            return false;
+        }
+        return result.cause != null || result.statusCode == 408 || result.statusCode >= 500;
+    }
+
+    private static HttpResult send(HttpPluginRuntime runtime, PreparedRequest prepared, RequestOptions options) {
+        Duration timeout = options.currentTimeout();
+        if (prepared.trustAllCertificates) {
+            System.out.println("TrustAllCertificates flag is enabled for this request.");
+            System.out.println("WARNING: TLS certificate and hostname validation is disabled for this request.");
+        }
+
+        try {
+            HttpClient client = runtime.getClient(prepared.trustAllCertificates);
             
             HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                .uri(URI.create(finalUrl))
+                .uri(URI.create(prepared.url))
                 .header("Content-Type", "application/json")
                 .header("Accept", "application/json")
-                .timeout(Duration.ofSeconds(30));
-            
-            HeaderConsumer builderHeaders = (key, value) -> requestBuilder.header(key, value);
-            addAuthorizationHeader(builderHeaders, authType, authValue, slotProvider);
+                .timeout(timeout);
+            if (prepared.header("Accept-Encoding").isEmpty()) {
+                requestBuilder.header("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING);
+            }
             
-            addCustomHeaders(builderHeaders, customHeaders, slotProvider);
+            for (Map.Entry<String, String> header : prepared.headers.entrySet()) {
+                requestBuilder.header(header.getKey(), header.getValue());
+            }
             
-            switch (httpMethod.toUpperCase()) {
-                case "GET":
-                    requestBuilder.GET();
-                    break;
-                case "POST":
-                    requestBuilder.POST(HttpRequest.BodyPublishers.ofString(jsonBody.toString()));
-                    break;
-                case "PUT":
-                    requestBuilder.PUT(HttpRequest.BodyPublishers.ofString(jsonBody.toString()));
-                    break;
-                case "DELETE":
-                    requestBuilder.DELETE();
-                    break;
-                case "PATCH":
-                    requestBuilder.method("PATCH", HttpRequest.BodyPublishers.ofString(jsonBody.toString()));
-                    break;
-                default:
-                    requestBuilder.POST(HttpRequest.BodyPublishers.ofString(jsonBody.toString()));
+            if (prepared.body != null) {
+                requestBuilder.method(prepared.method, bodyPublisher(runtime, prepared, options, requestBuilder));
+            } else {
+                requestBuilder.method(prepared.method, HttpRequest.BodyPublishers.noBody());
             }
             
             HttpRequest request = requestBuilder.build();
 
-            HttpResponse<String> response;
+            HttpResponse<InputStream> response;
+            String responseBody;
             try {
-                response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                if (options.extractor != null) {
+                    return streamed(response, options, runtime.getTransferStats());
+                }
+                responseBody = options.bodyLimit.read(response, runtime.getTransferStats());
             } catch (HttpTimeoutException e) {
-                System.err.println("\n✗ HTTP request timed out after 30 seconds");
+                System.err.println("\n✗ HTTP request timed out after " + describe(timeout));
                 System.err.println("The server did not respond within the timeout period.");
                 e.printStackTrace();
-                return new HttpResult(false, null, 408, "Timeout: Server did not respond within 30 seconds");
+                return HttpResult.failure(408, "Timeout: Server did not respond within " + describe(timeout), e);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 System.err.println("\n✗ HTTP request interrupted");
-                return new HttpResult(false, null, 0, "Request interrupted");
+                return HttpResult.failure(0, "Request interrupted", e);
             }
             
             System.out.println("Status Code: " + response.statusCode());
             System.out.println("Headers: " + response.headers().map());
             System.out.println("\nResponse Body:");
-            System.out.println(response.body());
+            System.out.println(ResponseBodyLimit.preview(responseBody));
             
             if (response.statusCode() >= 200 && response.statusCode() < 300) {
                 System.out.println("✓ HTTP request successful");
-                return new HttpResult(true, response.body(), response.statusCode(), null);
+                return new HttpResult(true, responseBody, response.statusCode(), null, response.headers().map(), null);
+            } else if (response.statusCode() == 304) {
+                System.out.println("Response not modified (304)");
+                return new HttpResult(false, null, 304, "HTTP 304", response.headers().map(), null);
             } else {
                 System.err.println("✗ HTTP request failed with status: " + response.statusCode());
-                return new HttpResult(false, response.body(), response.statusCode(), "HTTP " + response.statusCode());
+                return new HttpResult(false, responseBody, response.statusCode(), "HTTP " + response.statusCode(), response.headers().map(), null);
             }
             
         } catch (java.net.ConnectException e) {
             System.err.println("\n✗ Connection refused: The server is not reachable");
             System.err.println("Possible reasons: Wrong URL, server offline, firewall blocking");
             e.printStackTrace();
-            return new HttpResult(false, null, 503, "Connection refused: Server not reachable");
+            return HttpResult.failure(503, "Connection refused: Server not reachable", e);
         } catch (java.net.UnknownHostException e) {
             System.err.println("\n✗ Unknown host: The domain could not be resolved");
             System.err.println("Check if the URL is correct and you have internet connection");
             e.printStackTrace();
-            return new HttpResult(false, null, 0, "Unknown host: Domain not found");
+            return HttpResult.failure(0, "Unknown host: Domain not found", e);
         } catch (java.io.IOException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof ResponseBodyLimit.TooLargeException) {
+                    System.err.println("\n✗ " + cause.getMessage() + ", request aborted: " + prepared.method + " " + prepared.url);
+                    return HttpResult.failure(0, cause.getMessage(), cause);
+                }
+            }
             System.err.println("\n✗ HTTP request IO error: " + e.getMessage());
             e.printStackTrace();
-            return new HttpResult(false, null, 0, "IO Error: " + e.getMessage());
+            return HttpResult.failure(0, "IO Error: " + e.getMessage(), e);
         } catch (Exception e) {
             System.err.println("\n✗ HTTP request failed: " + e.getMessage());
             e.printStackTrace();
-            return new HttpResult(false, null, 0, e.getMessage());
+            return HttpResult.failure(0, e.getMessage(), e);
         }
     }
 
-    private static SSLContext createTrustAllContext() throws Exception {
-        TrustManager[] trustAllManagers = new TrustManager[]{
-            new X509TrustManager() {
-                @Override
-                public void checkClientTrusted(X509Certificate[] chain, String authType) {}
-
-                @Override
-                public void checkServerTrusted(X509Certificate[] chain, String authType) {}
-
-                @Override
-                public X509Certificate[] getAcceptedIssuers() {
-                    return new X509Certificate[0];
-                }
-            }
-        };
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, trustAllManagers, new SecureRandom());
-        return sslContext;
+    /**
+     * Sends bodies above the node's threshold gzip-compressed, deflating them while
+     * the client writes them out, unless a header mapping already set an encoding.
+     */
+    private static HttpRequest.BodyPublisher bodyPublisher(HttpPluginRuntime runtime, PreparedRequest prepared,
+                                                           RequestOptions options, HttpRequest.Builder requestBuilder) {
+        if (options.compressAboveBytes < 0 || !prepared.header("Content-Encoding").isEmpty()) {
+            return HttpRequest.BodyPublishers.ofString(prepared.body);
+        }
+        byte[] body = prepared.body.getBytes(StandardCharsets.UTF_8);
+        if (body.length <= options.compressAboveBytes) {
+            return HttpRequest.BodyPublishers.ofByteArray(body);
+        }
+        requestBuilder.header("Content-Encoding", ContentEncoding.GZIP);
+        return HttpRequest.BodyPublishers.ofInputStream(() -> ContentEncoding.gzip(body, runtime.getTransferStats()));
     }
 
-    private static HttpResult sendHttpRequestWithHostnameBypass(
-            String finalUrl,
-            String httpMethod,
-            JSONObject jsonBody,
-            String authType,
-            String authValue,
-            String customHeaders,
-            Function<String, Slot> slotProvider) {
-
-        System.out.println("TrustAllCertificates flag is enabled for this request.");
-        System.out.println("WARNING: TLS certificate validation is disabled for this request.");
+    /**
+     * Builds the result of a streamed response: successful JSON responses are read
+     * only as far as the extractor needs, other responses are read completely.
+     */
+    private static HttpResult streamed(HttpResponse<InputStream> response, RequestOptions options,
+                                       ContentEncoding.Stats stats) throws IOException {
+        System.out.println("Status Code: " + response.statusCode());
+        System.out.println("Headers: " + response.headers().map());
+        Charset charset = ResponseBodyLimit.charsetOf(response);
 
-        HttpURLConnection connection = null;
-        try {
-            URI uri = URI.create(finalUrl);
-            connection = (HttpURLConnection) uri.toURL().openConnection();
-            configureRequestMethod(connection, httpMethod);
-            connection.setConnectTimeout(10_000);
-            connection.setReadTimeout(30_000);
-            connection.setDoInput(true);
-            boolean hasBody = requestMethodAllowsBody(httpMethod);
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("Accept", "application/json");
-
-            if (connection instanceof HttpsURLConnection) {
-                HttpsURLConnection httpsConnection = (HttpsURLConnection) connection;
-                SSLContext sslContext = createTrustAllContext();
-                httpsConnection.setSSLSocketFactory(sslContext.getSocketFactory());
-                httpsConnection.setHostnameVerifier((hostname, session) -> true);
-                System.out.println("HTTPS trust-all mode: custom SSLSocketFactory and HostnameVerifier installed.");
+        try (InputStream body = options.bodyLimit.open(response, stats)) {
+            if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                Object payload = options.extractor.extract(new InputStreamReader(body, charset));
+                System.out.println("✓ HTTP request successful");
+                return new HttpResult(true, null, response.statusCode(), null, response.headers().map(), payload);
             }
-
-            HeaderConsumer connectionHeaders = connection::setRequestProperty;
-            addAuthorizationHeader(connectionHeaders, authType, authValue, slotProvider);
-            addCustomHeaders(connectionHeaders, customHeaders, slotProvider);
-
-            if (hasBody) {
-                connection.setDoOutput(true);
-                byte[] payload = jsonBody.toString().getBytes(StandardCharsets.UTF_8);
-                try (OutputStream os = connection.getOutputStream()) {
-                    os.write(payload);
-                }
+            String text = new String(body.readAllBytes(), charset);
+            System.out.println("\nResponse Body:");
+            System.out.println(ResponseBodyLimit.preview(text));
+            if (response.statusCode() == 304) {
+                System.out.println("Response not modified (304)");
+                return new HttpResult(false, null, 304, "HTTP 304", response.headers().map(), null);
             }
+            System.err.println("✗ HTTP request failed with status: " + response.statusCode());
+            return new HttpResult(false, text, response.statusCode(), "HTTP " + response.statusCode(), response.headers().map(), null);
+        }
+    }
 
-            int statusCode = connection.getResponseCode();
-            String responseBody = readResponseBody(connection, statusCode);
+    /**
+     * Sends a request for a Server-Sent Events stream and returns the open response
+     * once its headers have arrived; the timeout only covers that part. The stream
+     * is not compressed, since a decoder would hold back events until its buffer is
+     * full. Error responses are read and reported as an {@link IOException}.
+     */
+    static HttpResponse<InputStream> openEventStream(HttpPluginRuntime runtime, PreparedRequest prepared,
+                                                     Duration timeout) throws IOException, InterruptedException {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+            .uri(URI.create(prepared.url))
+            .header("Content-Type", "application/json")
+            .header("Accept", "text/event-stream")
+            .header("Cache-Control", "no-cache")
+            .timeout(timeout);
+        for (Map.Entry<String, String> header : prepared.headers.entrySet()) {
+            requestBuilder.header(header.getKey(), header.getValue());
+        }
+        requestBuilder.method(prepared.method, prepared.body != null
+            ? HttpRequest.BodyPublishers.ofString(prepared.body)
+            : HttpRequest.BodyPublishers.noBody());
 
-            System.out.println("Status Code: " + statusCode);
-            System.out.println("Headers: " + connection.getHeaderFields());
+        HttpClient client = runtime.getClient(prepared.trustAllCertificates);
+        HttpResponse<InputStream> response = client.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        System.out.println("Status Code: " + response.statusCode());
+        System.out.println("Headers: " + response.headers().map());
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            String text = ResponseBodyLimit.none().read(response, runtime.getTransferStats());
             System.out.println("\nResponse Body:");
-            System.out.println(responseBody);
-
-            if (statusCode >= 200 && statusCode < 300) {
-                System.out.println("✓ HTTP request successful");
-                return new HttpResult(true, responseBody, statusCode, null);
-            } else {
-                System.err.println("✗ HTTP request failed with status: " + statusCode);
-                return new HttpResult(false, responseBody, statusCode, "HTTP " + statusCode);
-            }
+            System.out.println(ResponseBodyLimit.preview(text));
+            throw new IOException("HTTP " + response.statusCode());
+        }
+        return response;
+    }
 
-        } catch (java.net.ConnectException e) {
-            System.err.println("\n✗ Connection refused: The server is not reachable");
-            System.err.println("Possible reasons: Wrong URL, server offline, firewall blocking");
-            e.printStackTrace();
-            return new HttpResult(false, null, 503, "Connection refused: Server not reachable");
-        } catch (java.net.UnknownHostException e) {
-            System.err.println("\n✗ Unknown host: The domain could not be resolved");
-            System.err.println("Check if the URL is correct and you have internet connection");
-            e.printStackTrace();
-            return new HttpResult(false, null, 0, "Unknown host: Domain not found");
-        } catch (Exception e) {
-            System.err.println("\n✗ HTTP request failed: " + e.getMessage());
-            e.printStackTrace();
-            return new HttpResult(false, null, 0, e.getMessage());
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
+    /**
+     * Returns the charset of a Content-Type header value, UTF-8 if there is none.
+     */
+    static Charset charsetOf(String contentType) {
+        for (String parameter : contentType.split(";")) {
+            String[] pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")) {
+                try {
+                    return Charset.forName(pair[1].trim().replace("\"", ""));
+                } catch (Exception e) {
+                    break;
+                }
             }
         }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static String describe(Duration timeout) {
+        long millis = timeout.toMillis();
+        return millis % 1000 == 0 ? (millis / 1000) + " seconds" : millis + " ms";
     }
 
-    private static void configureRequestMethod(HttpURLConnection connection, String httpMethod) throws ProtocolException {
-        String upper = httpMethod == null ? "GET" : httpMethod.toUpperCase();
+    private static String normalizeMethod(String httpMethod) {
+        String upper = httpMethod == null ? "" : httpMethod.trim().toUpperCase();
         switch (upper) {
             case "GET":
             case "POST":
             case "PUT":
             case "DELETE":
-                connection.setRequestMethod(upper);
-                break;
             case "PATCH":
-                connection.setRequestProperty("X-HTTP-Method-Override", "PATCH");
-                connection.setRequestMethod("POST");
-                break;
+                return upper;
             default:
-                connection.setRequestMethod("POST");
-                break;
+                return "POST";
         }
     }
 
-    private static boolean requestMethodAllowsBody(String httpMethod) {
-        String upper = httpMethod == null ? "POST" : httpMethod.toUpperCase();
-        switch (upper) {
-            case "POST":
-            case "PUT":
-            case "PATCH":
-                return true;
-            default:
-                return !upper.equals("GET") && !upper.equals("DELETE");
-        }
+    private static boolean methodHasBody(String method) {
+        return method.equals("POST") || method.equals("PUT") || method.equals("PATCH");
     }
 
-    private static String readResponseBody(HttpURLConnection connection, int statusCode) {
-        InputStream stream = null;
-        try {
-            if (statusCode >= 200 && statusCode < 300) {
-                stream = connection.getInputStream();
-            } else {
-                stream = connection.getErrorStream();
-            }
-            if (stream == null) {
-                return "";
-            }
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
-                StringBuilder sb = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    sb.append(line).append(System.lineSeparator());
+    /**
+     * Returns the trust-all SSL context shared by all trust-all clients. Its trust manager
+     * is an {@link X509ExtendedTrustManager}, so the JSSE does not add its own hostname
+     * check on top of it and certificate and hostname validation are both skipped.
+     */
+    static SSLContext getTrustAllContext() {
+        return TrustAllContextHolder.CONTEXT;
+    }
+
+    private static final class TrustAllContextHolder {
+        private static final SSLContext CONTEXT = createTrustAllContext();
+
+        private static SSLContext createTrustAllContext() {
+            TrustManager[] trustAllManagers = new TrustManager[]{
+                new X509ExtendedTrustManager() {
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] chain, String authType) {}
+
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] chain, String authType) {}
+
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) {}
+
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) {}
+
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {}
+
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) {}
+
+                    @Override
+                    public X509Certificate[] getAcceptedIssuers() {
+                        return new X509Certificate[0];
+                    }
                 }
-                return sb.toString().trim();
+            };
+            try {
+                SSLContext sslContext = SSLContext.getInstance("TLS");
+                sslContext.init(null, trustAllManagers, new SecureRandom());
+                return sslContext;
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to create trust-all SSL context: " + e.getMessage(), e);
             }
-        } catch (Exception e) {
-            System.err.println("Failed to read HTTP response body: " + e.getMessage());
-            return "";
         }
     }
-    
+
     private static String buildUrlWithPathVariables(
             String baseUrl,
             String[] pathVarMappings,
@@ -33,7 +33,9 @@ public class HttpPlugin implements com.clt.dialogos.plugin.Plugin {
         // Register custom node types
         Node.registerNodeTypes(
             getId(),
-            Arrays.<Class<?>>asList(SendNode.class, SendAndReceiveNode.class)
+            Arrays.<Class<?>>asList(SendNode.class, SendAndReceiveNode.class, ParallelRequestNode.class,
+                EventStreamNode.class, WebSocketNode.class, StartRequestNode.class, AwaitRequestNode.class,
+                BatchRequestNode.class)
         );
     }
 
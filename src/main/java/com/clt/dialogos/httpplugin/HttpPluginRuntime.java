@@ -1,11 +1,590 @@
 package com.clt.dialogos.httpplugin;
 
 import com.clt.dialogos.plugin.PluginRuntime;
+import com.clt.diamant.WozInterface;
+import com.clt.diamant.graph.Node;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Per-execution state of the HTTP plugin. The runtime owns the {@link HttpClient}
+ * instances shared by all HTTP nodes, so that connections (keep-alive and HTTP/2)
+ * are reused across dialog turns instead of being set up again for every request.
+ */
 public class HttpPluginRuntime implements PluginRuntime {
 
+
+    private static HttpPluginRuntime fallbackRuntime;
+
+    private final HttpClient.Version httpVersion;
+    private final int asyncQueueSize;
+    private final int asyncWorkers;
+    private final Map<ClientKey, HttpClient> clients = new ConcurrentHashMap<>();
+    private final ExecutorService clientExecutor;
+    private final ExecutorService taskExecutor;
+    private final RequestCoalescer coalescer;
+    private final ResponseCache responseCache;
+    private final RetryBudget retryBudget;
+    private final HttpPluginSettings settings;
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final Map<String, LatencyTracker> latencyTrackers = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+    private final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+    private final ContentEncoding.Stats transferStats = new ContentEncoding.Stats();
+    private final Set<Closeable> openStreams = ConcurrentHashMap.newKeySet();
+    private final Map<String, WebSocketConnection> webSockets = new ConcurrentHashMap<>();
+    private final PendingRequests pendingRequests = new PendingRequests();
+    private final Prefetcher prefetcher = new Prefetcher(this);
+    private ScheduledExecutorService scheduler;
+    private volatile TurnDeadline turnDeadline;
+    private final Queue<Runnable> lateWrites = new ConcurrentLinkedQueue<>();
+    private final RetryBudget hedgeBudget;
+    private AsyncDispatcher asyncDispatcher;
+    private volatile boolean closing = false;
+    private volatile boolean disposed = false;
+
+    /**
+     * Creates a runtime with default settings, which leaves the JVM-wide response body
+     * budget to the runtimes of configured dialogs.
+     */
+    public HttpPluginRuntime() {
+        this(new HttpPluginSettings(), false);
+    }
+
+    public HttpPluginRuntime(HttpPluginSettings settings) {
+        this(settings, true);
+    }
+
+    private HttpPluginRuntime(HttpPluginSettings settings, boolean configureBodyBudget) {
+        this.httpVersion = settings.getHttpVersion();
+        this.asyncQueueSize = settings.getAsyncQueueSize();
+        this.asyncWorkers = settings.getAsyncWorkers();
+        this.clientExecutor = Executors.newCachedThreadPool(daemonThreadFactory("http-plugin-client"));
+        this.taskExecutor = Executors.newCachedThreadPool(daemonThreadFactory("http-plugin-task"));
+        this.coalescer = settings.isCoalesceRequests() ? RequestCoalescer.GLOBAL : null;
+        this.responseCache = new ResponseCache(settings.getCacheMaxSizeBytes(), settings.getCacheMaxEntrySizeBytes(),
+            openDiskCache(settings));
+        this.retryBudget = new RetryBudget(settings.getRetryBudgetPercent());
+        this.hedgeBudget = new RetryBudget(settings.getHedgeBudgetPercent());
+        this.settings = settings;
+        if (configureBodyBudget) {
+            BodyBudget.GLOBAL.configure(settings.getResponseBodyBudgetBytes());
+        }
+    }
+
+    /**
+     * Returns the runtime to use when a node runs without a plugin runtime
+     * (e.g. outside of a regular dialog execution).
+     */
+    static synchronized HttpPluginRuntime getFallback() {
+        if (fallbackRuntime == null || fallbackRuntime.closing) {
+            fallbackRuntime = new HttpPluginRuntime();
+        }
+        return fallbackRuntime;
+    }
+
+    /**
+     * Returns the shared client for the given trust mode, creating it on first use.
+     */
+    HttpClient getClient(boolean trustAllCertificates) {
+        if (disposed) {
+            throw new IllegalStateException("HTTP plugin runtime has already been disposed");
+        }
+        return clients.computeIfAbsent(new ClientKey(trustAllCertificates, httpVersion), this::createClient);
+    }
+
+    /**
+     * Returns the single-flight coalescer for GET requests, which all dialogs in the
+     * JVM share, or null if coalescing is disabled in the plugin settings.
+     */
+    RequestCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    /**
+     * Returns the response cache shared by all nodes that have caching enabled.
+     */
+    ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Returns the budget that limits retries across all nodes.
+     */
+    RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * Returns the circuit breaker for the host of the URL, or null if circuit
+     * breakers are disabled or the URL has no host.
+     */
+    CircuitBreaker getCircuitBreaker(String url) {
+        String host = hostOf(url);
+        if (!settings.isCircuitBreaker() || host == null) {
+            return null;
+        }
+        return circuitBreakers.computeIfAbsent(host, h -> new CircuitBreaker(h,
+            settings.getBreakerFailureRate(),
+            settings.getBreakerSlowCallMillis(),
+            settings.getBreakerSlowCallRate(),
+            settings.getBreakerOpenMillis()));
+    }
+
+    /**
+     * Returns the adaptive concurrency limiter for the host of the URL, or null if
+     * concurrency limits are disabled or the URL has no host.
+     */
+    ConcurrencyLimiter getConcurrencyLimiter(String url) {
+        String host = hostOf(url);
+        if (!settings.isConcurrencyLimit() || host == null) {
+            return null;
+        }
+        return concurrencyLimiters.computeIfAbsent(host,
+            h -> new ConcurrencyLimiter(h, settings.getInitialConcurrencyLimit(), settings.getMaxConcurrencyLimit()));
+    }
+
+    /**
+     * Returns the rate limiter for the host of the URL, or null if rate limits are
+     * disabled or the URL has no host.
+     */
+    RateLimiter getRateLimiter(String url) {
+        String host = hostOf(url);
+        if (!settings.isRateLimit() || host == null) {
+            return null;
+        }
+        return rateLimiters.computeIfAbsent(host,
+            h -> new RateLimiter(h, settings.getRateLimitRate(h), settings.getRateLimitBurst(h)));
+    }
+
+    /**
+     * Returns how long a request may wait for its turn under the rate limit.
+     */
+    long getRateLimitMaxWaitMillis() {
+        return settings.getRateLimitMaxWaitMillis();
+    }
+
+    /**
+     * Returns the byte counters of compressed requests and of all responses.
+     */
+    ContentEncoding.Stats getTransferStats() {
+        return transferStats;
+    }
+
+    /**
+     * Registers a stream that outlives the node that opened it, so that it is closed
+     * when the dialog ends.
+     */
+    void registerStream(Closeable stream) {
+        openStreams.add(stream);
+    }
+
+    void unregisterStream(Closeable stream) {
+        openStreams.remove(stream);
+    }
+
+    /**
+     * Returns the requests started by one node and awaited by another.
+     */
+    PendingRequests getPendingRequests() {
+        return pendingRequests;
+    }
+
+    Prefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    /**
+     * Returns the WebSocket connection of the given name, opening it on first use.
+     * A connection whose URL or headers have changed is replaced.
+     */
+    WebSocketConnection getWebSocket(String name, String url, Map<String, String> headers, boolean trustAllCertificates) {
+        HttpClient client = getClient(trustAllCertificates);
+        WebSocketConnection connection = webSockets.compute(name, (key, existing) -> {
+            if (existing != null && existing.getUrl().equals(url) && existing.getHeaders().equals(headers)) {
+                return existing;
+            }
+            if (existing != null) {
+                System.out.println("WebSocket '" + key + "' now connects to " + url + ", closing the old connection");
+                existing.close();
+            }
+            return new WebSocketConnection(key, url, headers, client, getScheduler());
+        });
+        connection.connect();
+        return connection;
+    }
+
+    /**
+     * Closes the WebSocket connection of the given name. Returns false if there is none.
+     */
+    boolean closeWebSocket(String name) {
+        WebSocketConnection connection = webSockets.remove(name);
+        if (connection == null) {
+            return false;
+        }
+        System.out.println("WebSocket " + connection);
+        connection.close();
+        return true;
+    }
+
+    /**
+     * Runs the task once after the delay on the runtime's scheduler thread.
+     */
+    ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return getScheduler().schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("http-plugin-scheduler"));
+        }
+        return scheduler;
+    }
+
+    /**
+     * Called by every HTTP node when the dialog enters it, on the dialog thread: maps
+     * the responses that arrived after their deadline, ends the turn deadline if the
+     * node belongs to a later turn, and starts the prefetches that wait for the node.
+     */
+    static void nodeEntered(Node node, WozInterface comm) {
+        PluginRuntime runtime = node.getPluginRuntime(HttpPlugin.class, comm);
+        HttpPluginRuntime httpRuntime = runtime instanceof HttpPluginRuntime ? (HttpPluginRuntime) runtime : getFallback();
+        httpRuntime.enter(node);
+    }
+
+    private void enter(Node node) {
+        for (Runnable write = lateWrites.poll(); write != null; write = lateWrites.poll()) {
+            write.run();
+        }
+        TurnDeadline turn = turnDeadline;
+        if (turn != null && !turn.enter(node)) {
+            turnDeadline = null;
+        }
+        prefetcher.enter(node);
+    }
+
+    /**
+     * Queues slot writes from a background thread, e.g. a late response, so that they
+     * are done on the dialog thread when it enters the next HTTP node.
+     */
+    void runOnDialogThread(Runnable write) {
+        lateWrites.add(write);
+    }
+
+    /**
+     * Starts a new deadline for the HTTP requests of the current dialog turn.
+     */
+    Deadline startTurnDeadline(Node node, long budgetMillis) {
+        TurnDeadline turn = new TurnDeadline(node, Deadline.in(budgetMillis));
+        turnDeadline = turn;
+        return turn.deadline;
+    }
+
+    /**
+     * Returns the deadline of the current dialog turn, so that consecutive nodes share
+     * one budget. Starts one with the given budget if no node has started one yet.
+     */
+    Deadline continueTurnDeadline(Node node, long budgetMillis) {
+        Deadline deadline = getTurnDeadline();
+        return deadline != null ? deadline : startTurnDeadline(node, budgetMillis);
+    }
+
+    /**
+     * Returns the deadline of the current dialog turn, or null if no node of the turn
+     * has started one.
+     */
+    Deadline getTurnDeadline() {
+        TurnDeadline turn = turnDeadline;
+        return turn == null ? null : turn.deadline;
+    }
+
+    /**
+     * A turn deadline and the nodes of its turn. The turn is over when the dialog
+     * enters an HTTP node it already passed in this turn (it went round a loop, e.g.
+     * back to the next user input) or one that cannot be reached from the node that
+     * started the deadline.
+     */
+    private static final class TurnDeadline {
+        final Node origin;
+        final Deadline deadline;
+        final Set<Node> entered = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        private Set<Node> reachable;
+
+        TurnDeadline(Node origin, Deadline deadline) {
+            this.origin = origin;
+            this.deadline = deadline;
+            entered.add(origin);
+        }
+
+        boolean enter(Node node) {
+            if (!entered.add(node)) {
+                return false;
+            }
+            if (reachable == null) {
+                reachable = Prefetcher.reachableFrom(origin);
+            }
+            return reachable.contains(node);
+        }
+    }
+
+    /**
+     * Returns the latencies observed for the host of the URL, or null if the URL
+     * has no host.
+     */
+    LatencyTracker getLatencyTracker(String url) {
+        String host = hostOf(url);
+        return host == null ? null : latencyTrackers.computeIfAbsent(host, h -> new LatencyTracker());
+    }
+
+    /**
+     * Returns the budget that limits hedged requests across all nodes.
+     */
+    RetryBudget getHedgeBudget() {
+        return hedgeBudget;
+    }
+
+    /**
+     * Returns scheme, host and port of the URL, or null if it has no host.
+     */
+    static String hostOf(String url) {
+        try {
+            URI uri = URI.create(url);
+            return uri.getHost() == null ? null : uri.getScheme() + "://" + uri.getAuthority();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the executor for requests that run concurrently to the dialog thread,
+     * e.g. the branches of a parallel request node.
+     */
+    ExecutorService getTaskExecutor() {
+        if (disposed) {
+            throw new IllegalStateException("HTTP plugin runtime has already been disposed");
+        }
+        return taskExecutor;
+    }
+
+    /**
+     * Sends a request on the task executor. Unlike {@link CompletableFuture#supplyAsync},
+     * cancelling the returned future, or completing it on timeout, interrupts the
+     * thread that sends the request, so that the request is really aborted.
+     */
+    CompletableFuture<HttpHandler.HttpResult> submit(Supplier<HttpHandler.HttpResult> call) {
+        CompletableFuture<HttpHandler.HttpResult> result = new CompletableFuture<>();
+        AtomicBoolean finished = new AtomicBoolean();
+        Future<?> task = getTaskExecutor().submit(() -> {
+            try {
+                HttpHandler.HttpResult value = call.get();
+                finished.set(true);
+                result.complete(value);
+            } catch (RuntimeException e) {
+                finished.set(true);
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (!finished.get()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the background dispatcher for fire-and-forget requests. Its worker
+     * threads are only started when the first asynchronous request is sent.
+     */
+    synchronized AsyncDispatcher getAsyncDispatcher() {
+        if (closing) {
+            throw new IllegalStateException("HTTP plugin runtime has already been disposed");
+        }
+        if (asyncDispatcher == null) {
+            asyncDispatcher = new AsyncDispatcher(this, asyncQueueSize, asyncWorkers);
+        }
+        return asyncDispatcher;
+    }
+
+    private HttpClient createClient(ClientKey key) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(key.version)
+            .connectTimeout(Duration.ofMillis(settings.getConnectTimeoutMillis()))
+            .executor(clientExecutor);
+
+        if (key.trustAllCertificates) {
+            builder.sslContext(HttpHandler.getTrustAllContext());
+        }
+
+        System.out.println("Created shared HTTP client (" + key + ")");
+        return builder.build();
+    }
+
     @Override
     public void dispose() {
+        AsyncDispatcher dispatcher;
+        synchronized (this) {
+            closing = true;
+            dispatcher = asyncDispatcher;
+        }
+        // the queued requests still need the clients while they are drained
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+            System.out.println("Async HTTP requests: " + dispatcher);
+        }
+        disposed = true;
+
+        // an open stream is an exchange in flight, which HttpClient.close() waits for
+        if (!openStreams.isEmpty()) {
+            System.out.println("Closing " + openStreams.size() + " open event stream(s)");
+        }
+        for (Closeable stream : openStreams) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close event stream: " + e.getMessage());
+            }
+        }
+        openStreams.clear();
+        for (String name : new ArrayList<>(webSockets.keySet())) {
+            closeWebSocket(name);
+        }
+        System.out.println("Started requests: " + pendingRequests);
+        pendingRequests.cancelAll();
+        System.out.println("Prefetch: " + prefetcher);
+        prefetcher.clear();
+
+        for (HttpClient client : clients.values()) {
+            // HttpClient is only AutoCloseable from Java 21 on
+            if (client instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) client).close();
+                } catch (Exception e) {
+                    System.err.println("Failed to close HTTP client: " + e.getMessage());
+                }
+            }
+        }
+        clients.clear();
+
+        if (coalescer != null) {
+            System.out.println("Coalesced GET requests (all dialogs): " + coalescer);
+        }
+        System.out.println("Response cache: " + responseCache);
+        responseCache.close();
+        System.out.println("Retries: " + retryBudget);
+        System.out.println("Hedged requests: " + hedgeBudget);
+        System.out.println("Response body budget: " + BodyBudget.GLOBAL);
+        System.out.println("Transfer: " + transferStats);
+        for (CircuitBreaker breaker : circuitBreakers.values()) {
+            System.out.println("Circuit breaker " + breaker);
+        }
+        for (ConcurrencyLimiter limiter : concurrencyLimiters.values()) {
+            System.out.println("Concurrency limit " + limiter);
+        }
+        for (RateLimiter limiter : rateLimiters.values()) {
+            System.out.println("Rate limit " + limiter);
+        }
+
+        if (!lateWrites.isEmpty()) {
+            System.out.println("Late responses not mapped, the dialog ended first: " + lateWrites.size());
+            lateWrites.clear();
+        }
+        turnDeadline = null;
+
+        shutdownExecutor(taskExecutor);
+        shutdownExecutor(clientExecutor);
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+        }
+
         System.out.println("HttpPluginRuntime disposed");
     }
-}
\ No newline at end of file
+
+    private static void shutdownExecutor(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(2, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DiskCache openDiskCache(HttpPluginSettings settings) {
+        String directory = settings.getDiskCacheDirectory();
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+        try {
+            return DiskCache.open(Paths.get(directory), settings.getDiskCacheMaxSizeBytes());
+        } catch (Exception e) {
+            System.err.println("Disk cache disabled, unable to open " + directory + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class ClientKey {
+        private final boolean trustAllCertificates;
+        private final HttpClient.Version version;
+
+        private ClientKey(boolean trustAllCertificates, HttpClient.Version version) {
+            this.trustAllCertificates = trustAllCertificates;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ClientKey)) return false;
+            ClientKey other = (ClientKey) o;
+            return trustAllCertificates == other.trustAllCertificates && version == other.version;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(trustAllCertificates, version);
+        }
+
+        @Override
+        public String toString() {
+            return version + (trustAllCertificates ? ", trust-all" : "");
+        }
+    }
+}
@@ -3,32 +3,499 @@ package com.clt.dialogos.httpplugin;
 import com.clt.dialogos.plugin.PluginRuntime;
 import com.clt.dialogos.plugin.PluginSettings;
 import com.clt.diamant.IdMap;
+import com.clt.diamant.graph.Graph;
 import com.clt.xml.XMLReader;
 import com.clt.xml.XMLWriter;
 import org.xml.sax.SAXException;
 
 import javax.swing.*;
 import java.awt.*;
+import java.net.http.HttpClient;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public class HttpPluginSettings extends PluginSettings {
 
+    private static final String HTTP_VERSION = "httpVersion";
+    private static final String VERSION_HTTP_2 = "HTTP/2";
+    private static final String VERSION_HTTP_1_1 = "HTTP/1.1";
+    private static final String ASYNC_QUEUE_SIZE = "asyncQueueSize";
+    private static final String ASYNC_WORKERS = "asyncWorkers";
+    private static final String COALESCE_REQUESTS = "coalesceRequests";
+    private static final String CACHE_MAX_SIZE = "cacheMaxSize";
+    private static final String CACHE_MAX_ENTRY_SIZE = "cacheMaxEntrySize";
+    private static final String DISK_CACHE_DIRECTORY = "diskCacheDirectory";
+    private static final String DISK_CACHE_MAX_SIZE = "diskCacheMaxSize";
+    private static final String RETRY_BUDGET = "retryBudget";
+    private static final String HEDGE_BUDGET = "hedgeBudget";
+    private static final String CIRCUIT_BREAKER = "circuitBreaker";
+    private static final String CONCURRENCY_LIMIT = "concurrencyLimit";
+    private static final String INITIAL_CONCURRENCY_LIMIT = "initialConcurrencyLimit";
+    private static final String MAX_CONCURRENCY_LIMIT = "maxConcurrencyLimit";
+    private static final String CONNECT_TIMEOUT = "connectTimeout";
+    private static final String RESPONSE_BODY_BUDGET = "responseBodyBudget";
+    private static final String RATE_LIMIT = "rateLimit";
+    private static final String RATE_LIMIT_RATE = "rateLimitRate";
+    private static final String RATE_LIMIT_BURST = "rateLimitBurst";
+    private static final String RATE_LIMIT_MAX_WAIT = "rateLimitMaxWait";
+    private static final String RATE_LIMIT_HOSTS = "rateLimitHosts";
+    private static final String BREAKER_FAILURE_RATE = "breakerFailureRate";
+    private static final String BREAKER_SLOW_CALL = "breakerSlowCall";
+    private static final String BREAKER_SLOW_CALL_RATE = "breakerSlowCallRate";
+    private static final String BREAKER_OPEN_DURATION = "breakerOpenDuration";
+
+    private String httpVersion = VERSION_HTTP_2;
+    private int asyncQueueSize = 100;
+    private int asyncWorkers = 2;
+    private boolean coalesceRequests = true;
+    private int cacheMaxSizeKb = 16384;
+    private int cacheMaxEntrySizeKb = 1024;
+    private String diskCacheDirectory = "";
+    private int diskCacheMaxSizeMb = 256;
+    private int retryBudgetPercent = 20;
+    private int hedgeBudgetPercent = 10;
+    private boolean circuitBreaker = false;
+    private int breakerFailureRate = 50;
+    private int breakerSlowCallMillis = 10000;
+    private int breakerSlowCallRate = 100;
+    private int breakerOpenSeconds = 30;
+    private boolean concurrencyLimit = false;
+    private int initialConcurrencyLimit = 20;
+    private int maxConcurrencyLimit = 200;
+    private int connectTimeoutMillis = 10000;
+    private int responseBodyBudgetMb = 256;
+    private boolean rateLimit = false;
+    private int rateLimitRate = 0;
+    private int rateLimitBurst = 10;
+    private int rateLimitMaxWaitMillis = 5000;
+    private String rateLimitHosts = "";
+
+    public HttpClient.Version getHttpVersion() {
+        return VERSION_HTTP_1_1.equals(httpVersion) ? HttpClient.Version.HTTP_1_1 : HttpClient.Version.HTTP_2;
+    }
+
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+    public int getAsyncWorkers() {
+        return asyncWorkers;
+    }
+
+    public boolean isCoalesceRequests() {
+        return coalesceRequests;
+    }
+
+    public long getCacheMaxSizeBytes() {
+        return cacheMaxSizeKb * 1024L;
+    }
+
+    public long getCacheMaxEntrySizeBytes() {
+        return cacheMaxEntrySizeKb * 1024L;
+    }
+
+    /**
+     * Returns the directory of the persistent response cache, or an empty string
+     * if responses are only cached in memory.
+     */
+    public String getDiskCacheDirectory() {
+        return diskCacheDirectory;
+    }
+
+    public long getDiskCacheMaxSizeBytes() {
+        return diskCacheMaxSizeMb * 1024L * 1024L;
+    }
+
+    /**
+     * Returns the share of requests, in percent, that may be retried.
+     */
+    public int getRetryBudgetPercent() {
+        return retryBudgetPercent;
+    }
+
+    /**
+     * Returns the share of requests, in percent, that may be duplicated by hedging.
+     */
+    public int getHedgeBudgetPercent() {
+        return hedgeBudgetPercent;
+    }
+
+    public boolean isCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public int getBreakerFailureRate() {
+        return breakerFailureRate;
+    }
+
+    public long getBreakerSlowCallMillis() {
+        return breakerSlowCallMillis;
+    }
+
+    public int getBreakerSlowCallRate() {
+        return breakerSlowCallRate;
+    }
+
+    public long getBreakerOpenMillis() {
+        return breakerOpenSeconds * 1000L;
+    }
+
+    public boolean isConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public int getInitialConcurrencyLimit() {
+        return initialConcurrencyLimit;
+    }
+
+    public int getMaxConcurrencyLimit() {
+        return maxConcurrencyLimit;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public long getResponseBodyBudgetBytes() {
+        return responseBodyBudgetMb * 1024L * 1024L;
+    }
+
+    public boolean isRateLimit() {
+        return rateLimit;
+    }
+
+    public int getRateLimitMaxWaitMillis() {
+        return rateLimitMaxWaitMillis;
+    }
+
+    /**
+     * Returns the requests per second allowed for the host (authority, optionally with
+     * scheme), taken from the per-host list or the default rate. 0 means that only the
+     * server's rate limit headers are followed.
+     */
+    public double getRateLimitRate(String host) {
+        String[] override = rateLimitOverride(host);
+        if (override != null) {
+            try {
+                return Math.max(0, Double.parseDouble(override[0].trim()));
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid rate limit for " + host + ": " + override[0]);
+            }
+        }
+        return rateLimitRate;
+    }
+
+    public int getRateLimitBurst(String host) {
+        String[] override = rateLimitOverride(host);
+        if (override != null && override.length > 1) {
+            return parsePositiveInt(override[1], rateLimitBurst);
+        }
+        return rateLimitBurst;
+    }
+
+    /**
+     * Looks the host up in the list of per-host limits ("api.example.com=5/20, ..."),
+     * returning the rate and optional burst.
+     */
+    private String[] rateLimitOverride(String host) {
+        String authority = host.substring(host.indexOf("://") + 3);
+        String hostName = authority.contains(":") ? authority.substring(0, authority.indexOf(':')) : authority;
+        for (String entry : rateLimitHosts.split(",")) {
+            String[] pair = entry.split("=", 2);
+            if (pair.length < 2) {
+                continue;
+            }
+            String name = pair[0].trim();
+            if (name.equalsIgnoreCase(host) || name.equalsIgnoreCase(authority) || name.equalsIgnoreCase(hostName)) {
+                return pair[1].split("/", 2);
+            }
+        }
+        return null;
+    }
+
     @Override
-    public void writeAttributes(XMLWriter out, IdMap uidMap) {}
+    public void writeAttributes(XMLWriter out, IdMap uidMap) {
+        Graph.printAtt(out, HTTP_VERSION, httpVersion);
+        Graph.printAtt(out, ASYNC_QUEUE_SIZE, Integer.toString(asyncQueueSize));
+        Graph.printAtt(out, ASYNC_WORKERS, Integer.toString(asyncWorkers));
+        Graph.printAtt(out, COALESCE_REQUESTS, Boolean.toString(coalesceRequests));
+        Graph.printAtt(out, CACHE_MAX_SIZE, Integer.toString(cacheMaxSizeKb));
+        Graph.printAtt(out, CACHE_MAX_ENTRY_SIZE, Integer.toString(cacheMaxEntrySizeKb));
+        Graph.printAtt(out, DISK_CACHE_DIRECTORY, diskCacheDirectory);
+        Graph.printAtt(out, DISK_CACHE_MAX_SIZE, Integer.toString(diskCacheMaxSizeMb));
+        Graph.printAtt(out, RETRY_BUDGET, Integer.toString(retryBudgetPercent));
+        Graph.printAtt(out, HEDGE_BUDGET, Integer.toString(hedgeBudgetPercent));
+        Graph.printAtt(out, CIRCUIT_BREAKER, Boolean.toString(circuitBreaker));
+        Graph.printAtt(out, BREAKER_FAILURE_RATE, Integer.toString(breakerFailureRate));
+        Graph.printAtt(out, BREAKER_SLOW_CALL, Integer.toString(breakerSlowCallMillis));
+        Graph.printAtt(out, BREAKER_SLOW_CALL_RATE, Integer.toString(breakerSlowCallRate));
+        Graph.printAtt(out, BREAKER_OPEN_DURATION, Integer.toString(breakerOpenSeconds));
+        Graph.printAtt(out, CONCURRENCY_LIMIT, Boolean.toString(concurrencyLimit));
+        Graph.printAtt(out, INITIAL_CONCURRENCY_LIMIT, Integer.toString(initialConcurrencyLimit));
+        Graph.printAtt(out, MAX_CONCURRENCY_LIMIT, Integer.toString(maxConcurrencyLimit));
+        Graph.printAtt(out, CONNECT_TIMEOUT, Integer.toString(connectTimeoutMillis));
+        Graph.printAtt(out, RESPONSE_BODY_BUDGET, Integer.toString(responseBodyBudgetMb));
+        Graph.printAtt(out, RATE_LIMIT, Boolean.toString(rateLimit));
+        Graph.printAtt(out, RATE_LIMIT_RATE, Integer.toString(rateLimitRate));
+        Graph.printAtt(out, RATE_LIMIT_BURST, Integer.toString(rateLimitBurst));
+        Graph.printAtt(out, RATE_LIMIT_MAX_WAIT, Integer.toString(rateLimitMaxWaitMillis));
+        Graph.printAtt(out, RATE_LIMIT_HOSTS, rateLimitHosts);
+    }
 
     @Override
-    protected void readAttribute(XMLReader r, String name, String value, IdMap uid_map) throws SAXException {}
+    protected void readAttribute(XMLReader r, String name, String value, IdMap uid_map) throws SAXException {
+        if (name.equals(HTTP_VERSION)) {
+            httpVersion = VERSION_HTTP_1_1.equals(value) ? VERSION_HTTP_1_1 : VERSION_HTTP_2;
+        } else if (name.equals(ASYNC_QUEUE_SIZE)) {
+            asyncQueueSize = parsePositiveInt(value, asyncQueueSize);
+        } else if (name.equals(ASYNC_WORKERS)) {
+            asyncWorkers = parsePositiveInt(value, asyncWorkers);
+        } else if (name.equals(COALESCE_REQUESTS)) {
+            coalesceRequests = Boolean.parseBoolean(value);
+        } else if (name.equals(CACHE_MAX_SIZE)) {
+            cacheMaxSizeKb = parsePositiveInt(value, cacheMaxSizeKb);
+        } else if (name.equals(CACHE_MAX_ENTRY_SIZE)) {
+            cacheMaxEntrySizeKb = parsePositiveInt(value, cacheMaxEntrySizeKb);
+        } else if (name.equals(DISK_CACHE_DIRECTORY)) {
+            diskCacheDirectory = value.trim();
+        } else if (name.equals(DISK_CACHE_MAX_SIZE)) {
+            diskCacheMaxSizeMb = parsePositiveInt(value, diskCacheMaxSizeMb);
+        } else if (name.equals(RETRY_BUDGET)) {
+            retryBudgetPercent = parsePositiveInt(value, retryBudgetPercent);
+        } else if (name.equals(HEDGE_BUDGET)) {
+            hedgeBudgetPercent = parsePositiveInt(value, hedgeBudgetPercent);
+        } else if (name.equals(CIRCUIT_BREAKER)) {
+            circuitBreaker = Boolean.parseBoolean(value);
+        } else if (name.equals(BREAKER_FAILURE_RATE)) {
+            breakerFailureRate = parsePositiveInt(value, breakerFailureRate);
+        } else if (name.equals(BREAKER_SLOW_CALL)) {
+            breakerSlowCallMillis = parsePositiveInt(value, breakerSlowCallMillis);
+        } else if (name.equals(BREAKER_SLOW_CALL_RATE)) {
+            breakerSlowCallRate = parsePositiveInt(value, breakerSlowCallRate);
+        } else if (name.equals(BREAKER_OPEN_DURATION)) {
+            breakerOpenSeconds = parsePositiveInt(value, breakerOpenSeconds);
+        } else if (name.equals(CONCURRENCY_LIMIT)) {
+            concurrencyLimit = Boolean.parseBoolean(value);
+        } else if (name.equals(INITIAL_CONCURRENCY_LIMIT)) {
+            initialConcurrencyLimit = parsePositiveInt(value, initialConcurrencyLimit);
+        } else if (name.equals(MAX_CONCURRENCY_LIMIT)) {
+            maxConcurrencyLimit = parsePositiveInt(value, maxConcurrencyLimit);
+        } else if (name.equals(CONNECT_TIMEOUT)) {
+            connectTimeoutMillis = parsePositiveInt(value, connectTimeoutMillis);
+        } else if (name.equals(RESPONSE_BODY_BUDGET)) {
+            responseBodyBudgetMb = parsePositiveInt(value, responseBodyBudgetMb);
+        } else if (name.equals(RATE_LIMIT)) {
+            rateLimit = Boolean.parseBoolean(value);
+        } else if (name.equals(RATE_LIMIT_RATE)) {
+            rateLimitRate = parseNonNegativeInt(value, rateLimitRate);
+        } else if (name.equals(RATE_LIMIT_BURST)) {
+            rateLimitBurst = parsePositiveInt(value, rateLimitBurst);
+        } else if (name.equals(RATE_LIMIT_MAX_WAIT)) {
+            rateLimitMaxWaitMillis = parseNonNegativeInt(value, rateLimitMaxWaitMillis);
+        } else if (name.equals(RATE_LIMIT_HOSTS)) {
+            rateLimitHosts = value;
+        }
+    }
+
+    private static int parsePositiveInt(String value, int defaultValue) {
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : defaultValue;
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    private static int parseNonNegativeInt(String value, int defaultValue) {
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed >= 0 ? parsed : defaultValue;
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
 
     @Override
     public JComponent createEditor() {
         JPanel panel = new JPanel(new BorderLayout());
         JLabel label = new JLabel(" HTTP Plugin Settings");
         label.setHorizontalAlignment(SwingConstants.CENTER);
-        panel.add(label, BorderLayout.CENTER);
+        panel.add(label, BorderLayout.NORTH);
+
+        JPanel settingsPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.anchor = GridBagConstraints.NORTHWEST;
+
+        int row = 0;
+        JComboBox<String> versionCombo = new JComboBox<>(new String[]{VERSION_HTTP_2, VERSION_HTTP_1_1});
+        versionCombo.setSelectedItem(httpVersion);
+        versionCombo.setToolTipText("HTTP/2 falls back to HTTP/1.1 if the server does not support it");
+        versionCombo.addActionListener(e -> httpVersion = (String) versionCombo.getSelectedItem());
+        addRow(settingsPanel, gbc, row++, "HTTP Version:", versionCombo);
+
+        addSpinnerRow(settingsPanel, gbc, row++, "Async Queue Size:", asyncQueueSize, 1, 100000, 10,
+            "Maximum number of background requests waiting to be sent", v -> asyncQueueSize = v);
+        addSpinnerRow(settingsPanel, gbc, row++, "Async Workers:", asyncWorkers, 1, 64, 1,
+            "Number of threads sending background requests", v -> asyncWorkers = v);
+        addCheckBoxRow(settingsPanel, gbc, row++, "Coalesce identical in-flight GET requests", coalesceRequests,
+            v -> coalesceRequests = v);
+
+        addSpinnerRow(settingsPanel, gbc, row++, "Cache Size (KB):", cacheMaxSizeKb, 1, 1024 * 1024, 1024,
+            "Memory available to the response cache of all nodes together", v -> cacheMaxSizeKb = v);
+        addSpinnerRow(settingsPanel, gbc, row++, "Max Cached Response (KB):", cacheMaxEntrySizeKb, 1, 1024 * 1024, 64,
+            "Larger responses are never cached", v -> cacheMaxEntrySizeKb = v);
+
+        JPanel directoryPanel = new JPanel(new BorderLayout(5, 0));
+        JTextField directoryField = new JTextField(diskCacheDirectory, 20);
+        directoryField.setToolTipText("Leave empty to cache responses in memory only");
+        directoryField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void update() {
+                diskCacheDirectory = directoryField.getText().trim();
+            }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { update(); }
+        });
+        directoryPanel.add(directoryField, BorderLayout.CENTER);
+        JButton browseButton = new JButton("Browse...");
+        browseButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser(directoryField.getText());
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (chooser.showOpenDialog(directoryPanel) == JFileChooser.APPROVE_OPTION) {
+                directoryField.setText(chooser.getSelectedFile().getAbsolutePath());
+            }
+        });
+        directoryPanel.add(browseButton, BorderLayout.EAST);
+        addRow(settingsPanel, gbc, row++, "Disk Cache Directory:", directoryPanel);
+        addSpinnerRow(settingsPanel, gbc, row++, "Disk Cache Size (MB):", diskCacheMaxSizeMb, 32, 1024 * 1024, 64,
+            "Space the cache files may take up in the directory", v -> diskCacheMaxSizeMb = v);
+
+        addSpinnerRow(settingsPanel, gbc, row++, "Retry Budget (%):", retryBudgetPercent, 1, 100, 5,
+            "Retries may add at most this share of requests on top of the regular traffic", v -> retryBudgetPercent = v);
+        addSpinnerRow(settingsPanel, gbc, row++, "Hedging Budget (%):", hedgeBudgetPercent, 1, 100, 5,
+            "Hedged requests may add at most this share of requests on top of the regular traffic",
+            v -> hedgeBudgetPercent = v);
+
+        JCheckBox breakerCheckbox = addCheckBoxRow(settingsPanel, gbc, row++,
+            "Circuit breaker per host (fail fast while a host is down)", circuitBreaker, v -> circuitBreaker = v);
+        JComponent[] breakerFields = {
+            addSpinnerRow(settingsPanel, gbc, row++, "Breaker Failure Rate (%):", breakerFailureRate, 1, 100, 5,
+                "Share of failed calls among the last " + CircuitBreaker.WINDOW_SIZE + " that opens the circuit",
+                v -> breakerFailureRate = v),
+            addSpinnerRow(settingsPanel, gbc, row++, "Breaker Slow Call (ms):", breakerSlowCallMillis, 1, 600000, 500,
+                "Calls taking at least this long count as slow", v -> breakerSlowCallMillis = v),
+            addSpinnerRow(settingsPanel, gbc, row++, "Breaker Slow Call Rate (%):", breakerSlowCallRate, 1, 100, 5,
+                "Share of slow calls that opens the circuit", v -> breakerSlowCallRate = v),
+            addSpinnerRow(settingsPanel, gbc, row++, "Breaker Open Duration (s):", breakerOpenSeconds, 1, 3600, 5,
+                "How long requests fail fast before probe requests are let through", v -> breakerOpenSeconds = v)
+        };
+        enableWith(breakerCheckbox, breakerFields);
+
+        JCheckBox limitCheckbox = addCheckBoxRow(settingsPanel, gbc, row++,
+            "Adaptive concurrency limit per host", concurrencyLimit, v -> concurrencyLimit = v);
+        JComponent[] limitFields = {
+            addSpinnerRow(settingsPanel, gbc, row++, "Initial Concurrency Limit:", initialConcurrencyLimit, 1, 10000, 5,
+                "Concurrent requests allowed per host before the limit has adapted to its latency",
+                v -> initialConcurrencyLimit = v),
+            addSpinnerRow(settingsPanel, gbc, row++, "Max Concurrency Limit:", maxConcurrencyLimit, 1, 10000, 10,
+                "The limit never grows beyond this number of concurrent requests per host", v -> maxConcurrencyLimit = v)
+        };
+        enableWith(limitCheckbox, limitFields);
+
+        JCheckBox rateLimitCheckbox = addCheckBoxRow(settingsPanel, gbc, row++,
+            "Rate limit per host (follows 429 and rate limit headers)", rateLimit, v -> rateLimit = v);
+        JComponent[] rateLimitFields = {
+            addSpinnerRow(settingsPanel, gbc, row++, "Requests per Second:", rateLimitRate, 0, 100000, 1,
+                "Default rate per host; 0 only slows down when the server asks for it", v -> rateLimitRate = v),
+            addSpinnerRow(settingsPanel, gbc, row++, "Burst:", rateLimitBurst, 1, 100000, 1,
+                "Requests that may be sent at once after a quiet period", v -> rateLimitBurst = v),
+            addSpinnerRow(settingsPanel, gbc, row++, "Max Rate Limit Wait (ms):", rateLimitMaxWaitMillis, 0, 600000, 500,
+                "Requests that would have to wait longer for their turn fail with 429 without being sent",
+                v -> rateLimitMaxWaitMillis = v),
+            addTextRow(settingsPanel, gbc, row++, "Per-Host Rate Limits:", rateLimitHosts,
+                "Comma-separated host=rate or host=rate/burst, e.g. api.example.com=5/20", v -> rateLimitHosts = v)
+        };
+        enableWith(rateLimitCheckbox, rateLimitFields);
+
+        addSpinnerRow(settingsPanel, gbc, row++, "Connect Timeout (ms):", connectTimeoutMillis, 1, 600000, 500,
+            "How long to wait for a connection; request timeouts and deadlines are set per node",
+            v -> connectTimeoutMillis = v);
+        addSpinnerRow(settingsPanel, gbc, row, "Response Body Budget (MB):", responseBodyBudgetMb, 1, 65536, 16,
+            "Memory all response bodies being received at the same time may use; responses beyond it fail",
+            v -> responseBodyBudgetMb = v);
+
+        panel.add(settingsPanel, BorderLayout.CENTER);
         return panel;
     }
 
+    private static void addRow(JPanel panel, GridBagConstraints gbc, int row, String label, JComponent field) {
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.weightx = 0;
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        panel.add(field, gbc);
+    }
+
+    private static JCheckBox addCheckBoxRow(JPanel panel, GridBagConstraints gbc, int row, String text, boolean selected,
+                                            Consumer<Boolean> setter) {
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        JCheckBox checkbox = new JCheckBox(text);
+        checkbox.setSelected(selected);
+        checkbox.addActionListener(e -> setter.accept(checkbox.isSelected()));
+        panel.add(checkbox, gbc);
+        gbc.gridwidth = 1;
+        return checkbox;
+    }
+
+    /**
+     * Enables the fields of a section only while its checkbox is selected.
+     */
+    private static void enableWith(JCheckBox checkbox, JComponent[] fields) {
+        for (JComponent field : fields) {
+            field.setEnabled(checkbox.isSelected());
+        }
+        checkbox.addActionListener(e -> {
+            for (JComponent field : fields) {
+                field.setEnabled(checkbox.isSelected());
+            }
+        });
+    }
+
+    private static JSpinner addSpinnerRow(JPanel panel, GridBagConstraints gbc, int row, String label, int value,
+                                          int min, int max, int step, String toolTip, IntConsumer setter) {
+        JSpinner spinner = new JSpinner(new SpinnerNumberModel(Math.max(min, Math.min(value, max)), min, max, step));
+        spinner.setToolTipText(toolTip);
+        spinner.addChangeListener(e -> setter.accept((Integer) spinner.getValue()));
+        addRow(panel, gbc, row, label, spinner);
+        return spinner;
+    }
+
+    private static JTextField addTextRow(JPanel panel, GridBagConstraints gbc, int row, String label, String value,
+                                         String toolTip, Consumer<String> setter) {
+        JTextField field = new JTextField(value, 20);
+        field.setToolTipText(toolTip);
+        field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void update() {
+                setter.accept(field.getText());
+            }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { update(); }
+        });
+        addRow(panel, gbc, row, label, field);
+        return field;
+    }
+
     @Override
     protected PluginRuntime createRuntime(Component parent) throws Exception {
-        return new HttpPluginRuntime();
+        return new HttpPluginRuntime(this);
     }
 }
@@ -220,6 +220,15 @@ public class JsonConverter {
         }
     }
 
+    /**
+     * Returns the value at the path, in the syntax of the response mappings, or null
+     * if there is none.
+     */
+    static Object resolvePath(Object json, String path) {
+        Object value = resolveJsonPath(json, path);
+        return value == JSON_PATH_NOT_FOUND ? null : value;
+    }
+
     private static Object resolveJsonPath(Object current, String path) {
         if (path == null || path.isEmpty()) {
             return current;
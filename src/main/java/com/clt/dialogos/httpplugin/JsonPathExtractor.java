@@ -0,0 +1,313 @@
+package com.clt.dialogos.httpplugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Pull parser that reads a JSON document from a stream and keeps only the values at
+ * the given paths, in the syntax of the response mappings (e.g.
+ * {@code results[0].title}). Everything else is skipped character by character
+ * without building strings or objects, and reading stops as soon as all paths have
+ * been found. The result is a pruned copy of the document that contains just the
+ * matched values at their original positions, so that {@link JsonConverter}
+ * resolves the mappings on it as on the full document.
+ */
+class JsonPathExtractor {
+    private static final int BUFFER_SIZE = 8192;
+    private static final Object SKIPPED = new Object();
+
+    private final List<List<Object>> paths = new ArrayList<>();
+
+    JsonPathExtractor(Collection<String> jsonPaths) {
+        for (String path : jsonPaths) {
+            List<Object> segments = parsePath(path);
+            if (segments != null) {
+                paths.add(segments);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return paths.isEmpty();
+    }
+
+    /**
+     * Reads the document up to the last wanted value and returns the pruned
+     * {@link JSONObject} or {@link JSONArray}. The reader is not closed; closing it
+     * right away is what saves downloading the rest of a large response.
+     */
+    Object extract(Reader source) throws IOException {
+        Parser parser = new Parser(source);
+        parser.skipWhitespace();
+        Object root = parser.peek() < 0 ? SKIPPED : parser.walk(new ArrayList<>());
+        System.out.println("✓ Streamed response: " + parser.found + " of " + paths.size() + " paths found after "
+            + parser.charsRead + " characters");
+        return root == SKIPPED ? new JSONObject() : root;
+    }
+
+    /**
+     * State of one extraction, so that hedged requests can share the extractor.
+     */
+    private final class Parser {
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private final boolean[] resolved = new boolean[paths.size()];
+        private int position = 0;
+        private int limit = 0;
+        private long charsRead = 0;
+        private int found = 0;
+
+        Parser(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads the value at the current position, which has the given path.
+         */
+        Object walk(List<Object> path) throws IOException {
+            if (markResolved(path)) {
+                StringBuilder text = new StringBuilder();
+                skipValue(text);
+                return new JSONTokener(text.toString()).nextValue();
+            }
+            if (!isPrefixOfUnresolved(path)) {
+                skipValue(null);
+                return SKIPPED;
+            }
+
+            int c = peek();
+            if (c == '{') {
+                next();
+                JSONObject object = new JSONObject();
+                skipWhitespace();
+                if (peek() == '}') {
+                    next();
+                    return object;
+                }
+                while (true) {
+                    skipWhitespace();
+                    String key = readString();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                    path.add(key);
+                    Object value = walk(path);
+                    path.remove(path.size() - 1);
+                    if (value != SKIPPED) {
+                        object.put(key, value);
+                    }
+                    if (found == paths.size()) {
+                        return object;
+                    }
+                    skipWhitespace();
+                    if (next() == '}') {
+                        return object;
+                    }
+                }
+            } else if (c == '[') {
+                next();
+                JSONArray array = new JSONArray();
+                skipWhitespace();
+                if (peek() == ']') {
+                    next();
+                    return array;
+                }
+                for (int index = 0; ; index++) {
+                    skipWhitespace();
+                    path.add(index);
+                    Object value = walk(path);
+                    path.remove(path.size() - 1);
+                    if (value != SKIPPED) {
+                        array.put(index, value);
+                    }
+                    if (found == paths.size()) {
+                        return array;
+                    }
+                    skipWhitespace();
+                    if (next() == ']') {
+                        return array;
+                    }
+                }
+            }
+            // a path continues below a scalar, so it cannot match
+            skipValue(null);
+            return SKIPPED;
+        }
+
+        /**
+         * If a wanted path ends at the given path, marks it and all paths below it as
+         * resolved and returns true: the value has to be kept as a whole.
+         */
+        private boolean markResolved(List<Object> path) {
+            boolean matched = false;
+            for (int i = 0; i < paths.size() && !matched; i++) {
+                matched = !resolved[i] && paths.get(i).equals(path);
+            }
+            if (!matched) {
+                return false;
+            }
+            for (int i = 0; i < paths.size(); i++) {
+                if (!resolved[i] && isPrefix(path, paths.get(i))) {
+                    resolved[i] = true;
+                    found++;
+                }
+            }
+            return true;
+        }
+
+        private boolean isPrefixOfUnresolved(List<Object> path) {
+            for (int i = 0; i < paths.size(); i++) {
+                if (!resolved[i] && isPrefix(path, paths.get(i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Skips the value at the current position, copying its text if a builder is given.
+         */
+        private void skipValue(StringBuilder text) throws IOException {
+            int depth = 0;
+            do {
+                skipWhitespace();
+                int c = next();
+                if (c < 0) {
+                    throw new IOException("Unexpected end of JSON response");
+                }
+                append(text, c);
+                if (c == '"') {
+                    skipStringBody(text);
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                } else if (c != ',' && c != ':') {
+                    // literal: number, true, false or null
+                    while (peek() >= 0 && isLiteralChar(peek())) {
+                        append(text, next());
+                    }
+                }
+            } while (depth > 0);
+        }
+
+        private void skipStringBody(StringBuilder text) throws IOException {
+            while (true) {
+                int c = next();
+                if (c < 0) {
+                    throw new IOException("Unterminated string in JSON response");
+                }
+                append(text, c);
+                if (c == '\\') {
+                    append(text, next());
+                } else if (c == '"') {
+                    return;
+                }
+            }
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            StringBuilder text = new StringBuilder("\"");
+            skipStringBody(text);
+            return (String) new JSONTokener(text.toString()).nextValue();
+        }
+
+        private void expect(char expected) throws IOException {
+            int c = next();
+            if (c != expected) {
+                throw new IOException("Invalid JSON response: expected '" + expected + "' at character " + charsRead);
+            }
+        }
+
+        void skipWhitespace() throws IOException {
+            while (peek() >= 0 && Character.isWhitespace(peek())) {
+                next();
+            }
+        }
+
+        int peek() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position];
+        }
+
+        private int next() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            charsRead++;
+            return buffer[position++];
+        }
+
+        private boolean fill() throws IOException {
+            int count = reader.read(buffer, 0, buffer.length);
+            if (count <= 0) {
+                return false;
+            }
+            position = 0;
+            limit = count;
+            return true;
+        }
+    }
+
+    private static boolean isPrefix(List<Object> prefix, List<Object> path) {
+        return prefix.size() <= path.size() && path.subList(0, prefix.size()).equals(prefix);
+    }
+
+    private static boolean isLiteralChar(int c) {
+        return c != ',' && c != '}' && c != ']' && c != ':' && !Character.isWhitespace(c);
+    }
+
+    private static void append(StringBuilder text, int c) {
+        if (text != null && c >= 0) {
+            text.append((char) c);
+        }
+    }
+
+    /**
+     * Splits a mapping path such as {@code items[2].name} into keys and indices, the
+     * way {@link JsonConverter} resolves it. A leading index applies to a top-level
+     * array, as does the {@code $root} key. Returns null for malformed paths.
+     */
+    static List<Object> parsePath(String path) {
+        List<Object> segments = new ArrayList<>();
+        if (path.startsWith("$root")) {
+            path = path.substring("$root".length());
+        }
+        int pos = 0;
+        int length = path.length();
+        while (pos < length) {
+            char c = path.charAt(pos);
+            if (c == '.') {
+                pos++;
+            } else if (c == '[') {
+                int closingBracket = path.indexOf(']', pos);
+                if (closingBracket == -1) {
+                    return null;
+                }
+                try {
+                    segments.add(Integer.parseInt(path.substring(pos + 1, closingBracket).trim()));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                pos = closingBracket + 1;
+            } else {
+                int start = pos;
+                while (pos < length && path.charAt(pos) != '.' && path.charAt(pos) != '[') {
+                    pos++;
+                }
+                segments.add(path.substring(start, pos));
+            }
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,36 @@
+package com.clt.dialogos.httpplugin;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of the last successful requests to one host, so that
+ * percentiles of the observed latency can be used as hedging delays.
+ */
+class LatencyTracker {
+    static final int SAMPLES = 100;
+    static final int MINIMUM_SAMPLES = 20;
+
+    private final long[] latencies = new long[SAMPLES];
+    private int recorded = 0;
+    private int next = 0;
+
+    synchronized void record(long millis) {
+        latencies[next] = millis;
+        next = (next + 1) % SAMPLES;
+        recorded = Math.min(SAMPLES, recorded + 1);
+    }
+
+    /**
+     * Returns the given percentile of the recorded latencies in milliseconds, or -1
+     * if there are too few samples to tell.
+     */
+    synchronized long percentile(int percent) {
+        if (recorded < MINIMUM_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, recorded);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percent / 100.0 * recorded) - 1;
+        return sorted[Math.max(0, Math.min(recorded - 1, index))];
+    }
+}
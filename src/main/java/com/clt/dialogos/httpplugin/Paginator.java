@@ -0,0 +1,293 @@
+package com.clt.dialogos.httpplugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Walks a paged API for a SendAndReceiveNode: follows a cursor from the response body,
+ * the {@code Link: rel="next"} header or an offset parameter, and collects the items of
+ * all pages. For GET requests the next page is requested as soon as its URL is known,
+ * so it is on the wire while the items of the current page are collected.
+ */
+class Paginator {
+    static final String MODE = "paginationMode";
+    static final String ITEMS_PATH = "paginationItemsPath";
+    static final String CURSOR_PATH = "paginationCursorPath";
+    static final String CURSOR_PARAM = "paginationCursorParam";
+    static final String OFFSET_PARAM = "paginationOffsetParam";
+    static final String PAGE_SIZE = "paginationPageSize";
+    static final String TARGET_VAR = "paginationTargetVar";
+    static final String MAX_PAGES = "paginationMaxPages";
+    static final String MAX_ITEMS = "paginationMaxItems";
+    static final String TIME_LIMIT = "paginationTimeLimit";
+
+    static final String MODE_NONE = "none";
+    static final String MODE_CURSOR = "cursor";
+    static final String MODE_LINK = "link";
+    static final String MODE_OFFSET = "offset";
+
+    /** An entry of a Link header: the URL in angle brackets and its parameters. */
+    private static final Pattern LINK_ENTRY = Pattern.compile("<([^>]*)>([^,]*)");
+    private static final Pattern REL_NEXT = Pattern.compile("(?i)\\brel\\s*=\\s*\"?[^\"]*\\bnext\\b");
+
+    /**
+     * The outcome of walking the pages: the first page for the regular response
+     * mappings, the collected items, and the failure that ended the walk, if any.
+     */
+    static final class Outcome {
+        HttpHandler.HttpResult firstPage;
+        HttpHandler.HttpResult failure;
+        final JSONArray items = new JSONArray();
+        int pages = 0;
+        String stopReason = "no next page";
+    }
+
+    private final String mode;
+    private final String itemsPath;
+    private final String cursorPath;
+    private final String cursorParam;
+    private final String offsetParam;
+    private final int pageSize;
+    private final String targetVariable;
+    private final int maxPages;
+    private final int maxItems;
+    private final long timeLimitMillis;
+
+    private Paginator(Function<String, Object> properties) {
+        this.mode = RequestOptions.parseString(properties.apply(MODE), MODE_NONE);
+        this.itemsPath = RequestOptions.parseString(properties.apply(ITEMS_PATH), "").trim();
+        this.cursorPath = RequestOptions.parseString(properties.apply(CURSOR_PATH), "").trim();
+        this.cursorParam = RequestOptions.parseString(properties.apply(CURSOR_PARAM), "cursor").trim();
+        this.offsetParam = RequestOptions.parseString(properties.apply(OFFSET_PARAM), "offset").trim();
+        this.pageSize = (int) Math.max(0, RequestOptions.parseLong(properties.apply(PAGE_SIZE), 0));
+        this.targetVariable = RequestOptions.parseString(properties.apply(TARGET_VAR), "").trim();
+        this.maxPages = (int) Math.max(1, RequestOptions.parseLong(properties.apply(MAX_PAGES), 10));
+        this.maxItems = (int) Math.max(0, RequestOptions.parseLong(properties.apply(MAX_ITEMS), 0));
+        this.timeLimitMillis = Math.max(0, RequestOptions.parseLong(properties.apply(TIME_LIMIT), 0));
+    }
+
+    /**
+     * Reads the pagination settings of a node, or returns null if it does not page.
+     */
+    static Paginator fromProperties(Function<String, Object> properties) {
+        Paginator paginator = new Paginator(properties);
+        return MODE_NONE.equals(paginator.mode) ? null : paginator;
+    }
+
+    String getTargetVariable() {
+        return targetVariable;
+    }
+
+    /**
+     * Requests the pages, starting with the given request or with a result that was
+     * already started for it, until there is no next page, a limit is reached, the
+     * time is up or a page fails.
+     */
+    Outcome fetch(HttpPluginRuntime runtime, HttpHandler.PreparedRequest first, RequestOptions options,
+                  Deadline deadline, CompletableFuture<HttpHandler.HttpResult> started) throws InterruptedException {
+        Deadline limit = deadline;
+        if (timeLimitMillis > 0 && (limit == null || limit.remainingMillis() > timeLimitMillis)) {
+            limit = Deadline.in(timeLimitMillis);
+        }
+        options.withDeadline(limit);
+        boolean prefetch = "GET".equals(first.method);
+        long start = System.currentTimeMillis();
+        Outcome outcome = new Outcome();
+
+        HttpHandler.PreparedRequest request = first;
+        CompletableFuture<HttpHandler.HttpResult> pending = started != null ? started : send(runtime, request, options);
+        while (pending != null) {
+            HttpHandler.HttpResult page = await(pending);
+            pending = null;
+            outcome.pages++;
+            if (!page.success && page.cause instanceof Deadline.ExceededException && outcome.firstPage != null) {
+                // running out of time after the first page ends the walk, it does not fail it
+                outcome.pages--;
+                outcome.stopReason = "time is up";
+                break;
+            }
+            if (!page.success) {
+                outcome.failure = page;
+                outcome.stopReason = "page " + outcome.pages + " failed";
+                break;
+            }
+            Object payload = page.payload != null ? page.payload : RequestDefinition.parseResponsePayload(page.response);
+            page = page.withPayload(payload);
+            if (outcome.firstPage == null) {
+                outcome.firstPage = page;
+            }
+
+            JSONArray pageItems = items(payload);
+            HttpHandler.PreparedRequest next = null;
+            if (pageItems.length() == 0) {
+                outcome.stopReason = "empty page";
+            } else if (pageSize > 0 && pageItems.length() < pageSize) {
+                outcome.stopReason = "last page was not full";
+            } else if (maxItems > 0 && outcome.items.length() + pageItems.length() >= maxItems) {
+                outcome.stopReason = "max items reached";
+            } else if (outcome.pages >= maxPages) {
+                outcome.stopReason = "max pages reached";
+            } else if (limit != null && limit.isExpired()) {
+                outcome.stopReason = "time is up";
+            } else {
+                next = nextRequest(request, page, payload, pageItems.length());
+            }
+
+            // the next page is on the wire while this one is collected
+            if (next != null && prefetch) {
+                pending = send(runtime, next, options);
+            }
+            for (int i = 0; i < pageItems.length() && (maxItems == 0 || outcome.items.length() < maxItems); i++) {
+                outcome.items.put(pageItems.get(i));
+            }
+            if (next != null && !prefetch) {
+                pending = send(runtime, next, options);
+            }
+            request = next;
+        }
+
+        System.out.println((outcome.failure == null ? "✓ " : "✗ ") + "Pagination: " + outcome.pages + " page(s), "
+            + outcome.items.length() + " item(s) in " + (System.currentTimeMillis() - start) + " ms, stopped: " + outcome.stopReason);
+        return outcome;
+    }
+
+    private static CompletableFuture<HttpHandler.HttpResult> send(HttpPluginRuntime runtime, HttpHandler.PreparedRequest request,
+                                                                  RequestOptions options) {
+        System.out.println("Requesting page: " + request.method + " " + request.url);
+        return CompletableFuture.supplyAsync(() -> HttpHandler.execute(runtime, request, options), runtime.getTaskExecutor());
+    }
+
+    private static HttpHandler.HttpResult await(CompletableFuture<HttpHandler.HttpResult> pending) throws InterruptedException {
+        try {
+            return pending.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return HttpHandler.HttpResult.failure(0, cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Returns the items of a page: the array at the items path, or the page itself if
+     * it is an array and no path is set.
+     */
+    private JSONArray items(Object payload) {
+        Object items = payload;
+        if (!itemsPath.isEmpty()) {
+            Object json = payload instanceof JSONArray ? RequestDefinition.wrapArrayResponse((JSONArray) payload) : payload;
+            items = JsonConverter.resolvePath(json, itemsPath);
+        }
+        if (items instanceof JSONArray) {
+            return (JSONArray) items;
+        }
+        System.err.println("Pagination: no list of items at '" + (itemsPath.isEmpty() ? "$root" : itemsPath) + "'");
+        return new JSONArray();
+    }
+
+    /**
+     * Returns the request for the page after the given one, or null if there is none.
+     */
+    HttpHandler.PreparedRequest nextRequest(HttpHandler.PreparedRequest request, HttpHandler.HttpResult page,
+                                            Object payload, int itemCount) {
+        String url = null;
+        if (MODE_CURSOR.equals(mode)) {
+            Object json = payload instanceof JSONArray ? RequestDefinition.wrapArrayResponse((JSONArray) payload) : payload;
+            Object cursor = cursorPath.isEmpty() ? null : JsonConverter.resolvePath(json, cursorPath);
+            if (cursor != null && cursor != JSONObject.NULL && !Boolean.FALSE.equals(cursor) && !cursor.toString().isEmpty()) {
+                String value = cursor.toString();
+                // some APIs return the URL of the next page instead of a token
+                url = value.startsWith("http://") || value.startsWith("https://") || value.startsWith("/")
+                    ? URI.create(request.url).resolve(value).toString()
+                    : withQueryParameter(request.url, cursorParam, value);
+            }
+        } else if (MODE_LINK.equals(mode)) {
+            String next = nextLink(page.headers);
+            url = next == null ? null : URI.create(request.url).resolve(next).toString();
+        } else if (MODE_OFFSET.equals(mode)) {
+            long offset = RequestOptions.parseLong(queryParameter(request.url, offsetParam), 0);
+            url = withQueryParameter(request.url, offsetParam, Long.toString(offset + itemCount));
+        }
+        if (url == null || url.equals(request.url)) {
+            return null;
+        }
+        return new HttpHandler.PreparedRequest(request.method, url, request.headers, request.body, request.trustAllCertificates);
+    }
+
+    /**
+     * Returns the URL of the {@code rel="next"} entry of the Link headers, or null.
+     */
+    static String nextLink(Map<String, List<String>> headers) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey() == null || !header.getKey().equalsIgnoreCase("Link")) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                Matcher entry = LINK_ENTRY.matcher(value);
+                while (entry.find()) {
+                    if (REL_NEXT.matcher(entry.group(2)).find()) {
+                        return entry.group(1).trim();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String queryParameter(String url, String name) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return null;
+        }
+        for (String parameter : url.substring(query + 1).split("&")) {
+            int equals = parameter.indexOf('=');
+            String key = equals < 0 ? parameter : parameter.substring(0, equals);
+            if (key.equals(name)) {
+                return equals < 0 ? "" : parameter.substring(equals + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the query parameter of the URL, replacing an earlier value.
+     */
+    static String withQueryParameter(String url, String name, String value) {
+        String encoded = name + "=" + URLEncoder.encode(value, StandardCharsets.UTF_8);
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return url + "?" + encoded;
+        }
+        StringBuilder result = new StringBuilder(url.substring(0, query + 1));
+        boolean replaced = false;
+        for (String parameter : url.substring(query + 1).split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equals = parameter.indexOf('=');
+            String key = equals < 0 ? parameter : parameter.substring(0, equals);
+            if (result.length() > query + 1) {
+                result.append('&');
+            }
+            if (key.equals(name)) {
+                result.append(encoded);
+                replaced = true;
+            } else {
+                result.append(parameter);
+            }
+        }
+        if (!replaced) {
+            result.append(result.length() > query + 1 ? "&" : "").append(encoded);
+        }
+        return result.toString();
+    }
+}
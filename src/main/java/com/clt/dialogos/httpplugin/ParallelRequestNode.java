@@ -0,0 +1,477 @@
+package com.clt.dialogos.httpplugin;
+
+import com.clt.dialogos.plugin.PluginRuntime;
+import com.clt.diamant.*;
+import com.clt.diamant.graph.Graph;
+import com.clt.diamant.graph.Node;
+import com.clt.diamant.graph.nodes.NodeExecutionException;
+import com.clt.xml.XMLReader;
+import com.clt.xml.XMLWriter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.xml.sax.SAXException;
+
+import javax.swing.*;
+import java.awt.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends several independent requests at the same time and continues once the
+ * configured join condition is met. Each request uses the same configuration format
+ * as a SendAndReceiveNode and maps its own response into slots.
+ */
+public class ParallelRequestNode extends Node {
+    private static final String REQUESTS = "requests";
+    private static final String JOIN_MODE = "joinMode";
+    private static final String QUORUM = "quorum";
+    private static final String BRANCH_TIMEOUT = "branchTimeout";
+
+    private static final String[] JOIN_MODES = {"all", "any", "quorum"};
+    private static final String[] JOIN_MODE_LABELS = {"Wait for all requests", "First successful request", "Quorum of requests"};
+    private static final String[] HTTP_METHODS = {"GET", "POST", "PUT", "DELETE", "PATCH"};
+    private static final String[] AUTH_TYPES = {"None", "Bearer Token", "Basic Auth", "API Key"};
+
+    public ParallelRequestNode() {
+        this.addEdge("Success");
+        this.addEdge("Partial");
+        this.addEdge("Failure");
+
+        this.getEdge(0).setColor(new Color(0, 150, 0));
+        this.getEdge(1).setColor(new Color(230, 140, 0));
+        this.getEdge(2).setColor(new Color(200, 0, 0));
+
+        this.setProperty(REQUESTS, "[]");
+        this.setProperty(JOIN_MODE, "all");
+        this.setProperty(QUORUM, "1");
+        this.setProperty(BRANCH_TIMEOUT, "10000");
+    }
+
+    @Override
+    public void writeVoiceXML(XMLWriter w, IdMap uid_map) {}
+
+    public static String getNodeTypeName(Class<?> c) {
+        return "Http Parallel Request Node";
+    }
+
+    @Override
+    public Node execute(WozInterface comm, InputCenter input, ExecutionLogger logger) {
+        logNode(logger);
+        HttpPluginRuntime.nodeEntered(this, comm);
+        try {
+            List<RequestDefinition> definitions = parseDefinitions(String.valueOf(this.getProperty(REQUESTS)));
+            if (definitions.isEmpty()) {
+                System.err.println("ParallelRequestNode has no requests configured");
+                return getEdge(2).getTarget();
+            }
+
+            HttpPluginRuntime runtime = getHttpRuntime(comm);
+            HttpPluginRuntime effectiveRuntime = runtime != null ? runtime : HttpPluginRuntime.getFallback();
+            Duration branchTimeout = Duration.ofMillis(parseInt(this.getProperty(BRANCH_TIMEOUT), 10000));
+            // the branches share the turn deadline, if an earlier node started one
+            Deadline deadline = effectiveRuntime.getTurnDeadline();
+            Duration timeout = deadline != null ? deadline.cap(branchTimeout) : branchTimeout;
+            RequestOptions options = RequestOptions.defaults().withTimeout(branchTimeout).withDeadline(deadline);
+            int required = requiredSuccesses(definitions.size());
+
+            // Expressions are evaluated here, on the dialog thread; only the sending runs in parallel
+            List<CompletableFuture<HttpHandler.HttpResult>> futures = new ArrayList<>();
+            for (RequestDefinition definition : definitions) {
+                CompletableFuture<HttpHandler.HttpResult> future;
+                try {
+                    HttpHandler.PreparedRequest request = definition.prepare(this::getSlotOrNull);
+                    System.out.println("Parallel request '" + describe(definition, futures.size()) + "': " + request.method + " " + request.url);
+                    future = effectiveRuntime.submit(() -> HttpHandler.execute(effectiveRuntime, request, options))
+                        .completeOnTimeout(timeoutResult(timeout), timeout.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    System.err.println("Parallel request '" + describe(definition, futures.size()) + "' could not be prepared: " + e.getMessage());
+                    future = CompletableFuture.completedFuture(new HttpHandler.HttpResult(false, null, 0, e.getMessage()));
+                }
+                futures.add(future);
+            }
+
+            awaitJoin(futures, required);
+
+            // Requests that finish after the join condition was met still count
+            int successes = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                CompletableFuture<HttpHandler.HttpResult> future = futures.get(i);
+                RequestDefinition definition = definitions.get(i);
+                HttpHandler.HttpResult result = future.isDone() && !future.isCancelled() ? future.get() : null;
+                if (result == null) {
+                    future.cancel(true);
+                    System.out.println("Parallel request '" + describe(definition, i) + "' cancelled (join condition already met)");
+                } else if (result.success) {
+                    successes++;
+                    System.out.println("Parallel request '" + describe(definition, i) + "' succeeded, mapping response:");
+                    definition.mapResponse(result, this::getSlot);
+                } else {
+                    System.err.println("Parallel request '" + describe(definition, i) + "' failed: " + result.errorMessage);
+                }
+            }
+
+            System.out.println("Parallel requests finished: " + successes + " of " + definitions.size()
+                + " succeeded (" + required + " required)");
+            if (successes >= required) {
+                return getEdge(0).getTarget();
+            } else if (successes > 0) {
+                return getEdge(1).getTarget();
+            } else {
+                return getEdge(2).getTarget();
+            }
+
+        } catch (Exception e) {
+            System.err.println("Error in ParallelRequestNode: " + e.getMessage());
+            return getEdge(2).getTarget();
+        }
+    }
+
+    /**
+     * Blocks until enough requests have succeeded or all of them have finished.
+     */
+    private void awaitJoin(List<CompletableFuture<HttpHandler.HttpResult>> futures, int required)
+            throws InterruptedException, ExecutionException {
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        CompletableFuture<Void> joined = new CompletableFuture<>();
+
+        for (CompletableFuture<HttpHandler.HttpResult> future : futures) {
+            future.whenComplete((result, error) -> {
+                int successCount = result != null && result.success ? successes.incrementAndGet() : successes.get();
+                int completedCount = completed.incrementAndGet();
+                if (successCount >= required || completedCount == futures.size()) {
+                    joined.complete(null);
+                }
+            });
+        }
+
+        joined.get();
+    }
+
+    private int requiredSuccesses(int requestCount) {
+        String joinMode = String.valueOf(this.getProperty(JOIN_MODE));
+        if ("any".equals(joinMode)) {
+            return 1;
+        } else if ("quorum".equals(joinMode)) {
+            int quorum = parseInt(this.getProperty(QUORUM), 1);
+            return Math.max(1, Math.min(quorum, requestCount));
+        }
+        return requestCount;
+    }
+
+    private static HttpHandler.HttpResult timeoutResult(Duration timeout) {
+        return new HttpHandler.HttpResult(false, null, 408, "Timeout: No response within " + timeout.toMillis() + " ms");
+    }
+
+    private static String describe(RequestDefinition definition, int index) {
+        String name = definition.getName().trim();
+        return name.isEmpty() ? "#" + (index + 1) : name;
+    }
+
+    static List<RequestDefinition> parseDefinitions(String requestsJson) {
+        List<RequestDefinition> definitions = new ArrayList<>();
+        if (requestsJson == null || requestsJson.trim().isEmpty()) {
+            return definitions;
+        }
+        JSONArray array = new JSONArray(requestsJson.trim());
+        for (int i = 0; i < array.length(); i++) {
+            Object entry = array.get(i);
+            if (entry instanceof JSONObject) {
+                definitions.add(RequestDefinition.fromJson((JSONObject) entry));
+            }
+        }
+        return definitions;
+    }
+
+    private static int parseInt(Object value, int defaultValue) {
+        try {
+            return Integer.parseInt(String.valueOf(value).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private Slot getSlot(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
+        }
+        throw new NodeExecutionException(this, "Unable to find variable: " + name);
+    }
+
+    private Slot getSlotOrNull(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
+        }
+        return null;
+    }
+
+    private HttpPluginRuntime getHttpRuntime(WozInterface comm) {
+        PluginRuntime runtime = getPluginRuntime(HttpPlugin.class, comm);
+        return runtime instanceof HttpPluginRuntime ? (HttpPluginRuntime) runtime : null;
+    }
+
+    @Override
+    public JComponent createEditorComponent(Map<String, Object> properties) {
+        JPanel mainPanel = new JPanel(new BorderLayout());
+
+        JPanel joinPanel = new JPanel(new GridBagLayout());
+        joinPanel.setBorder(BorderFactory.createTitledBorder("Join"));
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(2, 2, 2, 2);
+
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.weightx = 0;
+        joinPanel.add(new JLabel("Continue on:"), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JComboBox<String> joinCombo = new JComboBox<>(JOIN_MODE_LABELS);
+        String currentJoin = properties.getOrDefault(JOIN_MODE, "all").toString();
+        for (int i = 0; i < JOIN_MODES.length; i++) {
+            if (JOIN_MODES[i].equals(currentJoin)) {
+                joinCombo.setSelectedIndex(i);
+            }
+        }
+        joinPanel.add(joinCombo, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.weightx = 0;
+        joinPanel.add(new JLabel("Quorum:"), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JSpinner quorumSpinner = new JSpinner(new SpinnerNumberModel(
+            Math.max(1, parseInt(properties.getOrDefault(QUORUM, "1"), 1)), 1, 100, 1));
+        quorumSpinner.setEnabled("quorum".equals(currentJoin));
+        quorumSpinner.addChangeListener(e -> properties.put(QUORUM, quorumSpinner.getValue().toString()));
+        joinPanel.add(quorumSpinner, gbc);
+
+        joinCombo.addActionListener(e -> {
+            String mode = JOIN_MODES[joinCombo.getSelectedIndex()];
+            properties.put(JOIN_MODE, mode);
+            quorumSpinner.setEnabled("quorum".equals(mode));
+        });
+
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        gbc.weightx = 0;
+        joinPanel.add(new JLabel("Timeout per request (ms):"), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JSpinner timeoutSpinner = new JSpinner(new SpinnerNumberModel(
+            Math.max(100, parseInt(properties.getOrDefault(BRANCH_TIMEOUT, "10000"), 10000)), 100, 600000, 500));
+        timeoutSpinner.addChangeListener(e -> properties.put(BRANCH_TIMEOUT, timeoutSpinner.getValue().toString()));
+        joinPanel.add(timeoutSpinner, gbc);
+
+        mainPanel.add(joinPanel, BorderLayout.NORTH);
+
+        List<RequestDefinition> definitions;
+        try {
+            definitions = parseDefinitions(properties.getOrDefault(REQUESTS, "[]").toString());
+        } catch (Exception e) {
+            definitions = new ArrayList<>();
+        }
+        List<RequestDefinition> model = definitions;
+        JTabbedPane requestTabs = new JTabbedPane();
+        Runnable save = () -> {
+            JSONArray array = new JSONArray();
+            for (int i = 0; i < model.size(); i++) {
+                array.put(model.get(i).toJson());
+                if (i < requestTabs.getTabCount()) {
+                    requestTabs.setTitleAt(i, describe(model.get(i), i));
+                }
+            }
+            properties.put(REQUESTS, array.toString());
+        };
+
+        for (RequestDefinition definition : model) {
+            requestTabs.addTab(describe(definition, requestTabs.getTabCount()), createRequestPanel(definition, save));
+        }
+
+        JButton addButton = new JButton("+");
+        addButton.setToolTipText("Add request");
+        addButton.addActionListener(e -> {
+            RequestDefinition definition = new RequestDefinition();
+            model.add(definition);
+            requestTabs.addTab(describe(definition, requestTabs.getTabCount()), createRequestPanel(definition, save));
+            requestTabs.setSelectedIndex(requestTabs.getTabCount() - 1);
+            save.run();
+        });
+
+        JButton removeButton = new JButton("-");
+        removeButton.setToolTipText("Remove selected request");
+        removeButton.addActionListener(e -> {
+            int index = requestTabs.getSelectedIndex();
+            if (index >= 0) {
+                model.remove(index);
+                requestTabs.removeTabAt(index);
+                save.run();
+            }
+        });
+
+        JPanel requestsPanel = new JPanel(new BorderLayout());
+        requestsPanel.setBorder(BorderFactory.createTitledBorder("Requests"));
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 2, 0));
+        buttonPanel.add(addButton);
+        buttonPanel.add(removeButton);
+        requestsPanel.add(buttonPanel, BorderLayout.NORTH);
+        requestsPanel.add(requestTabs, BorderLayout.CENTER);
+        mainPanel.add(requestsPanel, BorderLayout.CENTER);
+
+        if (model.isEmpty()) {
+            addButton.doClick();
+        }
+
+        return mainPanel;
+    }
+
+    /**
+     * Returns the editor of one request definition; other nodes that hold a
+     * definition use it as well.
+     */
+    static JComponent createRequestPanel(RequestDefinition definition, Runnable save) {
+        JPanel panel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(2, 2, 2, 2);
+        gbc.anchor = GridBagConstraints.NORTHWEST;
+        int row = 0;
+
+        addTextRow(panel, row++, "Name:", definition, RequestDefinition.NAME, "Shown in the log", save);
+        addComboRow(panel, row++, "HTTP Method:", HTTP_METHODS, definition, RequestDefinition.HTTP_METHOD, save);
+        addTextRow(panel, row++, "HTTP URL:", definition, RequestDefinition.URL, "e.g. https://api.example.com/users/{id}", save);
+        addTextRow(panel, row++, "Path Variables:", definition, RequestDefinition.PATH_VARIABLES, "pathVar=variable, ...", save);
+        addTextRow(panel, row++, "Query Parameters:", definition, RequestDefinition.QUERY_VARIABLES, "paramKey=variable, ...", save);
+        addComboRow(panel, row++, "Authorization:", AUTH_TYPES, definition, RequestDefinition.AUTH_TYPE, save);
+        addTextRow(panel, row++, "Authorization Value:", definition, RequestDefinition.AUTH_VALUE,
+            "token, username:password or headerName:value", save);
+        addTextRow(panel, row++, "Custom Headers:", definition, RequestDefinition.CUSTOM_HEADERS, "Header=value, ...", save);
+        addComboRow(panel, row++, "Body Mode:", new String[]{"mapping", "raw"}, definition, RequestDefinition.BODY_MODE, save);
+        addTextRow(panel, row++, "Body Mappings:", definition, RequestDefinition.BODY_VARIABLES, "jsonKey=variable, ...", save);
+        addTextRow(panel, row++, "Raw JSON Body:", definition, RequestDefinition.RAW_BODY, "Use ${variable} to insert slot values", save);
+        addComboRow(panel, row++, "Response Mode:", new String[]{"multiple", "single"}, definition, RequestDefinition.RESPONSE_MODE, save);
+        addTextRow(panel, row++, "Response Mappings:", definition, RequestDefinition.RESPONSE_MAPPINGS,
+            "jsonPath=variable, e.g. user.address.city=citySlot", save);
+        addTextRow(panel, row++, "Target Variable:", definition, RequestDefinition.RESPONSE_TARGET_VAR,
+            "Single mode: variable that receives the whole response", save);
+        addCheckBoxRow(panel, row++, "Store single response as String", definition, RequestDefinition.RESPONSE_AS_STRING, save);
+        addCheckBoxRow(panel, row++, "Trust all SSL certificates (insecure)", definition, RequestDefinition.TRUST_ALL_CERTS, save);
+
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.weighty = 1.0;
+        panel.add(Box.createVerticalGlue(), gbc);
+
+        return new JScrollPane(panel);
+    }
+
+    private static void addTextRow(JPanel panel, int row, String label, RequestDefinition definition,
+                            String key, String tooltip, Runnable save) {
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(2, 2, 2, 2);
+        gbc.gridy = row;
+
+        gbc.gridx = 0;
+        gbc.weightx = 0;
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JTextField field = new JTextField(definition.get(key), 25);
+        field.setToolTipText(tooltip);
+        field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void update() {
+                definition.set(key, field.getText());
+                save.run();
+            }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { update(); }
+        });
+        panel.add(field, gbc);
+    }
+
+    private static void addComboRow(JPanel panel, int row, String label, String[] items,
+                             RequestDefinition definition, String key, Runnable save) {
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(2, 2, 2, 2);
+        gbc.gridy = row;
+
+        gbc.gridx = 0;
+        gbc.weightx = 0;
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JComboBox<String> combo = new JComboBox<>(items);
+        combo.setSelectedItem(definition.get(key));
+        combo.addActionListener(e -> {
+            definition.set(key, String.valueOf(combo.getSelectedItem()));
+            save.run();
+        });
+        panel.add(combo, gbc);
+    }
+
+    private static void addCheckBoxRow(JPanel panel, int row, String label, RequestDefinition definition,
+                                String key, Runnable save) {
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(2, 2, 2, 2);
+        gbc.gridy = row;
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+
+        JCheckBox checkBox = new JCheckBox(label);
+        checkBox.setSelected(Boolean.parseBoolean(definition.get(key)));
+        checkBox.addActionListener(e -> {
+            definition.set(key, Boolean.toString(checkBox.isSelected()));
+            save.run();
+        });
+        panel.add(checkBox, gbc);
+    }
+
+    @Override
+    protected void writeAttributes(XMLWriter out, IdMap uid_map) {
+        Graph.printAtt(out, REQUESTS, this.getProperty(REQUESTS).toString());
+        Graph.printAtt(out, JOIN_MODE, this.getProperty(JOIN_MODE).toString());
+        Graph.printAtt(out, QUORUM, this.getProperty(QUORUM).toString());
+        Graph.printAtt(out, BRANCH_TIMEOUT, this.getProperty(BRANCH_TIMEOUT).toString());
+    }
+
+    @Override
+    protected void readAttribute(XMLReader r, String name, String value, IdMap uid_map) throws SAXException {
+        if (name.equals(REQUESTS) || name.equals(JOIN_MODE) || name.equals(QUORUM) || name.equals(BRANCH_TIMEOUT)) {
+            this.setProperty(name, value);
+        } else {
+            super.readAttribute(r, name, value, uid_map);
+        }
+    }
+
+    @Override
+    public Color getPortColor(int portNumber) {
+        if (portNumber == 0) {
+            return new Color(0, 150, 0); // Success - green
+        } else if (portNumber == 1) {
+            return new Color(230, 140, 0); // Partial - orange
+        } else if (portNumber == 2) {
+            return new Color(200, 0, 0); // Failure - red
+        }
+        return super.getPortColor(portNumber);
+    }
+}
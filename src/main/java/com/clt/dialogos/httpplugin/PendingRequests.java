@@ -0,0 +1,85 @@
+package com.clt.dialogos.httpplugin;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Requests that were started by one node and are awaited by a later one. Each gets a
+ * handle that the dialog keeps in a slot. Finished requests that nobody awaits are
+ * forgotten after a while, so that a dialog which starts requests in a loop does not
+ * pile up their responses.
+ */
+class PendingRequests {
+    static final long MAX_UNCLAIMED_MILLIS = 10 * 60 * 1000;
+
+    static final class Pending {
+        final CompletableFuture<HttpHandler.HttpResult> result;
+        final RequestDefinition definition;
+        final String description;
+        final long startedAt = System.currentTimeMillis();
+        volatile long finishedAt = 0;
+
+        Pending(CompletableFuture<HttpHandler.HttpResult> result, RequestDefinition definition, String description) {
+            this.result = result;
+            this.definition = definition;
+            this.description = description;
+            result.whenComplete((r, error) -> finishedAt = System.currentTimeMillis());
+        }
+    }
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicLong awaited = new AtomicLong();
+    private final AtomicLong unclaimed = new AtomicLong();
+
+    /**
+     * Registers a started request and returns its handle.
+     */
+    String add(Pending request) {
+        evictUnclaimed();
+        String handle = "http-request-" + counter.incrementAndGet();
+        pending.put(handle, request);
+        return handle;
+    }
+
+    Pending get(String handle) {
+        return pending.get(handle);
+    }
+
+    void remove(String handle) {
+        if (pending.remove(handle) != null) {
+            awaited.incrementAndGet();
+        }
+    }
+
+    private void evictUnclaimed() {
+        long now = System.currentTimeMillis();
+        pending.entrySet().removeIf(entry -> {
+            long finishedAt = entry.getValue().finishedAt;
+            if (finishedAt > 0 && now - finishedAt > MAX_UNCLAIMED_MILLIS) {
+                unclaimed.incrementAndGet();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Forgets all requests when the dialog ends, cancelling those still running.
+     */
+    void cancelAll() {
+        for (Pending request : pending.values()) {
+            request.result.cancel(true);
+            unclaimed.incrementAndGet();
+        }
+        pending.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "started=" + counter.get() + ", awaited=" + awaited.get() + ", unclaimed=" + unclaimed.get()
+            + ", pending=" + pending.size();
+    }
+}
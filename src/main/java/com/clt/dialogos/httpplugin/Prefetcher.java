@@ -0,0 +1,328 @@
+package com.clt.dialogos.httpplugin;
+
+import com.clt.diamant.Slot;
+import com.clt.diamant.graph.Edge;
+import com.clt.diamant.graph.Graph;
+import com.clt.diamant.graph.Node;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Speculative prefetch for SendAndReceiveNodes that opt in. When the dialog enters the
+ * configured ancestor node, the request is resolved with the slot values of that moment
+ * and sent in the background. When the dialog reaches the node itself, the prefetched
+ * result is used if the request resolves to the same method, URL, headers and body;
+ * otherwise it is discarded and the request is sent as usual.
+ * <p>
+ * Requests whose slots are set by an HTTP node on a path between the two nodes are not
+ * prefetched, since they would be discarded anyway. What other nodes do to the slots is
+ * not known in advance; the comparison at the node catches it.
+ */
+class Prefetcher {
+    static final String PREFETCH = "prefetch";
+    static final String PREFETCH_FROM = "prefetchFrom";
+    static final long MAX_AGE_MILLIS = 2 * 60 * 1000;
+
+    /**
+     * Only methods without side effects: an unused prefetch must not change anything.
+     * HEAD and OPTIONS are not among them, since the nodes send them as POST.
+     */
+    private static final Set<String> METHODS = Set.of("GET");
+
+    private static final class Target {
+        final SendAndReceiveNode node;
+        final Set<String> writtenOnPaths;
+
+        Target(SendAndReceiveNode node, Set<String> writtenOnPaths) {
+            this.node = node;
+            this.writtenOnPaths = writtenOnPaths;
+        }
+    }
+
+    private static final class Prefetch {
+        final HttpHandler.PreparedRequest request;
+        final CompletableFuture<HttpHandler.HttpResult> result;
+        final long startedAt = System.currentTimeMillis();
+
+        Prefetch(HttpHandler.PreparedRequest request, CompletableFuture<HttpHandler.HttpResult> result) {
+            this.request = request;
+            this.result = result;
+        }
+    }
+
+    private final HttpPluginRuntime runtime;
+    private final Map<Node, List<Target>> plans = new ConcurrentHashMap<>();
+    private final Map<Node, Prefetch> prefetched = new ConcurrentHashMap<>();
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong mismatched = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong unused = new AtomicLong();
+
+    Prefetcher(HttpPluginRuntime runtime) {
+        this.runtime = runtime;
+    }
+
+    static boolean isEnabled(Node node) {
+        return Boolean.parseBoolean(String.valueOf(node.getProperty(PREFETCH)));
+    }
+
+    /**
+     * Only the plugin's own nodes can start prefetches, since other nodes do not run
+     * plugin code when the dialog enters them.
+     */
+    static boolean canStart(Node node) {
+        return node.getClass().getPackage() == Prefetcher.class.getPackage();
+    }
+
+    /**
+     * Starts the prefetches of the nodes that name the given node as their ancestor.
+     */
+    void enter(Node node) {
+        List<Target> targets;
+        try {
+            targets = plans.computeIfAbsent(node, Prefetcher::plan);
+        } catch (Exception e) {
+            System.err.println("Prefetch plan for '" + node.getTitle() + "' failed: " + e.getMessage());
+            return;
+        }
+        for (Target target : targets) {
+            try {
+                start(target);
+            } catch (Exception e) {
+                System.err.println("Prefetch for '" + target.node.getTitle() + "' not started: " + e.getMessage());
+            }
+        }
+    }
+
+    private void start(Target target) {
+        Set<String> read = new HashSet<>();
+        Function<String, Slot> slots = name -> {
+            read.add(name);
+            return target.node.getSlotOrNull(name);
+        };
+        RequestDefinition definition = target.node.getDefinition();
+        HttpHandler.PreparedRequest request = definition.prepare(slots);
+        if (!METHODS.contains(request.method)) {
+            System.err.println("Prefetch for '" + target.node.getTitle() + "' skipped: " + request.method + " requests are not prefetched");
+            return;
+        }
+        for (String name : read) {
+            if (target.writtenOnPaths.contains(name)) {
+                System.out.println("Prefetch for '" + target.node.getTitle() + "' skipped: " + name
+                    + " is set before the node is reached");
+                return;
+            }
+        }
+
+        Prefetch previous = prefetched.get(target.node);
+        if (previous != null && sameRequest(previous.request, request)
+            && System.currentTimeMillis() - previous.startedAt < MAX_AGE_MILLIS) {
+            return;
+        }
+        RequestOptions options = target.node.getOptions(definition);
+        CompletableFuture<HttpHandler.HttpResult> result = runtime.submit(() -> HttpHandler.execute(runtime, request, options));
+        Prefetch replaced = prefetched.put(target.node, new Prefetch(request, result));
+        if (replaced != null) {
+            replaced.result.cancel(true);
+            unused.incrementAndGet();
+        }
+        started.incrementAndGet();
+        System.out.println("Prefetching for '" + target.node.getTitle() + "': " + request.method + " " + request.url);
+    }
+
+    /**
+     * Hands the prefetched result for the node to it if the request is still the same,
+     * or returns null if there is none to use.
+     */
+    CompletableFuture<HttpHandler.HttpResult> take(Node node, HttpHandler.PreparedRequest request) {
+        Prefetch prefetch = prefetched.remove(node);
+        if (prefetch == null) {
+            return null;
+        }
+        long age = System.currentTimeMillis() - prefetch.startedAt;
+        if (!sameRequest(prefetch.request, request)) {
+            mismatched.incrementAndGet();
+            System.out.println("✗ Prefetched request discarded, the slots changed: " + prefetch.request.url);
+            return null;
+        }
+        if (age > MAX_AGE_MILLIS) {
+            expired.incrementAndGet();
+            System.out.println("✗ Prefetched request discarded after " + age + " ms: " + request.url);
+            return null;
+        }
+        hits.incrementAndGet();
+        System.out.println("✓ Using prefetched request started " + age + " ms ago"
+            + (prefetch.result.isDone() ? "" : " (still running)") + ": " + request.url);
+        return prefetch.result;
+    }
+
+    private static boolean sameRequest(HttpHandler.PreparedRequest a, HttpHandler.PreparedRequest b) {
+        return a.method.equals(b.method) && a.url.equals(b.url) && a.headers.equals(b.headers)
+            && Objects.equals(a.body, b.body) && a.trustAllCertificates == b.trustAllCertificates;
+    }
+
+    /**
+     * Finds the nodes that prefetch when the dialog enters the given node, and the slots
+     * that HTTP nodes on the way to them write.
+     */
+    private static List<Target> plan(Node ancestor) {
+        Graph graph = ancestor.getGraph();
+        String title = ancestor.getTitle();
+        if (graph == null || title == null || title.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        int sameTitle = 0;
+        for (Node node : graph.getNodes()) {
+            if (title.trim().equals(node.getTitle() == null ? null : node.getTitle().trim())) {
+                sameTitle++;
+            }
+        }
+        List<Target> targets = new ArrayList<>();
+        for (Node node : graph.getNodes()) {
+            if (!(node instanceof SendAndReceiveNode) || node == ancestor || !isEnabled(node)
+                || !title.trim().equals(String.valueOf(node.getProperty(PREFETCH_FROM)).trim())) {
+                continue;
+            }
+            SendAndReceiveNode target = (SendAndReceiveNode) node;
+            if (sameTitle > 1) {
+                System.err.println("Prefetch for '" + target.getTitle() + "' disabled: " + sameTitle + " nodes are titled '"
+                    + title.trim() + "', give the start node a unique title");
+                continue;
+            }
+            String method = String.valueOf(target.getDefinition().getMethod()).trim().toUpperCase(Locale.ROOT);
+            if (!METHODS.contains(method)) {
+                System.err.println("Prefetch for '" + target.getTitle() + "' disabled: " + method + " requests are not prefetched");
+                continue;
+            }
+            Set<Node> between = nodesBetween(graph, ancestor, target);
+            if (between == null) {
+                System.err.println("Prefetch for '" + target.getTitle() + "' disabled: it cannot be reached from '" + title + "'");
+                continue;
+            }
+            Set<String> written = new HashSet<>();
+            for (Node onPath : between) {
+                written.addAll(writtenSlots(onPath));
+            }
+            targets.add(new Target(target, written));
+        }
+        return targets;
+    }
+
+    /**
+     * Returns the nodes on any path from the ancestor to the target, including the
+     * ancestor, or null if there is no such path.
+     */
+    static Set<Node> nodesBetween(Graph graph, Node ancestor, Node target) {
+        Map<Node, List<Node>> predecessors = new HashMap<>();
+        for (Node node : graph.getNodes()) {
+            for (Node successor : successors(node)) {
+                predecessors.computeIfAbsent(successor, n -> new ArrayList<>()).add(node);
+            }
+        }
+        Set<Node> reachable = reachableFrom(ancestor);
+        if (!reachable.contains(target)) {
+            return null;
+        }
+        Set<Node> reaching = collect(target, node -> predecessors.getOrDefault(node, Collections.emptyList()));
+        reachable.retainAll(reaching);
+        reachable.remove(target);
+        reachable.add(ancestor);
+        return reachable;
+    }
+
+    /**
+     * Returns the nodes that can be reached from the given node along its edges.
+     */
+    static Set<Node> reachableFrom(Node node) {
+        return collect(node, Prefetcher::successors);
+    }
+
+    private static Set<Node> collect(Node start, Function<Node, List<Node>> next) {
+        Set<Node> visited = new HashSet<>();
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            for (Node node : next.apply(queue.poll())) {
+                if (visited.add(node)) {
+                    queue.add(node);
+                }
+            }
+        }
+        return visited;
+    }
+
+    private static List<Node> successors(Node node) {
+        List<Node> successors = new ArrayList<>();
+        for (int i = 0; i < node.numEdges(); i++) {
+            Edge edge = node.getEdge(i);
+            if (edge != null && edge.getTarget() != null) {
+                successors.add(edge.getTarget());
+            }
+        }
+        return successors;
+    }
+
+    /**
+     * The slots an HTTP node writes, as far as its configuration tells.
+     */
+    private static Set<String> writtenSlots(Node node) {
+        Set<String> slots = new HashSet<>();
+        if (node instanceof SendAndReceiveNode || node instanceof WebSocketNode) {
+            slots.addAll(RequestDefinition.fromProperties(node::getProperty).responseSlots());
+            Paginator paginator = Paginator.fromProperties(node::getProperty);
+            if (paginator != null) {
+                slots.add(paginator.getTargetVariable());
+            }
+        } else if (node instanceof ParallelRequestNode) {
+            for (RequestDefinition definition : ParallelRequestNode.parseDefinitions(String.valueOf(node.getProperty("requests")))) {
+                slots.addAll(definition.responseSlots());
+            }
+        } else if (node instanceof EventStreamNode) {
+            slots.add(String.valueOf(node.getProperty("targetVariable")).trim());
+            slots.add(String.valueOf(node.getProperty("statusVariable")).trim());
+        } else if (node instanceof StartRequestNode) {
+            slots.add(String.valueOf(node.getProperty("handleVariable")).trim());
+        } else if (node instanceof BatchRequestNode) {
+            slots.add(String.valueOf(node.getProperty("outputVariable")).trim());
+            slots.add(String.valueOf(node.getProperty("errorsVariable")).trim());
+        }
+        return slots;
+    }
+
+    /**
+     * Forgets the prefetches nobody used when the dialog ends, cancelling those still
+     * running.
+     */
+    void clear() {
+        for (Prefetch prefetch : prefetched.values()) {
+            prefetch.result.cancel(true);
+        }
+        unused.addAndGet(prefetched.size());
+        prefetched.clear();
+        plans.clear();
+    }
+
+    @Override
+    public String toString() {
+        long startedCount = started.get();
+        long hitRate = startedCount == 0 ? 0 : Math.round(100.0 * hits.get() / startedCount);
+        return "started=" + startedCount + ", hits=" + hits.get() + " (" + hitRate + "%), discarded=" + mismatched.get()
+            + ", expired=" + expired.get() + ", unused=" + (unused.get() + prefetched.size());
+    }
+}
@@ -0,0 +1,211 @@
+package com.clt.dialogos.httpplugin;
+
+/**
+ * Token bucket for the requests to one host, so that API quotas are not exceeded.
+ * Tokens are handed out in order and may be reserved ahead, which makes callers
+ * wait for their turn rather than race for the next token. Besides the configured
+ * rate, the limiter follows what the server says about its quota: a 429 halves the
+ * rate for a minute, Retry-After pauses all requests, and the X-RateLimit-* and
+ * RateLimit-* headers pause requests when the quota is used up and pace them when
+ * it runs low.
+ */
+class RateLimiter {
+    static final long DEFAULT_429_PAUSE_MILLIS = 1000;
+    static final long ADAPTATION_MILLIS = 60_000;
+
+    private static final double MIN_RATE = 0.1;
+    /** Reset values above this are absolute epoch seconds rather than delays. */
+    private static final long EPOCH_SECONDS_THRESHOLD = 1_000_000_000L;
+
+    /**
+     * Cause of the result of a request that was not sent because the next token
+     * would take longer than the allowed wait.
+     */
+    static final class RateLimitedException extends Exception {
+        RateLimitedException(String host, long maxWaitMillis) {
+            super("Rate limit for " + host + " requires a wait of more than " + maxWaitMillis + " ms");
+        }
+    }
+
+    private final String host;
+    private final double configuredRate;
+    private final double burst;
+
+    private double rate;
+    private double tokens;
+    private long lastRefill;
+    private long adaptedUntil = 0;
+    private long pausedUntil = 0;
+
+    private long throttled = 0;
+    private long rejected = 0;
+    private long tooManyRequests = 0;
+
+    /**
+     * @param rate requests per second, 0 to only follow the server's rate limit headers
+     */
+    RateLimiter(String host, double rate, int burst) {
+        this.host = host;
+        this.configuredRate = Math.max(0, rate);
+        this.burst = Math.max(1, burst);
+        this.rate = configuredRate;
+        this.tokens = this.burst;
+        this.lastRefill = System.currentTimeMillis();
+    }
+
+    /**
+     * Reserves a token and returns how long the caller has to wait before sending,
+     * or -1 if that would be longer than the given maximum. In that case nothing is
+     * reserved.
+     */
+    synchronized long reserve(long maxWaitMillis) {
+        long now = System.currentTimeMillis();
+        refill(now);
+
+        long wait = Math.max(0, pausedUntil - now);
+        if (rate > 0 && tokens < 1) {
+            wait = Math.max(wait, (long) Math.ceil((1 - tokens) / rate * 1000));
+        }
+        if (wait > maxWaitMillis) {
+            rejected++;
+            return -1;
+        }
+        if (rate > 0) {
+            tokens -= 1;
+        }
+        if (wait > 0) {
+            throttled++;
+        }
+        return wait;
+    }
+
+    /**
+     * Waits for a token as long as allowed. Returns false if the request must not be
+     * sent because the wait would be too long.
+     */
+    boolean acquire(long maxWaitMillis) throws InterruptedException {
+        long wait = reserve(maxWaitMillis);
+        if (wait < 0) {
+            return false;
+        }
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+        return true;
+    }
+
+    /**
+     * Adapts the limiter to the status code and rate limit headers of a response.
+     */
+    synchronized void onResponse(HttpHandler.HttpResult result) {
+        long now = System.currentTimeMillis();
+
+        if (result.statusCode == 429) {
+            tooManyRequests++;
+            long retryAfter = RetryPolicy.retryAfterMillis(result);
+            pauseUntil(now + (retryAfter > 0 ? retryAfter : DEFAULT_429_PAUSE_MILLIS), "429 Too Many Requests");
+            if (rate > 0) {
+                adapt(now, Math.max(MIN_RATE, rate / 2), now + ADAPTATION_MILLIS);
+            }
+        } else if (result.statusCode == 503) {
+            long retryAfter = RetryPolicy.retryAfterMillis(result);
+            if (retryAfter > 0) {
+                pauseUntil(now + retryAfter, "503 with Retry-After");
+            }
+        }
+
+        long remaining = parseLong(firstHeader(result, "X-RateLimit-Remaining", "RateLimit-Remaining"));
+        long reset = parseLong(firstHeader(result, "X-RateLimit-Reset", "RateLimit-Reset"));
+        String combined = result.header("RateLimit");
+        if (combined != null) {
+            // draft standard: RateLimit: limit=100, remaining=50, reset=30
+            remaining = remaining < 0 ? parseLong(parameter(combined, "remaining")) : remaining;
+            reset = reset < 0 ? parseLong(parameter(combined, "reset")) : reset;
+        }
+        if (remaining < 0 || reset < 0) {
+            return;
+        }
+        long resetAt = reset > EPOCH_SECONDS_THRESHOLD ? reset * 1000 : now + reset * 1000;
+        if (resetAt <= now) {
+            return;
+        }
+        if (remaining == 0) {
+            pauseUntil(resetAt, "quota used up");
+        } else if (remaining < burst) {
+            // spread what is left of the quota over the rest of the window
+            double quotaRate = Math.max(MIN_RATE, remaining * 1000.0 / (resetAt - now));
+            if (rate <= 0 || quotaRate < rate) {
+                adapt(now, quotaRate, resetAt);
+            }
+        }
+    }
+
+    private void pauseUntil(long until, String reason) {
+        if (until > pausedUntil) {
+            System.out.println("Rate limit for " + host + ": pausing requests for " + (until - System.currentTimeMillis())
+                + " ms (" + reason + ")");
+            pausedUntil = until;
+        }
+    }
+
+    private void adapt(long now, double newRate, long until) {
+        refill(now);
+        if (configuredRate <= 0) {
+            tokens = Math.min(tokens, 1);
+        }
+        rate = newRate;
+        adaptedUntil = Math.max(adaptedUntil, until);
+    }
+
+    private void refill(long now) {
+        if (adaptedUntil > 0 && now >= adaptedUntil) {
+            rate = configuredRate;
+            adaptedUntil = 0;
+        }
+        if (rate > 0) {
+            tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1000);
+        }
+        lastRefill = now;
+    }
+
+    private static String firstHeader(HttpHandler.HttpResult result, String... names) {
+        for (String name : names) {
+            String value = result.header(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static String parameter(String header, String name) {
+        for (String part : header.split("[,;]")) {
+            String[] pair = part.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase(name)) {
+                return pair[1];
+            }
+        }
+        return null;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return host + ": rate=" + (rate > 0 ? String.format("%.1f/s", rate) : "unlimited") + ", throttled=" + throttled
+            + ", rejected=" + rejected + ", 429s=" + tooManyRequests;
+    }
+}
@@ -0,0 +1,80 @@
+package com.clt.dialogos.httpplugin;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for GET requests: while a request is on the wire, identical requests
+ * (same method, final URL, trust mode and request headers) wait for its result
+ * instead of sending their own. Shared by all dialogs in the JVM, like
+ * {@link BodyBudget#GLOBAL}, since concurrent dialogs are where duplicates come from.
+ */
+class RequestCoalescer {
+    static final RequestCoalescer GLOBAL = new RequestCoalescer();
+
+    private final Map<String, CompletableFuture<HttpHandler.HttpResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong gaveUp = new AtomicLong();
+
+    boolean appliesTo(HttpHandler.PreparedRequest request) {
+        return "GET".equals(request.method);
+    }
+
+    /**
+     * Sends the request, or waits for the identical one in flight. A request waits at
+     * most as long as its own timeout (or what is left of its deadline) and then sends
+     * the request itself, so it never waits longer than it would on its own.
+     */
+    HttpHandler.HttpResult execute(HttpHandler.PreparedRequest request, RequestOptions options,
+                                   Supplier<HttpHandler.HttpResult> call) {
+        String key = request.key();
+        CompletableFuture<HttpHandler.HttpResult> own = new CompletableFuture<>();
+        CompletableFuture<HttpHandler.HttpResult> existing = inFlight.putIfAbsent(key, own);
+
+        if (existing != null) {
+            long waitMillis = options.currentTimeout().toMillis();
+            System.out.println("Joining identical in-flight request: " + request.method + " " + request.url);
+            try {
+                HttpHandler.HttpResult result = existing.get(waitMillis, TimeUnit.MILLISECONDS);
+                coalesced.incrementAndGet();
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return HttpHandler.HttpResult.failure(0, "Request interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                return HttpHandler.HttpResult.failure(0, cause.getMessage(), cause);
+            } catch (TimeoutException e) {
+                gaveUp.incrementAndGet();
+                System.err.println("✗ In-flight request not answered within " + waitMillis + " ms, sending own request: " + request.url);
+                sent.incrementAndGet();
+                return call.get();
+            }
+        }
+
+        sent.incrementAndGet();
+        try {
+            HttpHandler.HttpResult result = call.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "sent=" + sent.get() + ", coalesced=" + coalesced.get() + ", stopped waiting=" + gaveUp.get();
+    }
+}
@@ -0,0 +1,267 @@
+package com.clt.dialogos.httpplugin;
+
+import com.clt.diamant.Slot;
+import com.clt.script.exp.Value;
+import com.clt.script.exp.values.StringValue;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The request and response configuration of a SendAndReceiveNode, detached from the
+ * node so that other nodes can hold several of them. The keys are the same property
+ * names SendAndReceiveNode stores in the dialog file.
+ */
+class RequestDefinition {
+    static final String NAME = "name";
+    static final String URL = "url";
+    static final String HTTP_METHOD = "httpMethod";
+    static final String PATH_VARIABLES = "pathVariables";
+    static final String QUERY_VARIABLES = "queryVariables";
+    static final String BODY_VARIABLES = "bodyVariables";
+    static final String RESPONSE_MODE = "responseMode";
+    static final String RESPONSE_MAPPINGS = "responseMappings";
+    static final String RESPONSE_TARGET_VAR = "responseTargetVar";
+    static final String RESPONSE_AS_STRING = "responseAsString";
+    static final String AUTH_TYPE = "authType";
+    static final String AUTH_VALUE = "authValue";
+    static final String CUSTOM_HEADERS = "customHeaders";
+    static final String BODY_MODE = "bodyMode";
+    static final String RAW_BODY = "rawBody";
+    static final String TRUST_ALL_CERTS = "trustAllCerts";
+
+    static final String[] KEYS = {
+        URL, HTTP_METHOD, PATH_VARIABLES, QUERY_VARIABLES, BODY_VARIABLES, RESPONSE_MODE,
+        RESPONSE_MAPPINGS, RESPONSE_TARGET_VAR, RESPONSE_AS_STRING, AUTH_TYPE, AUTH_VALUE,
+        CUSTOM_HEADERS, BODY_MODE, RAW_BODY, TRUST_ALL_CERTS
+    };
+
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{([^}]+)}");
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    RequestDefinition() {
+        values.put(NAME, "");
+        values.put(URL, "");
+        values.put(HTTP_METHOD, "GET");
+        values.put(PATH_VARIABLES, "");
+        values.put(QUERY_VARIABLES, "");
+        values.put(BODY_VARIABLES, "");
+        values.put(RESPONSE_MODE, "multiple");
+        values.put(RESPONSE_MAPPINGS, "");
+        values.put(RESPONSE_TARGET_VAR, "");
+        values.put(RESPONSE_AS_STRING, "false");
+        values.put(AUTH_TYPE, "None");
+        values.put(AUTH_VALUE, "");
+        values.put(CUSTOM_HEADERS, "");
+        values.put(BODY_MODE, "mapping");
+        values.put(RAW_BODY, "");
+        values.put(TRUST_ALL_CERTS, "false");
+    }
+
+    /**
+     * Reads the definition from node properties, e.g. {@code node::getProperty}.
+     */
+    static RequestDefinition fromProperties(Function<String, Object> properties) {
+        RequestDefinition definition = new RequestDefinition();
+        for (String key : KEYS) {
+            Object value = properties.apply(key);
+            if (value != null) {
+                definition.set(key, value.toString());
+            }
+        }
+        return definition;
+    }
+
+    static RequestDefinition fromJson(JSONObject json) {
+        RequestDefinition definition = new RequestDefinition();
+        for (String key : json.keySet()) {
+            definition.set(key, String.valueOf(json.get(key)));
+        }
+        return definition;
+    }
+
+    JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            json.put(entry.getKey(), entry.getValue());
+        }
+        return json;
+    }
+
+    String get(String key) {
+        String value = values.get(key);
+        return value == null ? "" : value;
+    }
+
+    void set(String key, String value) {
+        values.put(key, value == null ? "" : value);
+    }
+
+    String getName() {
+        return get(NAME);
+    }
+
+    String getMethod() {
+        return get(HTTP_METHOD).trim().toUpperCase();
+    }
+
+    /**
+     * Evaluates the body, path, query and header expressions against the slots.
+     * Throws an {@link IllegalArgumentException} if the raw JSON body is invalid.
+     */
+    HttpHandler.PreparedRequest prepare(Function<String, Slot> slotProvider) {
+        JSONObject jsonBody;
+        if ("raw".equals(get(BODY_MODE))) {
+            String rawJson = substituteSlotValues(get(RAW_BODY), slotProvider);
+            jsonBody = parseRawJsonBody(rawJson);
+        } else {
+            Map<String, String> bodyVarMappings = parseMappingsToMap(get(BODY_VARIABLES).trim());
+            jsonBody = JsonConverter.variablesToJson(bodyVarMappings, slotProvider);
+        }
+
+        String pathVarsStr = get(PATH_VARIABLES).trim();
+        String[] pathVars = pathVarsStr.isEmpty() ? new String[0] : pathVarsStr.split(",");
+        Map<String, String> queryVarMappings = parseMappingsToMap(get(QUERY_VARIABLES).trim());
+
+        return HttpHandler.prepareRequest(
+            get(URL).trim(),
+            get(HTTP_METHOD).trim(),
+            pathVars,
+            queryVarMappings,
+            jsonBody,
+            slotProvider,
+            get(AUTH_TYPE),
+            get(AUTH_VALUE),
+            get(CUSTOM_HEADERS),
+            Boolean.parseBoolean(get(TRUST_ALL_CERTS))
+        );
+    }
+
+    /**
+     * Stores a successful response in the configured slots, either as a whole
+     * (single mode) or through the jsonPath=slot mappings (multiple mode).
+     */
+    void mapResponse(HttpHandler.HttpResult result, Function<String, Slot> slotProvider) {
+        Object responsePayload = result.payload != null ? result.payload : parseResponsePayload(result.response);
+        JSONObject responseJson = responsePayload instanceof JSONObject
+            ? (JSONObject) responsePayload
+            : wrapArrayResponse((JSONArray) responsePayload);
+
+        if ("single".equals(get(RESPONSE_MODE))) {
+            String targetVar = get(RESPONSE_TARGET_VAR).trim();
+            boolean asString = Boolean.parseBoolean(get(RESPONSE_AS_STRING));
+            JsonConverter.mapJsonToSingleVariable(responsePayload, result.response, targetVar, asString, slotProvider);
+        } else {
+            JsonConverter.mapJsonToVariables(responseJson, get(RESPONSE_MAPPINGS).trim(), slotProvider);
+        }
+    }
+
+    /**
+     * Returns the names of the slots that {@link #mapResponse} writes.
+     */
+    Set<String> responseSlots() {
+        Set<String> slots = new LinkedHashSet<>();
+        if ("single".equals(get(RESPONSE_MODE))) {
+            slots.add(get(RESPONSE_TARGET_VAR).trim());
+        } else {
+            slots.addAll(parseMappingsToMap(get(RESPONSE_MAPPINGS)).values());
+        }
+        slots.remove("");
+        return slots;
+    }
+
+    /**
+     * Returns an extractor for the paths of the response mappings, or null in single
+     * mode, where the whole response is needed.
+     */
+    JsonPathExtractor createExtractor() {
+        if ("single".equals(get(RESPONSE_MODE))) {
+            return null;
+        }
+        JsonPathExtractor extractor = new JsonPathExtractor(parseMappingsToMap(get(RESPONSE_MAPPINGS)).keySet());
+        return extractor.isEmpty() ? null : extractor;
+    }
+
+    static Object parseResponsePayload(String responseBody) {
+        if (responseBody == null || responseBody.trim().isEmpty()) {
+            return new JSONObject();
+        }
+        String trimmed = responseBody.trim();
+        if (trimmed.startsWith("[")) {
+            return new JSONArray(trimmed);
+        }
+        return new JSONObject(trimmed);
+    }
+
+    static JSONObject wrapArrayResponse(JSONArray array) {
+        JSONObject wrapper = new JSONObject();
+        wrapper.put("$root", array);
+        return wrapper;
+    }
+
+    static Map<String, String> parseMappingsToMap(String mappingsStr) {
+        Map<String, String> result = new LinkedHashMap<>();
+
+        if (mappingsStr == null || mappingsStr.trim().isEmpty()) {
+            return result;
+        }
+
+        String[] parts = mappingsStr.split(",");
+        for (String part : parts) {
+            part = part.trim();
+            if (part.isEmpty()) continue;
+
+            if (part.contains("=")) {
+                String[] mapping = part.split("=", 2);
+                result.put(mapping[0].trim(), mapping[1].trim());
+            } else {
+                result.put(part, part);
+            }
+        }
+
+        return result;
+    }
+
+    private static JSONObject parseRawJsonBody(String rawJson) {
+        if (rawJson == null || rawJson.trim().isEmpty()) {
+            return new JSONObject();
+        }
+        try {
+            return new JSONObject(rawJson);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid raw JSON body: " + e.getMessage(), e);
+        }
+    }
+
+    private static String substituteSlotValues(String template, Function<String, Slot> slotProvider) {
+        if (template == null || template.isEmpty()) {
+            return template == null ? "" : template;
+        }
+        Matcher matcher = VARIABLE_PATTERN.matcher(template);
+        StringBuffer buffer = new StringBuffer();
+        while (matcher.find()) {
+            String varName = matcher.group(1).trim();
+            Slot slot = varName.isEmpty() ? null : slotProvider.apply(varName);
+            String replacement = "";
+            if (slot != null) {
+                Value value = slot.getValue();
+                if (value instanceof StringValue) {
+                    replacement = ((StringValue) value).getString();
+                } else if (value != null) {
+                    replacement = value.toString();
+                }
+            }
+            matcher.appendReplacement(buffer, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(buffer);
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,209 @@
+package com.clt.dialogos.httpplugin;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Per-node settings that influence how a prepared request is executed, as opposed to
+ * what is sent (see {@link RequestDefinition}).
+ */
+class RequestOptions {
+    static final String CACHE_ENABLED = "cacheEnabled";
+    static final String CACHE_TTL = "cacheTtl";
+    static final String CACHE_STALE_WHILE_REVALIDATE = "cacheStaleWhileRevalidate";
+    static final String CACHE_STALE_IF_ERROR = "cacheStaleIfError";
+    static final String CACHE_REFRESH_AHEAD = "cacheRefreshAhead";
+    static final String RETRY_MAX_ATTEMPTS = "retryMaxAttempts";
+    static final String RETRY_STATUS_CODES = "retryStatusCodes";
+    static final String RETRY_EXCEPTIONS = "retryExceptions";
+    static final String RETRY_BASE_DELAY = "retryBaseDelay";
+    static final String RETRY_MAX_DELAY = "retryMaxDelay";
+    static final String RETRY_IDEMPOTENCY_KEY = "retryIdempotencyKey";
+
+    static final String HEDGE_ENABLED = "hedgeEnabled";
+    static final String HEDGE_DELAY = "hedgeDelay";
+    static final String HEDGE_PERCENTILE = "hedgePercentile";
+    static final String LIMITER_WAIT = "limiterWait";
+    static final String REQUEST_TIMEOUT = "requestTimeout";
+    static final String MAX_RESPONSE_SIZE = "maxResponseSize";
+    static final String OVERSIZE_RESPONSE = "oversizeResponse";
+    static final String COMPRESS_REQUEST = "compressRequest";
+    static final String COMPRESS_THRESHOLD = "compressThreshold";
+    static final String BREAKER_FALLBACK = "breakerFallback";
+    static final String BREAKER_FALLBACK_PAYLOAD = "breakerFallbackPayload";
+
+    static final String FALLBACK_ERROR = "error";
+    static final String FALLBACK_CACHE = "cache";
+    static final String FALLBACK_PAYLOAD = "payload";
+
+    static final String OVERSIZE_ABORT = "abort";
+    static final String OVERSIZE_TRUNCATE = "truncate";
+
+    static final String DEADLINE_NONE = "none";
+    static final String DEADLINE_START = "start";
+    static final String DEADLINE_INHERIT = "inherit";
+
+    static final String DEFAULT_RETRY_STATUS_CODES = "408, 429, 502, 503, 504";
+    static final String DEFAULT_RETRY_EXCEPTIONS = "ConnectException, HttpTimeoutException";
+
+    Duration timeout = HttpHandler.DEFAULT_REQUEST_TIMEOUT;
+    ResponseBodyLimit bodyLimit = ResponseBodyLimit.none();
+    /**
+     * Reads successful responses as a stream and keeps only these paths, or null to
+     * read the whole body. Such partial results are neither cached nor shared.
+     */
+    JsonPathExtractor extractor = null;
+    /** Request bodies larger than this are sent gzip-compressed, -1 to never compress. */
+    long compressAboveBytes = -1;
+    /** Deadline of the dialog turn the request belongs to, or null. */
+    Deadline deadline = null;
+    boolean cacheEnabled = false;
+    long cacheTtlSeconds = 0;
+    /** Used when the response has no stale-while-revalidate directive. */
+    long staleWhileRevalidateSeconds = 0;
+    /** Used when the response has no stale-if-error directive. */
+    long staleIfErrorSeconds = 0;
+    /** Percentage of the lifetime after which a fresh entry is refreshed, 0 to disable. */
+    int refreshAheadPercent = 0;
+    RetryPolicy retry = RetryPolicy.none();
+    boolean hedgeEnabled = false;
+    /** Delay before the hedged request, used until enough latencies are known for the percentile. */
+    long hedgeDelayMillis = 200;
+    /** Latency percentile of the host to use as hedging delay, 0 to always use the fixed delay. */
+    int hedgePercentile = 0;
+    /** How long to wait for a free slot when the host is at its concurrency limit, 0 to shed at once. */
+    long limiterWaitMillis = 1000;
+    /** What to return while the circuit breaker of the host is open. */
+    String breakerFallback = FALLBACK_ERROR;
+    String breakerFallbackPayload = "";
+
+    static RequestOptions defaults() {
+        return new RequestOptions();
+    }
+
+    /**
+     * Reads the options from node properties, e.g. {@code node::getProperty}.
+     * Missing properties keep their defaults.
+     */
+    static RequestOptions fromProperties(Function<String, Object> properties) {
+        RequestOptions options = new RequestOptions();
+        long timeoutMillis = parseLong(properties.apply(REQUEST_TIMEOUT), options.timeout.toMillis());
+        options.timeout = Duration.ofMillis(Math.max(1, timeoutMillis));
+        options.bodyLimit = new ResponseBodyLimit(
+            parseLong(properties.apply(MAX_RESPONSE_SIZE), 0) * 1024,
+            OVERSIZE_TRUNCATE.equals(parseString(properties.apply(OVERSIZE_RESPONSE), OVERSIZE_ABORT)),
+            BodyBudget.GLOBAL);
+        options.compressAboveBytes = compressAboveBytes(properties);
+        options.cacheEnabled = parseBoolean(properties.apply(CACHE_ENABLED), options.cacheEnabled);
+        options.cacheTtlSeconds = parseLong(properties.apply(CACHE_TTL), options.cacheTtlSeconds);
+        options.staleWhileRevalidateSeconds = parseLong(properties.apply(CACHE_STALE_WHILE_REVALIDATE), options.staleWhileRevalidateSeconds);
+        options.staleIfErrorSeconds = parseLong(properties.apply(CACHE_STALE_IF_ERROR), options.staleIfErrorSeconds);
+        options.refreshAheadPercent = (int) parseLong(properties.apply(CACHE_REFRESH_AHEAD), options.refreshAheadPercent);
+        options.retry = new RetryPolicy(
+            (int) parseLong(properties.apply(RETRY_MAX_ATTEMPTS), 1),
+            parseString(properties.apply(RETRY_STATUS_CODES), DEFAULT_RETRY_STATUS_CODES),
+            parseString(properties.apply(RETRY_EXCEPTIONS), DEFAULT_RETRY_EXCEPTIONS),
+            parseLong(properties.apply(RETRY_BASE_DELAY), 200),
+            parseLong(properties.apply(RETRY_MAX_DELAY), 5000),
+            parseBoolean(properties.apply(RETRY_IDEMPOTENCY_KEY), false)
+        );
+        options.hedgeEnabled = parseBoolean(properties.apply(HEDGE_ENABLED), options.hedgeEnabled);
+        options.hedgeDelayMillis = parseLong(properties.apply(HEDGE_DELAY), options.hedgeDelayMillis);
+        options.hedgePercentile = (int) parseLong(properties.apply(HEDGE_PERCENTILE), options.hedgePercentile);
+        options.limiterWaitMillis = parseLong(properties.apply(LIMITER_WAIT), options.limiterWaitMillis);
+        options.breakerFallback = parseString(properties.apply(BREAKER_FALLBACK), options.breakerFallback);
+        options.breakerFallbackPayload = parseString(properties.apply(BREAKER_FALLBACK_PAYLOAD), options.breakerFallbackPayload);
+        return options;
+    }
+
+    /**
+     * Reads the request compression settings, which the send-only node has as well.
+     */
+    static long compressAboveBytes(Function<String, Object> properties) {
+        if (!parseBoolean(properties.apply(COMPRESS_REQUEST), false)) {
+            return -1;
+        }
+        return Math.max(0, parseLong(properties.apply(COMPRESS_THRESHOLD), 4)) * 1024;
+    }
+
+    RequestOptions withTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    RequestOptions withRequestCompression(long aboveBytes) {
+        this.compressAboveBytes = aboveBytes;
+        return this;
+    }
+
+    RequestOptions withExtractor(JsonPathExtractor extractor) {
+        this.extractor = extractor;
+        return this;
+    }
+
+    RequestOptions withDeadline(Deadline deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    /**
+     * Returns the timeout for an attempt that starts now: the node's timeout, cut
+     * down to what is left of the deadline.
+     */
+    Duration currentTimeout() {
+        return deadline == null ? timeout : deadline.cap(timeout);
+    }
+
+    /**
+     * Cuts a wait (for a rate limit token, a concurrency slot) down to what is left
+     * of the deadline.
+     */
+    long capWait(long waitMillis) {
+        return deadline == null ? waitMillis : deadline.cap(waitMillis);
+    }
+
+    boolean isDeadlineExpired() {
+        return deadline != null && deadline.isExpired();
+    }
+
+    /**
+     * True if the request timed out because the deadline cut its timeout short,
+     * which says nothing about the health of the host.
+     */
+    boolean timedOutByDeadline(HttpHandler.HttpResult result) {
+        return isDeadlineExpired() && result.cause instanceof HttpTimeoutException;
+    }
+
+    /**
+     * Returns the delay after which a hedged request is sent for the host.
+     */
+    long hedgeDelayFor(LatencyTracker latencies) {
+        if (hedgePercentile > 0 && hedgePercentile < 100 && latencies != null) {
+            long observed = latencies.percentile(hedgePercentile);
+            if (observed >= 0) {
+                return observed;
+            }
+        }
+        return hedgeDelayMillis;
+    }
+
+    static String parseString(Object value, String defaultValue) {
+        return value == null ? defaultValue : value.toString();
+    }
+
+    static boolean parseBoolean(Object value, boolean defaultValue) {
+        return value == null ? defaultValue : Boolean.parseBoolean(value.toString().trim());
+    }
+
+    static long parseLong(Object value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
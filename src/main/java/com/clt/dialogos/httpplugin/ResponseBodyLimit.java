@@ -0,0 +1,184 @@
+package com.clt.dialogos.httpplugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+
+/**
+ * Reads response bodies within bounds. Compressed bodies are decoded on the fly (see
+ * {@link ContentEncoding}), and the limits apply to the decoded size. Bodies larger
+ * than the node's maximum are either aborted or cut off, and all bodies count
+ * against the {@link BodyBudget} while they are read. The download is cancelled as
+ * soon as a limit is hit, so a runaway response never ends up on the heap as a whole.
+ */
+class ResponseBodyLimit {
+    static final int LOG_PREVIEW_CHARS = 2000;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Cause of the result of a request whose response was too large for the node or
+     * for the remaining body budget.
+     */
+    static final class TooLargeException extends IOException {
+        TooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    private final long maxBytes;
+    private final boolean truncate;
+    private final BodyBudget budget;
+
+    /**
+     * @param maxBytes largest body accepted, 0 for no limit
+     * @param truncate whether to cut larger bodies off instead of failing the request
+     */
+    ResponseBodyLimit(long maxBytes, boolean truncate, BodyBudget budget) {
+        this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        this.truncate = truncate;
+        this.budget = budget;
+    }
+
+    static ResponseBodyLimit none() {
+        return new ResponseBodyLimit(0, false, BodyBudget.GLOBAL);
+    }
+
+    /**
+     * Reads the whole body as a string in the charset of the response, within the
+     * limits, and closes it.
+     */
+    String read(HttpResponse<InputStream> response, ContentEncoding.Stats stats) throws IOException {
+        String encoding = encodingOf(response);
+        long contentLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        if (!truncate && contentLength > maxBytes) {
+            // no need to download what would be rejected anyway
+            response.body().close();
+            throw tooLarge();
+        }
+
+        ContentEncoding.CountingInputStream wire = new ContentEncoding.CountingInputStream(response.body());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long reserved = 0;
+        try (InputStream body = decode(wire, encoding)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = body.read(buffer)) > 0) {
+                long room = maxBytes - bytes.size();
+                boolean cut = n > room;
+                if (cut && !truncate) {
+                    throw tooLarge();
+                }
+                int length = (int) Math.min(n, room);
+                if (!budget.tryReserve(length)) {
+                    throw new TooLargeException("Response body budget of " + (budget.getLimit() / 1024)
+                        + " KB for all requests in progress is exhausted");
+                }
+                reserved += length;
+                bytes.write(buffer, 0, length);
+                if (cut) {
+                    System.err.println("✗ Response truncated to the maximum size of " + (maxBytes / 1024) + " KB");
+                    break;
+                }
+            }
+            record(stats, encoding, wire.getCount(), bytes.size());
+            return new String(bytes.toByteArray(), charsetOf(response));
+        } finally {
+            budget.release(reserved);
+        }
+    }
+
+    /**
+     * Opens the body for streamed reading: decoded, and failing once more than the
+     * maximum has been read. Streamed bodies are not buffered, so they do not count
+     * against the budget. The statistics are recorded when the stream is closed.
+     */
+    InputStream open(HttpResponse<InputStream> response, ContentEncoding.Stats stats) throws IOException {
+        String encoding = encodingOf(response);
+        ContentEncoding.CountingInputStream wire = new ContentEncoding.CountingInputStream(response.body());
+        return new FilterInputStream(decode(wire, encoding)) {
+            private long count = 0;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    count(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                if (n > 0) {
+                    count(n);
+                }
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                record(stats, encoding, wire.getCount(), count);
+            }
+
+            private void count(long n) throws IOException {
+                count += n;
+                if (count > maxBytes) {
+                    throw tooLarge();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the Content-Encoding of the body, or none for responses without a body.
+     */
+    private static String encodingOf(HttpResponse<?> response) {
+        if (ContentEncoding.hasNoBody(response.statusCode(), response.request().method())) {
+            return "";
+        }
+        return response.headers().firstValue("Content-Encoding").orElse("");
+    }
+
+    private static InputStream decode(InputStream wire, String encoding) throws IOException {
+        try {
+            return ContentEncoding.decode(wire, encoding);
+        } catch (IOException e) {
+            wire.close();
+            throw e;
+        }
+    }
+
+    static Charset charsetOf(HttpResponse<?> response) {
+        return HttpHandler.charsetOf(response.headers().firstValue("Content-Type").orElse(""));
+    }
+
+    private static void record(ContentEncoding.Stats stats, String encoding, long wireBytes, long decodedBytes) {
+        boolean compressed = ContentEncoding.isCompressed(encoding);
+        if (compressed) {
+            System.out.println("Response body: " + wireBytes + " bytes " + encoding.trim() + " -> " + decodedBytes + " bytes");
+        }
+        if (stats != null) {
+            stats.record(compressed, wireBytes, decodedBytes);
+        }
+    }
+
+    private TooLargeException tooLarge() {
+        return new TooLargeException("Response exceeds the maximum size of " + (maxBytes / 1024) + " KB");
+    }
+
+    /**
+     * Shortens a body for the log.
+     */
+    static String preview(String body) {
+        if (body == null || body.length() <= LOG_PREVIEW_CHARS) {
+            return body;
+        }
+        return body.substring(0, LOG_PREVIEW_CHARS) + "... (" + (body.length() - LOG_PREVIEW_CHARS) + " more characters)";
+    }
+}
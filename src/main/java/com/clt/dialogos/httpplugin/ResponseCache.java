@@ -0,0 +1,433 @@
+package com.clt.dialogos.httpplugin;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Size-bounded LRU cache of successful GET responses. Entries keep the parsed JSON
+ * payload, so a hit skips both the network and the parsing of the body.
+ * Freshness follows Cache-Control (max-age, s-maxage, no-store, private, no-cache)
+ * and Expires; a per-node TTL is used for responses without such headers.
+ * Expired entries with an ETag or Last-Modified validator are kept so that they
+ * can be revalidated with a conditional request instead of being downloaded again.
+ * Expired entries may also be served while they are refreshed in the background or
+ * when the server cannot be reached (stale-while-revalidate, stale-if-error).
+ * If a {@link DiskCache} is configured, every stored entry is also written to it and
+ * memory misses are looked up on disk, so cached responses survive restarts.
+ */
+class ResponseCache {
+
+    static final class Entry {
+        final String body;
+        final Object payload;
+        final int statusCode;
+        final Map<String, List<String>> headers;
+        final long storedAt;
+        final long expiresAt;
+        final long weight;
+        final String etag;
+        final String lastModified;
+        final boolean mustRevalidate;
+        final long staleWhileRevalidateSeconds;
+        final long staleIfErrorSeconds;
+
+        Entry(HttpHandler.HttpResult result, long storedAt, long expiresAt) {
+            this.body = result.response;
+            this.payload = result.payload;
+            this.statusCode = result.statusCode;
+            this.headers = result.headers;
+            this.storedAt = storedAt;
+            this.expiresAt = expiresAt;
+            this.weight = weigh(result.response);
+            this.etag = result.header("ETag");
+            this.lastModified = result.header("Last-Modified");
+            String cacheControl = result.header("Cache-Control");
+            this.mustRevalidate = directiveSeconds(cacheControl, "must-revalidate") >= 0
+                || directiveSeconds(cacheControl, "proxy-revalidate") >= 0;
+            this.staleWhileRevalidateSeconds = directiveSeconds(cacheControl, "stale-while-revalidate");
+            this.staleIfErrorSeconds = directiveSeconds(cacheControl, "stale-if-error");
+        }
+
+        boolean isFresh(long now) {
+            return now < expiresAt;
+        }
+
+        /**
+         * True if the entry is fresh but older than the given percentage of its
+         * lifetime, so it should be refreshed before it expires.
+         */
+        boolean isDueForRefresh(long now, int refreshAheadPercent) {
+            if (refreshAheadPercent <= 0 || refreshAheadPercent >= 100) {
+                return false;
+            }
+            return now >= storedAt + (expiresAt - storedAt) * refreshAheadPercent / 100;
+        }
+
+        /**
+         * True if the expired entry may still be returned while a fresh copy is
+         * fetched. The response's stale-while-revalidate directive takes precedence
+         * over the node's default.
+         */
+        boolean isUsableWhileRevalidating(long now, long defaultSeconds) {
+            return isUsableStale(now, staleWhileRevalidateSeconds >= 0 ? staleWhileRevalidateSeconds : defaultSeconds);
+        }
+
+        /**
+         * True if the expired entry may be returned instead of a failed request.
+         */
+        boolean isUsableOnError(long now, long defaultSeconds) {
+            return isUsableStale(now, staleIfErrorSeconds >= 0 ? staleIfErrorSeconds : defaultSeconds);
+        }
+
+        private boolean isUsableStale(long now, long staleSeconds) {
+            return !mustRevalidate && staleSeconds > 0 && now < expiresAt + staleSeconds * 1000;
+        }
+
+        boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+
+        /**
+         * Returns a copy of the request that asks the server to answer with
+         * 304 Not Modified if this entry is still current.
+         */
+        HttpHandler.PreparedRequest conditional(HttpHandler.PreparedRequest request) {
+            Map<String, String> headers = new LinkedHashMap<>(request.headers);
+            if (etag != null) {
+                headers.put("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                headers.put("If-Modified-Since", lastModified);
+            }
+            return new HttpHandler.PreparedRequest(request.method, request.url, headers, request.body, request.trustAllCertificates);
+        }
+
+        HttpHandler.HttpResult toResult() {
+            return new HttpHandler.HttpResult(true, body, statusCode, null, headers, payload);
+        }
+    }
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long stores = 0;
+    private long evictions = 0;
+    private long rejected = 0;
+    private long revalidated = 0;
+    private long diskHits = 0;
+    private long staleHits = 0;
+    private long staleOnError = 0;
+    private long refreshes = 0;
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final DiskCache diskCache;
+
+    ResponseCache(long maxBytes, long maxEntryBytes) {
+        this(maxBytes, maxEntryBytes, null);
+    }
+
+    ResponseCache(long maxBytes, long maxEntryBytes, DiskCache diskCache) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxEntryBytes = Math.max(0, Math.min(maxEntryBytes, this.maxBytes));
+        this.diskCache = diskCache;
+    }
+
+    static boolean appliesTo(HttpHandler.PreparedRequest request) {
+        return "GET".equals(request.method);
+    }
+
+    /**
+     * Returns the entry for the key, fresh or expired, or null. Entries found on
+     * disk are moved into memory. Callers report the outcome with {@link #hit},
+     * {@link #miss} and the other counting methods.
+     */
+    Entry lookup(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null && diskCache != null) {
+            entry = loadFromDisk(key);
+        }
+        return entry;
+    }
+
+    synchronized void hit() {
+        hits++;
+    }
+
+    synchronized void miss() {
+        misses++;
+    }
+
+    synchronized void staleHit() {
+        staleHits++;
+    }
+
+    synchronized void staleOnError() {
+        staleOnError++;
+    }
+
+    /**
+     * Claims the background refresh of the key. Returns false if a refresh of the
+     * key is already running; otherwise the caller must call {@link #endRefresh}.
+     */
+    boolean beginRefresh(String key) {
+        if (!refreshing.add(key)) {
+            return false;
+        }
+        synchronized (this) {
+            refreshes++;
+        }
+        return true;
+    }
+
+    void endRefresh(String key) {
+        refreshing.remove(key);
+    }
+
+    private Entry loadFromDisk(String key) {
+        DiskCache.Record record = diskCache.get(key);
+        if (record == null) {
+            return null;
+        }
+        Object payload;
+        try {
+            payload = RequestDefinition.parseResponsePayload(record.body);
+        } catch (Exception e) {
+            diskCache.remove(key);
+            return null;
+        }
+        HttpHandler.HttpResult result = new HttpHandler.HttpResult(true, record.body, record.statusCode, null, record.headers, payload);
+        Entry entry = new Entry(result, record.storedAt, record.expiresAt);
+        synchronized (this) {
+            diskHits++;
+            if (entry.weight <= maxEntryBytes) {
+                insert(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    private void insert(String key, Entry entry) {
+        remove(key);
+        entries.put(key, entry);
+        currentBytes += entry.weight;
+        evictToBudget();
+    }
+
+    /**
+     * Renews a revalidated entry after a 304 response. The headers of the 304
+     * response replace those stored with the entry, the body and payload are kept.
+     */
+    Entry revalidated(String key, Entry entry, HttpHandler.HttpResult notModified, long defaultTtlSeconds) {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        copyHeaders(entry.headers, headers);
+        copyHeaders(notModified.headers, headers);
+        HttpHandler.HttpResult merged = new HttpHandler.HttpResult(true, entry.body, entry.statusCode, null, headers, entry.payload);
+
+        long now = System.currentTimeMillis();
+        long ttlMillis = freshnessLifetime(merged, defaultTtlSeconds, now);
+        Entry renewed = new Entry(merged, now, now + Math.max(0, ttlMillis));
+        boolean keep = ttlMillis >= 0;
+        synchronized (this) {
+            revalidated++;
+            if (keep && entries.get(key) == entry) {
+                insert(key, renewed);
+            } else if (!keep) {
+                remove(key);
+            }
+        }
+        if (diskCache != null) {
+            if (keep) {
+                writeToDisk(key, renewed);
+            } else {
+                diskCache.remove(key);
+            }
+        }
+        return renewed;
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        diskCache.put(key, entry.storedAt, entry.expiresAt, entry.statusCode, entry.headers, entry.body);
+    }
+
+    private static void copyHeaders(Map<String, List<String>> from, Map<String, List<String>> to) {
+        for (Map.Entry<String, List<String>> header : from.entrySet()) {
+            if (header.getKey() != null) {
+                to.put(header.getKey(), header.getValue());
+            }
+        }
+    }
+
+    /**
+     * Stores a successful response if its headers allow it. The result must already
+     * carry its parsed payload. Returns true if the response was cached.
+     */
+    boolean put(String key, HttpHandler.HttpResult result, long defaultTtlSeconds) {
+        long now = System.currentTimeMillis();
+        long ttlMillis = freshnessLifetime(result, defaultTtlSeconds, now);
+        boolean revalidatable = result.header("ETag") != null || result.header("Last-Modified") != null;
+        if (ttlMillis < 0 || (ttlMillis == 0 && !revalidatable)) {
+            return false;
+        }
+
+        Entry entry = new Entry(result, now, now + ttlMillis);
+        synchronized (this) {
+            if (entry.weight > maxEntryBytes) {
+                rejected++;
+                System.out.println("Response not cached: " + entry.weight + " bytes exceeds the maximum entry size of " + maxEntryBytes + " bytes");
+                return false;
+            }
+            insert(key, entry);
+            stores++;
+        }
+        if (diskCache != null) {
+            writeToDisk(key, entry);
+        }
+        return true;
+    }
+
+    /**
+     * Flushes and closes the disk tier, if there is one.
+     */
+    void close() {
+        if (diskCache != null) {
+            diskCache.close();
+        }
+    }
+
+    synchronized void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            currentBytes -= removed.weight;
+        }
+    }
+
+    private void evictToBudget() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            currentBytes -= eldest.weight;
+            evictions++;
+        }
+    }
+
+    /**
+     * Returns how long the response may be served from the cache without
+     * revalidation, in milliseconds, or -1 if it must not be stored at all.
+     */
+    static long freshnessLifetime(HttpHandler.HttpResult result, long defaultTtlSeconds, long now) {
+        String cacheControl = result.header("Cache-Control");
+        long maxAge = -1;
+        long sharedMaxAge = -1;
+
+        if (cacheControl != null) {
+            for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-store") || directive.equals("private")) {
+                    return -1;
+                } else if (directive.equals("no-cache")) {
+                    maxAge = 0;
+                } else if (directive.startsWith("max-age=")) {
+                    maxAge = parseSeconds(directive.substring("max-age=".length()), maxAge);
+                } else if (directive.startsWith("s-maxage=")) {
+                    sharedMaxAge = parseSeconds(directive.substring("s-maxage=".length()), sharedMaxAge);
+                }
+            }
+        }
+
+        long age = Math.max(0, parseSeconds(result.header("Age"), 0));
+        if (sharedMaxAge >= 0) {
+            return Math.max(0, sharedMaxAge - age) * 1000;
+        }
+        if (maxAge >= 0) {
+            return Math.max(0, maxAge - age) * 1000;
+        }
+
+        String expires = result.header("Expires");
+        if (expires != null) {
+            long expiresAt = parseHttpDate(expires);
+            if (expiresAt < 0) {
+                // invalid dates such as "0" mean "already expired"
+                return 0;
+            }
+            long dateHeader = parseHttpDate(result.header("Date"));
+            long base = dateHeader >= 0 ? dateHeader : now;
+            return Math.max(0, expiresAt - base);
+        }
+
+        return Math.max(0, defaultTtlSeconds) * 1000;
+    }
+
+    static long parseHttpDate(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the value of a Cache-Control directive in seconds, 0 if the directive
+     * has no value, or -1 if it is absent.
+     */
+    private static long directiveSeconds(String cacheControl, String name) {
+        if (cacheControl == null) {
+            return -1;
+        }
+        for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+            directive = directive.trim();
+            if (directive.equals(name)) {
+                return 0;
+            } else if (directive.startsWith(name + "=")) {
+                return parseSeconds(directive.substring(name.length() + 1), -1);
+            }
+        }
+        return -1;
+    }
+
+    private static long parseSeconds(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim().replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Rough memory footprint of a cached body: two bytes per char for the string,
+     * plus about as much again for the parsed JSON tree.
+     */
+    static long weigh(String body) {
+        return body == null ? 0 : body.length() * 4L;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "entries=" + entries.size() + ", bytes=" + currentBytes + ", hits=" + hits + ", misses=" + misses
+            + ", stale=" + staleHits + ", staleOnError=" + staleOnError + ", refreshes=" + refreshes
+            + ", revalidated=" + revalidated + ", stores=" + stores + ", evictions=" + evictions + ", rejected=" + rejected
+            + (diskCache != null ? ", diskHits=" + diskHits + " (disk: " + diskCache + ")" : "");
+    }
+}
@@ -0,0 +1,39 @@
+package com.clt.dialogos.httpplugin;
+
+/**
+ * Limits extra requests (retries, hedged requests) to a percentage of all requests, so
+ * that they cannot multiply the load on a backend that is already struggling. Every
+ * request adds a fraction of a token, every extra request takes a whole one; a small
+ * reserve allows extra requests when traffic is low.
+ */
+class RetryBudget {
+    private static final double MAX_TOKENS = 10;
+
+    private final double ratio;
+    private double tokens = MAX_TOKENS;
+    private long granted = 0;
+    private long exhausted = 0;
+
+    RetryBudget(int percent) {
+        this.ratio = Math.max(0, percent) / 100.0;
+    }
+
+    synchronized void onRequest() {
+        tokens = Math.min(MAX_TOKENS, tokens + ratio);
+    }
+
+    synchronized boolean tryAcquire() {
+        if (tokens >= 1) {
+            tokens -= 1;
+            granted++;
+            return true;
+        }
+        exhausted++;
+        return false;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "granted=" + granted + ", refused=" + exhausted;
+    }
+}
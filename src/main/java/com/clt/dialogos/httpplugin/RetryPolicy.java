@@ -0,0 +1,185 @@
+package com.clt.dialogos.httpplugin;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Per-node retry settings: how often a failed request is sent again, which failures
+ * are retried and how long to wait in between. Waits grow exponentially with full
+ * jitter; a Retry-After header on 429 and 503 responses is honored. Every retry
+ * needs a token from the runtime's {@link RetryBudget}.
+ */
+class RetryPolicy {
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    final int maxAttempts;
+    final Set<Integer> retryStatusCodes;
+    final Set<String> retryExceptions;
+    final long baseDelayMillis;
+    final long maxDelayMillis;
+    final boolean idempotencyKey;
+
+    RetryPolicy(int maxAttempts, String statusCodes, String exceptions, long baseDelayMillis, long maxDelayMillis,
+                boolean idempotencyKey) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryStatusCodes = parseStatusCodes(statusCodes);
+        this.retryExceptions = parseNames(exceptions);
+        this.baseDelayMillis = Math.max(0, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    static RetryPolicy none() {
+        return new RetryPolicy(1, "", "", 0, 0, false);
+    }
+
+    boolean isEnabled() {
+        return maxAttempts > 1;
+    }
+
+    /**
+     * Returns whether the request may be retried without risking duplicate effects,
+     * see {@link HttpHandler#isIdempotent}.
+     */
+    boolean appliesTo(HttpHandler.PreparedRequest request) {
+        return HttpHandler.isIdempotent(request);
+    }
+
+    /**
+     * Adds an idempotency key to POST and PATCH requests if the policy asks for one,
+     * so that the server can recognize retries of the same request.
+     */
+    HttpHandler.PreparedRequest prepare(HttpHandler.PreparedRequest request) {
+        if (!isEnabled() || !idempotencyKey || appliesTo(request) || request.body == null) {
+            return request;
+        }
+        Map<String, String> headers = new LinkedHashMap<>(request.headers);
+        headers.put(IDEMPOTENCY_KEY_HEADER, UUID.randomUUID().toString());
+        return new HttpHandler.PreparedRequest(request.method, request.url, headers, request.body, request.trustAllCertificates);
+    }
+
+    /**
+     * Sends the request, retrying failures the policy covers while attempts and
+     * retry budget last, and the deadline (if any) leaves time for another attempt.
+     * Returns the result of the last attempt.
+     */
+    HttpHandler.HttpResult run(HttpHandler.PreparedRequest request, RetryBudget budget, Deadline deadline,
+                               Function<HttpHandler.PreparedRequest, HttpHandler.HttpResult> call) {
+        budget.onRequest();
+        HttpHandler.HttpResult result = call.apply(request);
+        if (!isEnabled() || !appliesTo(request)) {
+            return result;
+        }
+
+        for (int attempt = 1; attempt < maxAttempts && isRetryable(result); attempt++) {
+            long delay = backoff(attempt);
+            long retryAfter = retryAfterMillis(result);
+            if (retryAfter > maxDelayMillis) {
+                System.out.println("Not retrying " + request.method + " " + request.url + ": Retry-After of "
+                    + retryAfter + " ms exceeds the maximum delay");
+                return result;
+            }
+            delay = Math.max(delay, retryAfter);
+            if (deadline != null && delay >= deadline.remainingMillis()) {
+                System.out.println("Not retrying " + request.method + " " + request.url + ": the deadline would pass");
+                return result;
+            }
+
+            if (!budget.tryAcquire()) {
+                System.out.println("Not retrying " + request.method + " " + request.url + ": retry budget exhausted");
+                return result;
+            }
+
+            System.out.println("Retrying " + request.method + " " + request.url + " in " + delay + " ms (attempt "
+                + (attempt + 1) + " of " + maxAttempts + "): " + result.errorMessage);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return result;
+            }
+            result = call.apply(request);
+        }
+        return result;
+    }
+
+    boolean isRetryable(HttpHandler.HttpResult result) {
+        if (result.success) {
+            return false;
+        }
+        if (result.cause != null) {
+            if (result.cause instanceof InterruptedException || result.cause instanceof CircuitBreaker.OpenException
+                    || result.cause instanceof ConcurrencyLimiter.LimitExceededException
+                    || result.cause instanceof RateLimiter.RateLimitedException
+                    || result.cause instanceof Deadline.ExceededException) {
+                return false;
+            }
+            for (Class<?> type = result.cause.getClass(); type != null; type = type.getSuperclass()) {
+                if (retryExceptions.contains(type.getSimpleName()) || retryExceptions.contains(type.getName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return retryStatusCodes.contains(result.statusCode);
+    }
+
+    /**
+     * Full jitter: a random wait between zero and the exponentially growing cap.
+     */
+    long backoff(int attempt) {
+        long cap = baseDelayMillis << Math.min(attempt - 1, 20);
+        cap = Math.min(maxDelayMillis, cap);
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * Returns the wait requested by a Retry-After header of a 429 or 503 response
+     * (in seconds or as an HTTP date), or 0.
+     */
+    static long retryAfterMillis(HttpHandler.HttpResult result) {
+        if (result.statusCode != 429 && result.statusCode != 503) {
+            return 0;
+        }
+        String retryAfter = result.header("Retry-After");
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            long date = ResponseCache.parseHttpDate(retryAfter);
+            return date < 0 ? 0 : Math.max(0, date - System.currentTimeMillis());
+        }
+    }
+
+    private static Set<Integer> parseStatusCodes(String statusCodes) {
+        Set<Integer> codes = new LinkedHashSet<>();
+        for (String code : parseNames(statusCodes)) {
+            try {
+                codes.add(Integer.parseInt(code));
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid status code in retry policy: " + code);
+            }
+        }
+        return codes;
+    }
+
+    private static Set<String> parseNames(String list) {
+        Set<String> names = new LinkedHashSet<>();
+        if (list != null) {
+            for (String name : list.split(",")) {
+                name = name.trim();
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+}
@@ -1,27 +1,27 @@
 package com.clt.dialogos.httpplugin;
 
+import com.clt.dialogos.plugin.PluginRuntime;
 import com.clt.diamant.*;
 import com.clt.diamant.graph.Graph;
 import com.clt.diamant.graph.Node;
 import com.clt.diamant.graph.nodes.NodeExecutionException;
 import com.clt.script.exp.Value;
-import com.clt.script.exp.values.StringValue;
 import com.clt.xml.XMLReader;
 import com.clt.xml.XMLWriter;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.xml.sax.SAXException;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class SendAndReceiveNode extends Node {
     private static final String URL = "url";
@@ -39,16 +39,49 @@ public class SendAndReceiveNode extends Node {
     private static final String BODY_MODE = "bodyMode";
     private static final String RAW_BODY = "rawBody";
     private static final String TRUST_ALL_CERTS = "trustAllCerts";
+    private static final String CACHE_ENABLED = "cacheEnabled";
+    private static final String CACHE_TTL = "cacheTtl";
+    private static final String CACHE_STALE_WHILE_REVALIDATE = "cacheStaleWhileRevalidate";
+    private static final String CACHE_STALE_IF_ERROR = "cacheStaleIfError";
+    private static final String CACHE_REFRESH_AHEAD = "cacheRefreshAhead";
+    private static final String RETRY_MAX_ATTEMPTS = "retryMaxAttempts";
+    private static final String RETRY_STATUS_CODES = "retryStatusCodes";
+    private static final String RETRY_EXCEPTIONS = "retryExceptions";
+    private static final String RETRY_BASE_DELAY = "retryBaseDelay";
+    private static final String RETRY_MAX_DELAY = "retryMaxDelay";
+    private static final String RETRY_IDEMPOTENCY_KEY = "retryIdempotencyKey";
+    private static final String HEDGE_ENABLED = "hedgeEnabled";
+    private static final String HEDGE_DELAY = "hedgeDelay";
+    private static final String HEDGE_PERCENTILE = "hedgePercentile";
+    private static final String LIMITER_WAIT = "limiterWait";
+    private static final String BREAKER_FALLBACK = "breakerFallback";
+    private static final String BREAKER_FALLBACK_PAYLOAD = "breakerFallbackPayload";
+    private static final String REQUEST_TIMEOUT = "requestTimeout";
+    private static final String RESPONSE_STREAMING = "responseStreaming";
+    private static final String MAX_RESPONSE_SIZE = "maxResponseSize";
+    private static final String OVERSIZE_RESPONSE = "oversizeResponse";
+    private static final String DEADLINE_MODE = "deadlineMode";
+    private static final String DEADLINE_BUDGET = "deadlineBudget";
+    private static final String DEADLINE_LATE_WRITE = "deadlineLateWrite";
+    private static final String COMPRESS_REQUEST = "compressRequest";
+    private static final String COMPRESS_THRESHOLD = "compressThreshold";
+    private static final String PREFETCH = Prefetcher.PREFETCH;
+    private static final String PREFETCH_FROM = Prefetcher.PREFETCH_FROM;
+    private static final String[] PAGINATION_KEYS = {
+        Paginator.MODE, Paginator.ITEMS_PATH, Paginator.CURSOR_PATH, Paginator.CURSOR_PARAM, Paginator.OFFSET_PARAM,
+        Paginator.PAGE_SIZE, Paginator.TARGET_VAR, Paginator.MAX_PAGES, Paginator.MAX_ITEMS, Paginator.TIME_LIMIT
+    };
     private static final String REMOVE_LABEL = "-";
     private static final Dimension COMPACT_BUTTON_SIZE = new Dimension(26, 22);
-    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{([^}]+)}");
 
     public SendAndReceiveNode() {
         this.addEdge("Success");
         this.addEdge("Error");
+        this.addEdge("Deadline");
         
         this.getEdge(0).setColor(new Color(0, 150, 0));
         this.getEdge(1).setColor(new Color(200, 0, 0));
+        this.getEdge(2).setColor(new Color(230, 140, 0));
         
         this.setProperty(URL, "");
         this.setProperty(HTTP_METHOD, "GET");
@@ -65,6 +98,44 @@ public class SendAndReceiveNode extends Node {
         this.setProperty(BODY_MODE, "mapping");
         this.setProperty(RAW_BODY, "");
         this.setProperty(TRUST_ALL_CERTS, "false");
+        this.setProperty(CACHE_ENABLED, "false");
+        this.setProperty(CACHE_TTL, "0");
+        this.setProperty(CACHE_STALE_WHILE_REVALIDATE, "0");
+        this.setProperty(CACHE_STALE_IF_ERROR, "0");
+        this.setProperty(CACHE_REFRESH_AHEAD, "0");
+        this.setProperty(RETRY_MAX_ATTEMPTS, "1");
+        this.setProperty(RETRY_STATUS_CODES, RequestOptions.DEFAULT_RETRY_STATUS_CODES);
+        this.setProperty(RETRY_EXCEPTIONS, RequestOptions.DEFAULT_RETRY_EXCEPTIONS);
+        this.setProperty(RETRY_BASE_DELAY, "200");
+        this.setProperty(RETRY_MAX_DELAY, "5000");
+        this.setProperty(RETRY_IDEMPOTENCY_KEY, "false");
+        this.setProperty(HEDGE_ENABLED, "false");
+        this.setProperty(HEDGE_DELAY, "200");
+        this.setProperty(HEDGE_PERCENTILE, "0");
+        this.setProperty(LIMITER_WAIT, "1000");
+        this.setProperty(BREAKER_FALLBACK, "error");
+        this.setProperty(BREAKER_FALLBACK_PAYLOAD, "");
+        this.setProperty(REQUEST_TIMEOUT, "30000");
+        this.setProperty(RESPONSE_STREAMING, "false");
+        this.setProperty(MAX_RESPONSE_SIZE, "0");
+        this.setProperty(OVERSIZE_RESPONSE, RequestOptions.OVERSIZE_ABORT);
+        this.setProperty(DEADLINE_MODE, RequestOptions.DEADLINE_NONE);
+        this.setProperty(DEADLINE_BUDGET, "1500");
+        this.setProperty(DEADLINE_LATE_WRITE, "false");
+        this.setProperty(COMPRESS_REQUEST, "false");
+        this.setProperty(COMPRESS_THRESHOLD, "4");
+        this.setProperty(PREFETCH, "false");
+        this.setProperty(PREFETCH_FROM, "");
+        this.setProperty(Paginator.MODE, Paginator.MODE_NONE);
+        this.setProperty(Paginator.ITEMS_PATH, "");
+        this.setProperty(Paginator.CURSOR_PATH, "");
+        this.setProperty(Paginator.CURSOR_PARAM, "cursor");
+        this.setProperty(Paginator.OFFSET_PARAM, "offset");
+        this.setProperty(Paginator.PAGE_SIZE, "0");
+        this.setProperty(Paginator.TARGET_VAR, "");
+        this.setProperty(Paginator.MAX_PAGES, "10");
+        this.setProperty(Paginator.MAX_ITEMS, "0");
+        this.setProperty(Paginator.TIME_LIMIT, "0");
     }
 
     @Override
@@ -77,70 +148,44 @@ public class SendAndReceiveNode extends Node {
     @Override
     public Node execute(WozInterface comm, InputCenter input, ExecutionLogger logger) {
         logNode(logger);
+        HttpPluginRuntime.nodeEntered(this, comm);
         try {
-            // Build JSON body
-            String bodyVarsStr = this.getProperty(BODY_VARIABLES).toString().trim();
-            String bodyMode = this.getProperty(BODY_MODE) == null ? "mapping" : this.getProperty(BODY_MODE).toString();
-            JSONObject jsonBody;
-            if ("raw".equals(bodyMode)) {
-                String rawJson = this.getProperty(RAW_BODY) == null ? "" : this.getProperty(RAW_BODY).toString();
-                rawJson = substituteSlotValues(rawJson);
-                jsonBody = parseRawJsonBody(rawJson);
-            } else {
-                Map<String, String> bodyVarMappings = parseMappingsToMap(bodyVarsStr);
-                jsonBody = JsonConverter.variablesToJson(bodyVarMappings, this::getSlotOrNull);
+            HttpPluginRuntime runtime = getHttpRuntime(comm);
+            if (runtime == null) {
+                runtime = HttpPluginRuntime.getFallback();
+            }
+            RequestDefinition definition = getDefinition();
+            HttpHandler.PreparedRequest request = definition.prepare(this::getSlotOrNull);
+            RequestOptions options = getOptions(definition);
+            Deadline deadline = getDeadline(runtime);
+            CompletableFuture<HttpHandler.HttpResult> prefetched =
+                Prefetcher.isEnabled(this) ? runtime.getPrefetcher().take(this, request) : null;
+
+            Paginator paginator = Paginator.fromProperties(this::getProperty);
+            if (paginator != null) {
+                return executePaginated(paginator, runtime, request, options, deadline, definition, prefetched);
             }
 
-            // Get URL, method, path/query variables
-            String url = this.getProperty(URL).toString().trim();
-            String httpMethod = this.getProperty(HTTP_METHOD).toString().trim();
-            String pathVarsStr = this.getProperty(PATH_VARIABLES).toString().trim();
-            String[] pathVars = pathVarsStr.isEmpty() ? new String[0] : pathVarsStr.split(",");
-            String queryVarsStr = this.getProperty(QUERY_VARIABLES).toString().trim();
-            Map<String, String> queryVarMappings = parseMappingsToMap(queryVarsStr);
-
-            String authType = this.getProperty(AUTH_TYPE).toString();
-            String authValue = this.getProperty(AUTH_VALUE).toString();
-            String customHeaders = this.getProperty(CUSTOM_HEADERS).toString();
-            boolean trustAllCerts = Boolean.parseBoolean(
-                String.valueOf(this.getProperty(TRUST_ALL_CERTS))
-            );
-            
             // Send HTTP request and get response
-            HttpHandler.HttpResult result = HttpHandler.sendHttpRequest(
-                url,
-                httpMethod,
-                pathVars,
-                queryVarMappings,
-                jsonBody,
-                this::getSlotOrNull,
-                authType,
-                authValue,
-                customHeaders,
-                trustAllCerts
-            );
-            
+            HttpHandler.HttpResult result;
+            if (deadline != null && Boolean.parseBoolean(this.getProperty(DEADLINE_LATE_WRITE).toString())) {
+                result = executeWithLateWrite(runtime, request, options, deadline, definition, prefetched);
+            } else if (prefetched != null) {
+                result = awaitPrefetched(runtime, request, options, deadline, prefetched);
+            } else {
+                result = HttpHandler.execute(runtime, request, options.withDeadline(deadline));
+            }
+
+            if (result.cause instanceof Deadline.ExceededException) {
+                System.err.println("HTTP request failed: " + result.errorMessage);
+                return getDeadlineTarget();
+            }
             if (!result.success) {
                 System.err.println("HTTP request failed: " + result.errorMessage);
                 return getEdge(1).getTarget();
             }
             
-            Object responsePayload = parseResponsePayload(result.response);
-            JSONObject responseJson = responsePayload instanceof JSONObject
-                ? (JSONObject) responsePayload
-                : wrapArrayResponse((JSONArray) responsePayload);
-
-            String responseMode = this.getProperty(RESPONSE_MODE).toString();
-            if ("single".equals(responseMode)) {
-                // Single variable mode
-                String targetVar = this.getProperty(RESPONSE_TARGET_VAR).toString().trim();
-                boolean asString = Boolean.parseBoolean(this.getProperty(RESPONSE_AS_STRING).toString());
-                JsonConverter.mapJsonToSingleVariable(responsePayload, result.response, targetVar, asString, this::getSlot);
-            } else {
-                // Multiple variables mode (default)
-                String mappingsStr = this.getProperty(RESPONSE_MAPPINGS).toString().trim();
-                JsonConverter.mapJsonToVariables(responseJson, mappingsStr, this::getSlot);
-            }
+            definition.mapResponse(result, this::getSlot);
             
             return getEdge(0).getTarget();
             
@@ -150,105 +195,159 @@ public class SendAndReceiveNode extends Node {
         }
     }
 
-    private Slot getSlot(String name) {
-        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
-        for (Slot slot : slots) {
-            if (name.equals(slot.getName()))
-                return slot;
-        }
-        throw new NodeExecutionException(this, "Unable to find variable: " + name);
-    }
-    
-    private Slot getSlotOrNull(String name) {
-        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
-        for (Slot slot : slots) {
-            if (name.equals(slot.getName()))
-                return slot;
+    /**
+     * Walks the pages of the response, maps the first page with the regular response
+     * mappings and stores the items of all pages as a list.
+     */
+    private Node executePaginated(Paginator paginator, HttpPluginRuntime runtime, HttpHandler.PreparedRequest request,
+                                  RequestOptions options, Deadline deadline, RequestDefinition definition,
+                                  CompletableFuture<HttpHandler.HttpResult> prefetched) throws InterruptedException {
+        Slot target = getSlot(paginator.getTargetVariable());
+        // the items and cursors are not among the paths of the response mappings
+        options.withExtractor(null);
+        Paginator.Outcome outcome = paginator.fetch(runtime, request, options, deadline, prefetched);
+        if (outcome.firstPage == null) {
+            System.err.println("HTTP request failed: " + outcome.failure.errorMessage);
+            return outcome.failure.cause instanceof Deadline.ExceededException ? getDeadlineTarget() : getEdge(1).getTarget();
         }
-        return null;
-    }
 
-    private JSONObject parseRawJsonBody(String rawJson) {
-        if (rawJson == null || rawJson.trim().isEmpty()) {
-            return new JSONObject();
+        if (!definition.responseSlots().isEmpty()) {
+            definition.mapResponse(outcome.firstPage, this::getSlot);
         }
-        try {
-            return new JSONObject(rawJson);
-        } catch (Exception e) {
-            throw new NodeExecutionException(this, "Invalid raw JSON body: " + e.getMessage());
+        target.setValue(Value.fromJson(outcome.items));
+        if (outcome.failure != null) {
+            System.err.println("HTTP request for a further page failed, " + outcome.items.length()
+                + " item(s) collected so far: " + outcome.failure.errorMessage);
+            return getEdge(1).getTarget();
         }
+        return getEdge(0).getTarget();
     }
 
-    private String substituteSlotValues(String template) {
-        if (template == null || template.isEmpty()) {
-            return template == null ? "" : template;
-        }
-        Matcher matcher = VARIABLE_PATTERN.matcher(template);
-        StringBuffer buffer = new StringBuffer();
-        while (matcher.find()) {
-            String varName = matcher.group(1).trim();
-            String replacement = resolveSlotValue(varName);
-            matcher.appendReplacement(buffer, Matcher.quoteReplacement(replacement));
+    RequestDefinition getDefinition() {
+        return RequestDefinition.fromProperties(this::getProperty);
+    }
+
+    /**
+     * Returns the options of the request, without a deadline, which belongs to the
+     * turn in which the node runs.
+     */
+    RequestOptions getOptions(RequestDefinition definition) {
+        RequestOptions options = RequestOptions.fromProperties(this::getProperty);
+        if (Boolean.parseBoolean(this.getProperty(RESPONSE_STREAMING).toString())) {
+            options.withExtractor(definition.createExtractor());
         }
-        matcher.appendTail(buffer);
-        return buffer.toString();
+        return options;
     }
 
-    private String resolveSlotValue(String varName) {
-        if (varName == null || varName.isEmpty()) {
-            return "";
+    /**
+     * Waits for a prefetched request, at most until the deadline. If the prefetch
+     * failed, the request is sent again, since its failure may be outdated.
+     */
+    private HttpHandler.HttpResult awaitPrefetched(HttpPluginRuntime runtime, HttpHandler.PreparedRequest request,
+                                                   RequestOptions options, Deadline deadline,
+                                                   CompletableFuture<HttpHandler.HttpResult> prefetched) throws InterruptedException {
+        HttpHandler.HttpResult result;
+        try {
+            result = deadline == null ? prefetched.get() : prefetched.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("✗ Deadline of " + deadline.getBudgetMillis() + " ms exceeded: " + request.method + " " + request.url);
+            return deadline.exceeded();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            result = HttpHandler.HttpResult.failure(0, cause.getMessage(), cause);
         }
-        Slot slot = getSlotOrNull(varName);
-        if (slot == null) {
-            return "";
+        if (result.success) {
+            return result;
         }
-        Value value = slot.getValue();
-        if (value instanceof StringValue) {
-            return ((StringValue) value).getString();
+        System.err.println("Prefetched request failed (" + result.errorMessage + "), sending it again: " + request.url);
+        return HttpHandler.execute(runtime, request, options.withDeadline(deadline));
+    }
+
+    /**
+     * Returns the deadline the request must meet: a new turn budget, the budget that
+     * an earlier node of the turn started, or none.
+     */
+    private Deadline getDeadline(HttpPluginRuntime runtime) {
+        String mode = this.getProperty(DEADLINE_MODE).toString();
+        long budget = RequestOptions.parseLong(this.getProperty(DEADLINE_BUDGET), 1500);
+        if (RequestOptions.DEADLINE_START.equals(mode)) {
+            return runtime.startTurnDeadline(this, budget);
+        } else if (RequestOptions.DEADLINE_INHERIT.equals(mode)) {
+            return runtime.continueTurnDeadline(this, budget);
         }
-        return value == null ? "" : value.toString();
+        return null;
     }
 
-    private Object parseResponsePayload(String responseBody) {
-        if (responseBody == null || responseBody.trim().isEmpty()) {
-            return new JSONObject();
+    /**
+     * Sends the request in the background with its regular timeout and waits for it
+     * until the deadline. A response that arrives later is still mapped into the
+     * slots, e.g. for the next turn, when the dialog enters its next HTTP node; the
+     * slots are only written on the dialog thread. A
+     * prefetched request, if there is one, is waited for instead of sending another.
+     */
+    private HttpHandler.HttpResult executeWithLateWrite(HttpPluginRuntime runtime, HttpHandler.PreparedRequest request,
+                                                        RequestOptions options, Deadline deadline,
+                                                        RequestDefinition definition,
+                                                        CompletableFuture<HttpHandler.HttpResult> prefetched) throws InterruptedException {
+        CompletableFuture<HttpHandler.HttpResult> pending = prefetched != null ? prefetched : CompletableFuture.supplyAsync(
+            () -> HttpHandler.execute(runtime, request, options), runtime.getTaskExecutor());
+        try {
+            return pending.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("✗ Deadline of " + deadline.getBudgetMillis() + " ms exceeded, the response will be mapped when it arrives: "
+                + request.method + " " + request.url);
+            pending.thenAccept(late -> {
+                if (!late.success) {
+                    System.err.println("Late HTTP request failed: " + late.errorMessage);
+                    return;
+                }
+                runtime.runOnDialogThread(() -> {
+                    try {
+                        definition.mapResponse(late, this::getSlot);
+                        System.out.println("✓ Late response mapped into slots: " + request.url);
+                    } catch (Exception ex) {
+                        System.err.println("Error mapping late response: " + ex.getMessage());
+                    }
+                });
+            });
+            return deadline.exceeded();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return HttpHandler.HttpResult.failure(0, cause.getMessage(), cause);
         }
-        String trimmed = responseBody.trim();
-        if (trimmed.startsWith("[")) {
-            return new JSONArray(trimmed);
+    }
+
+    /**
+     * The deadline edge is optional; graphs that do not connect it take the error edge.
+     */
+    private Node getDeadlineTarget() {
+        if (numEdges() > 2 && getEdge(2).getTarget() != null) {
+            return getEdge(2).getTarget();
         }
-        return new JSONObject(trimmed);
+        return getEdge(1).getTarget();
     }
 
-    private JSONObject wrapArrayResponse(JSONArray array) {
-        JSONObject wrapper = new JSONObject();
-        wrapper.put("$root", array);
-        return wrapper;
+    private Slot getSlot(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
+        }
+        throw new NodeExecutionException(this, "Unable to find variable: " + name);
     }
     
-    private Map<String, String> parseMappingsToMap(String mappingsStr) {
-        Map<String, String> result = new LinkedHashMap<>();
-        
-        if (mappingsStr == null || mappingsStr.trim().isEmpty()) {
-            return result;
-        }
-        
-        String[] parts = mappingsStr.split(",");
-        for (String part : parts) {
-            part = part.trim();
-            if (part.isEmpty()) continue;
-            
-            if (part.contains("=")) {
-                String[] mapping = part.split("=", 2);
-                String key = mapping[0].trim();
-                String varName = mapping[1].trim();
-                result.put(key, varName);
-            } else {
-                result.put(part, part);
-            }
+    private HttpPluginRuntime getHttpRuntime(WozInterface comm) {
+        PluginRuntime runtime = getPluginRuntime(HttpPlugin.class, comm);
+        return runtime instanceof HttpPluginRuntime ? (HttpPluginRuntime) runtime : null;
+    }
+
+    Slot getSlotOrNull(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
         }
-        
-        return result;
+        return null;
     }
 
     private JPanel createBodyInputPanel(Map<String, Object> properties) {
@@ -319,6 +418,8 @@ public class SendAndReceiveNode extends Node {
         tabs.addTab("Send", createSendPanel(properties));
         
         tabs.addTab("Receive", createReceivePanel(properties));
+
+        tabs.addTab("Options", createOptionsPanel(properties));
         
         return tabs;
     }
@@ -577,21 +678,547 @@ public class SendAndReceiveNode extends Node {
         CardLayout cardLayout = (CardLayout) responseConfigContainer.getLayout();
         cardLayout.show(responseConfigContainer, currentMode);
         
+        JCheckBox streamingCheckbox = new JCheckBox("Stream the response and read only the mapped values");
+        streamingCheckbox.setToolTipText("For large responses: skips everything else and stops reading once all mapped paths are found. Not cached.");
+        streamingCheckbox.setSelected(Boolean.parseBoolean(properties.getOrDefault(RESPONSE_STREAMING, "false").toString()));
+        streamingCheckbox.setEnabled(!"single".equals(currentMode));
+        streamingCheckbox.addActionListener(e ->
+            properties.put(RESPONSE_STREAMING, Boolean.toString(streamingCheckbox.isSelected())));
+
         // listeners to switch panels
         multipleVarsRadio.addActionListener(e -> {
             properties.put(RESPONSE_MODE, "multiple");
             cardLayout.show(responseConfigContainer, "multiple");
+            streamingCheckbox.setEnabled(true);
         });
         singleVarRadio.addActionListener(e -> {
             properties.put(RESPONSE_MODE, "single");
             cardLayout.show(responseConfigContainer, "single");
+            streamingCheckbox.setEnabled(false);
         });
         
         mainPanel.add(responseConfigContainer, gbc);
+
+        gbc.gridy = 3;
+        gbc.weighty = 0;
+        mainPanel.add(streamingCheckbox, gbc);
         
         return mainPanel;
     }
     
+    private JPanel createOptionsPanel(Map<String, Object> properties) {
+        JPanel mainPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.anchor = GridBagConstraints.NORTHWEST;
+        gbc.gridx = 0;
+        gbc.weightx = 1.0;
+
+        gbc.gridy = 0;
+        mainPanel.add(createCachePanel(properties), gbc);
+
+        gbc.gridy = 1;
+        mainPanel.add(createRetryPanel(properties), gbc);
+
+        gbc.gridy = 2;
+        mainPanel.add(createHedgingPanel(properties), gbc);
+
+        gbc.gridy = 3;
+        mainPanel.add(createBreakerPanel(properties), gbc);
+
+        gbc.gridy = 4;
+        mainPanel.add(createConcurrencyPanel(properties), gbc);
+
+        gbc.gridy = 5;
+        mainPanel.add(createDeadlinePanel(properties), gbc);
+
+        gbc.gridy = 6;
+        mainPanel.add(createResponseSizePanel(properties), gbc);
+
+        gbc.gridy = 7;
+        mainPanel.add(createCompressionPanel(properties), gbc);
+
+        gbc.gridy = 8;
+        mainPanel.add(createPrefetchPanel(properties), gbc);
+
+        gbc.gridy = 9;
+        mainPanel.add(createPaginationPanel(properties), gbc);
+
+        // push sections to the top
+        gbc.gridy = 99;
+        gbc.weighty = 1.0;
+        mainPanel.add(Box.createVerticalGlue(), gbc);
+
+        return mainPanel;
+    }
+
+    private JPanel createCachePanel(Map<String, Object> properties) {
+        JPanel cachePanel = new JPanel(new GridBagLayout());
+        cachePanel.setBorder(BorderFactory.createTitledBorder("Response Cache"));
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(2, 2, 2, 2);
+
+        c.gridx = 0;
+        c.gridy = 0;
+        c.gridwidth = 2;
+        c.weightx = 1.0;
+        JCheckBox cacheCheckbox = new JCheckBox("Cache GET responses (honors Cache-Control and Expires)");
+        cacheCheckbox.setSelected(Boolean.parseBoolean(properties.getOrDefault(CACHE_ENABLED, "false").toString()));
+        cachePanel.add(cacheCheckbox, c);
+
+        int week = 7 * 24 * 3600;
+        boolean enabled = cacheCheckbox.isSelected();
+        JSpinner[] spinners = {
+            addSpinnerRow(cachePanel, c, 1, "Default TTL (seconds):", CACHE_TTL, 0, week, 60,
+                "Used when the server sends no caching headers; 0 caches such responses not at all", enabled, properties),
+            addSpinnerRow(cachePanel, c, 2, "Serve stale while refreshing (seconds):", CACHE_STALE_WHILE_REVALIDATE, 0, week, 60,
+                "How long after expiry the cached response is returned at once while it is refreshed in the background", enabled, properties),
+            addSpinnerRow(cachePanel, c, 3, "Serve stale on error (seconds):", CACHE_STALE_IF_ERROR, 0, week, 60,
+                "How long after expiry the cached response is used if the server cannot be reached", enabled, properties),
+            addSpinnerRow(cachePanel, c, 4, "Refresh ahead at (% of TTL):", CACHE_REFRESH_AHEAD, 0, 99, 10,
+                "Refresh fresh responses in the background once they reach this age; 0 disables it", enabled, properties)
+        };
+
+        cacheCheckbox.addActionListener(e -> {
+            properties.put(CACHE_ENABLED, Boolean.toString(cacheCheckbox.isSelected()));
+            for (JSpinner spinner : spinners) {
+                spinner.setEnabled(cacheCheckbox.isSelected());
+            }
+        });
+
+        return cachePanel;
+    }
+
+    private JPanel createHedgingPanel(Map<String, Object> properties) {
+        JPanel hedgingPanel = new JPanel(new GridBagLayout());
+        hedgingPanel.setBorder(BorderFactory.createTitledBorder("Hedging"));
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(2, 2, 2, 2);
+
+        c.gridx = 0;
+        c.gridy = 0;
+        c.gridwidth = 2;
+        c.weightx = 1.0;
+        JCheckBox hedgeCheckbox = new JCheckBox("Send a second request if the first one is slow (idempotent requests only)");
+        hedgeCheckbox.setSelected(Boolean.parseBoolean(properties.getOrDefault(HEDGE_ENABLED, "false").toString()));
+        hedgingPanel.add(hedgeCheckbox, c);
+
+        boolean enabled = hedgeCheckbox.isSelected();
+        JSpinner[] spinners = {
+            addSpinnerRow(hedgingPanel, c, 1, "Hedge after (ms):", HEDGE_DELAY, 1, 60000, 50,
+                "Fixed delay, also used until enough latencies of the host have been observed", enabled, properties),
+            addSpinnerRow(hedgingPanel, c, 2, "Or at latency percentile:", HEDGE_PERCENTILE, 0, 99, 5,
+                "Hedge once the observed latency percentile of the host has passed, e.g. 95; 0 uses the fixed delay", enabled, properties)
+        };
+
+        hedgeCheckbox.addActionListener(e -> {
+            properties.put(HEDGE_ENABLED, Boolean.toString(hedgeCheckbox.isSelected()));
+            for (JSpinner spinner : spinners) {
+                spinner.setEnabled(hedgeCheckbox.isSelected());
+            }
+        });
+
+        return hedgingPanel;
+    }
+
+    private JPanel createConcurrencyPanel(Map<String, Object> properties) {
+        JPanel concurrencyPanel = new JPanel(new GridBagLayout());
+        concurrencyPanel.setBorder(BorderFactory.createTitledBorder("Concurrency Limit"));
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(2, 2, 2, 2);
+
+        addSpinnerRow(concurrencyPanel, c, 0, "Wait for a free slot (ms):", LIMITER_WAIT, 0, 60000, 100,
+            "How long to wait when the host is at its concurrency limit; 0 fails the request at once", true, properties);
+
+        return concurrencyPanel;
+    }
+
+    private JPanel createDeadlinePanel(Map<String, Object> properties) {
+        JPanel deadlinePanel = new JPanel(new GridBagLayout());
+        deadlinePanel.setBorder(BorderFactory.createTitledBorder("Timeout and Deadline"));
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(2, 2, 2, 2);
+
+        addSpinnerRow(deadlinePanel, c, 0, "Request timeout (ms):", REQUEST_TIMEOUT, 1, 600000, 1000,
+            "Timeout of each attempt if there is no deadline or more time is left", true, properties);
+
+        c.gridx = 0;
+        c.gridy = 1;
+        c.weightx = 0;
+        deadlinePanel.add(new JLabel("Turn deadline:"), c);
+
+        c.gridx = 1;
+        c.weightx = 1.0;
+        String[] modeValues = {RequestOptions.DEADLINE_NONE, RequestOptions.DEADLINE_START, RequestOptions.DEADLINE_INHERIT};
+        String[] modeLabels = {"None", "Start a new turn budget", "Continue the turn budget"};
+        JComboBox<String> modeCombo = new JComboBox<>(modeLabels);
+        modeCombo.setToolTipText("Nodes that continue the turn budget only get the time left by the node that started it");
+        String currentMode = properties.getOrDefault(DEADLINE_MODE, RequestOptions.DEADLINE_NONE).toString();
+        for (int i = 0; i < modeValues.length; i++) {
+            if (modeValues[i].equals(currentMode)) {
+                modeCombo.setSelectedIndex(i);
+            }
+        }
+        deadlinePanel.add(modeCombo, c);
+
+        boolean enabled = !RequestOptions.DEADLINE_NONE.equals(currentMode);
+        JSpinner budgetSpinner = addSpinnerRow(deadlinePanel, c, 2, "Turn budget (ms):", DEADLINE_BUDGET, 1, 600000, 100,
+            "Time for all HTTP requests of the turn; used when this node starts the budget or no node has started one yet",
+            enabled, properties);
+
+        c.gridx = 0;
+        c.gridy = 3;
+        c.gridwidth = 2;
+        JCheckBox lateWriteCheckbox = new JCheckBox("Map a response that arrives after the deadline into the slots");
+        lateWriteCheckbox.setSelected(Boolean.parseBoolean(properties.getOrDefault(DEADLINE_LATE_WRITE, "false").toString()));
+        lateWriteCheckbox.setEnabled(enabled);
+        lateWriteCheckbox.addActionListener(e ->
+            properties.put(DEADLINE_LATE_WRITE, Boolean.toString(lateWriteCheckbox.isSelected())));
+        deadlinePanel.add(lateWriteCheckbox, c);
+
+        modeCombo.addActionListener(e -> {
+            String mode = modeValues[modeCombo.getSelectedIndex()];
+            properties.put(DEADLINE_MODE, mode);
+            budgetSpinner.setEnabled(!RequestOptions.DEADLINE_NONE.equals(mode));
+            lateWriteCheckbox.setEnabled(!RequestOptions.DEADLINE_NONE.equals(mode));
+        });
+
+        return deadlinePanel;
+    }
+
+    private JPanel createResponseSizePanel(Map<String, Object> properties) {
+        JPanel sizePanel = new JPanel(new GridBagLayout());
+        sizePanel.setBorder(BorderFactory.createTitledBorder("Response Size"));
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(2, 2, 2, 2);
+
+        addSpinnerRow(sizePanel, c, 0, "Maximum size (KB):", MAX_RESPONSE_SIZE, 0, 1024 * 1024, 1024,
+            "Largest response body accepted; 0 for no limit", true, properties);
+
+        addComboRow(sizePanel, c, 1, "When larger:", OVERSIZE_RESPONSE,
+            new String[]{RequestOptions.OVERSIZE_ABORT, RequestOptions.OVERSIZE_TRUNCATE},
+            new String[]{"Abort and take error edge", "Keep the beginning"},
+            "A truncated response is rarely valid JSON; keeping the beginning is meant for storing it as a string",
+            true, properties);
+
+        return sizePanel;
+    }
+
+    /**
+     * The request compression settings, which the SendNode shows as well.
+     */
+    static JPanel createCompressionPanel(Map<String, Object> properties) {
+        JPanel compressionPanel = new JPanel(new GridBagLayout());
+        compressionPanel.setBorder(BorderFactory.createTitledBorder("Request Compression"));
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(2, 2, 2, 2);
+
+        c.gridx = 0;
+        c.gridy = 0;
+        c.gridwidth = 2;
+        c.weightx = 1.0;
+        JCheckBox compressCheckbox = new JCheckBox("Send large bodies gzip-compressed");
+        compressCheckbox.setToolTipText("Only for servers that accept Content-Encoding: gzip on requests");
+        boolean enabled = Boolean.parseBoolean(properties.getOrDefault(COMPRESS_REQUEST, "false").toString());
+        compressCheckbox.setSelected(enabled);
+        compressionPanel.add(compressCheckbox, c);
+
+        JSpinner thresholdSpinner = addSpinnerRow(compressionPanel, c, 1, "Compress bodies above (KB):", COMPRESS_THRESHOLD,
+            0, 10240, 1, "Smaller bodies are sent as they are, since compressing them saves little", enabled, properties);
+
+        compressCheckbox.addActionListener(e -> {
+            properties.put(COMPRESS_REQUEST, Boolean.toString(compressCheckbox.isSelected()));
+            thresholdSpinner.setEnabled(compressCheckbox.isSelected());
+        });
+
+        return compressionPanel;
+    }
+
+    private JPanel createPrefetchPanel(Map<String, Object> properties) {
+        JPanel prefetchPanel = new JPanel(new GridBagLayout());
+        prefetchPanel.setBorder(BorderFactory.createTitledBorder("Prefetch"));
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(2, 2, 2, 2);
+
+        c.gridx = 0;
+        c.gridy = 0;
+        c.gridwidth = 2;
+        c.weightx = 1.0;
+        JCheckBox prefetchCheckbox = new JCheckBox("Send the request early, when the dialog enters an HTTP node before this one");
+        prefetchCheckbox.setToolTipText("Only GET requests; the early response is used if the request is still the same");
+        boolean enabled = Boolean.parseBoolean(properties.getOrDefault(PREFETCH, "false").toString());
+        prefetchCheckbox.setSelected(enabled);
+        prefetchPanel.add(prefetchCheckbox, c);
+
+        c.gridx = 0;
+        c.gridy = 1;
+        c.gridwidth = 1;
+        c.weightx = 0;
+        prefetchPanel.add(new JLabel("Start at node:"), c);
+
+        c.gridx = 1;
+        c.weightx = 1.0;
+        JComboBox<String> fromCombo = new JComboBox<>();
+        fromCombo.setEditable(true);
+        fromCombo.setToolTipText("Title of an HTTP node from which this node can be reached");
+        if (getGraph() != null) {
+            for (Node node : getGraph().getNodes()) {
+                if (node != this && Prefetcher.canStart(node) && node.getTitle() != null && Prefetcher.nodesBetween(getGraph(), node, this) != null) {
+                    fromCombo.addItem(node.getTitle());
+                }
+            }
+        }
+        fromCombo.setSelectedItem(properties.getOrDefault(PREFETCH_FROM, "").toString());
+        fromCombo.setEnabled(enabled);
+        fromCombo.addActionListener(e -> properties.put(PREFETCH_FROM,
+            fromCombo.getSelectedItem() == null ? "" : fromCombo.getSelectedItem().toString()));
+        prefetchPanel.add(fromCombo, c);
+
+        prefetchCheckbox.addActionListener(e -> {
+            properties.put(PREFETCH, Boolean.toString(prefetchCheckbox.isSelected()));
+            fromCombo.setEnabled(prefetchCheckbox.isSelected());
+        });
+
+        return prefetchPanel;
+    }
+
+    private JPanel createPaginationPanel(Map<String, Object> properties) {
+        JPanel paginationPanel = new JPanel(new GridBagLayout());
+        paginationPanel.setBorder(BorderFactory.createTitledBorder("Pagination"));
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(2, 2, 2, 2);
+
+        String[] modes = {Paginator.MODE_NONE, Paginator.MODE_CURSOR, Paginator.MODE_LINK, Paginator.MODE_OFFSET};
+        String[] modeLabels = {"Single response", "Follow a cursor in the response", "Follow the Link: rel=\"next\" header",
+            "Increase an offset parameter"};
+        c.gridx = 0;
+        c.gridy = 0;
+        c.gridwidth = 1;
+        c.weightx = 0;
+        paginationPanel.add(new JLabel("Pages:"), c);
+
+        c.gridx = 1;
+        c.weightx = 1.0;
+        JComboBox<String> modeCombo = new JComboBox<>(modeLabels);
+        String currentMode = properties.getOrDefault(Paginator.MODE, Paginator.MODE_NONE).toString();
+        for (int i = 0; i < modes.length; i++) {
+            if (modes[i].equals(currentMode)) {
+                modeCombo.setSelectedIndex(i);
+            }
+        }
+        paginationPanel.add(modeCombo, c);
+        boolean enabled = !Paginator.MODE_NONE.equals(currentMode);
+
+        JComponent[] fields = {
+            addTextRow(paginationPanel, c, 1, "Items path:", Paginator.ITEMS_PATH, "",
+                "Path of the list of items in each page, e.g. data; empty if the page is the list", enabled, properties),
+            addTextRow(paginationPanel, c, 2, "Items variable:", Paginator.TARGET_VAR, "",
+                "List variable that receives the items of all pages; the response mappings apply to the first page", enabled, properties),
+            addTextRow(paginationPanel, c, 3, "Cursor path:", Paginator.CURSOR_PATH, "",
+                "Cursor mode: path of the next cursor or next page URL, e.g. meta.next_cursor", enabled, properties),
+            addTextRow(paginationPanel, c, 4, "Cursor parameter:", Paginator.CURSOR_PARAM, "cursor",
+                "Cursor mode: query parameter that sends the cursor", enabled, properties),
+            addTextRow(paginationPanel, c, 5, "Offset parameter:", Paginator.OFFSET_PARAM, "offset",
+                "Offset mode: query parameter that is increased by the number of items received", enabled, properties),
+            addSpinnerRow(paginationPanel, c, 6, "Page size:", Paginator.PAGE_SIZE, 0, 10000, 10,
+                "A page with fewer items is the last one; 0 stops only at an empty page or when there is no next page", enabled, properties),
+            addSpinnerRow(paginationPanel, c, 7, "Max pages:", Paginator.MAX_PAGES, 1, 1000, 1,
+                "Stop after this many pages", enabled, properties),
+            addSpinnerRow(paginationPanel, c, 8, "Max items:", Paginator.MAX_ITEMS, 0, 100000, 10,
+                "Stop once this many items are collected; 0 for no limit", enabled, properties),
+            addSpinnerRow(paginationPanel, c, 9, "Time limit (ms):", Paginator.TIME_LIMIT, 0, 600000, 500,
+                "Stop requesting further pages after this time; 0 for no limit besides the deadline", enabled, properties)
+        };
+
+        modeCombo.addActionListener(e -> {
+            String mode = modes[modeCombo.getSelectedIndex()];
+            properties.put(Paginator.MODE, mode);
+            for (JComponent field : fields) {
+                field.setEnabled(!Paginator.MODE_NONE.equals(mode));
+            }
+        });
+
+        return paginationPanel;
+    }
+
+    private JPanel createBreakerPanel(Map<String, Object> properties) {
+        JPanel breakerPanel = new JPanel(new GridBagLayout());
+        breakerPanel.setBorder(BorderFactory.createTitledBorder("Circuit Breaker"));
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(2, 2, 2, 2);
+
+        c.gridx = 0;
+        c.gridy = 0;
+        c.weightx = 0;
+        breakerPanel.add(new JLabel("While the host is down:"), c);
+
+        c.gridx = 1;
+        c.weightx = 1.0;
+        String[] fallbackValues = {RequestOptions.FALLBACK_ERROR, RequestOptions.FALLBACK_CACHE, RequestOptions.FALLBACK_PAYLOAD};
+        String[] fallbackLabels = {"Take error edge", "Use last cached response", "Use fallback payload"};
+        JComboBox<String> fallbackCombo = new JComboBox<>(fallbackLabels);
+        String currentFallback = properties.getOrDefault(BREAKER_FALLBACK, RequestOptions.FALLBACK_ERROR).toString();
+        for (int i = 0; i < fallbackValues.length; i++) {
+            if (fallbackValues[i].equals(currentFallback)) {
+                fallbackCombo.setSelectedIndex(i);
+            }
+        }
+        breakerPanel.add(fallbackCombo, c);
+
+        c.gridx = 0;
+        c.gridy = 1;
+        c.gridwidth = 2;
+        JTextArea payloadArea = new JTextArea(properties.getOrDefault(BREAKER_FALLBACK_PAYLOAD, "").toString(), 3, 20);
+        payloadArea.setLineWrap(true);
+        payloadArea.setToolTipText("JSON that is mapped like a regular response while the circuit is open");
+        payloadArea.setEnabled(RequestOptions.FALLBACK_PAYLOAD.equals(currentFallback));
+        payloadArea.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void update() {
+                properties.put(BREAKER_FALLBACK_PAYLOAD, payloadArea.getText());
+            }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { update(); }
+        });
+        breakerPanel.add(new JScrollPane(payloadArea), c);
+
+        fallbackCombo.addActionListener(e -> {
+            String fallback = fallbackValues[fallbackCombo.getSelectedIndex()];
+            properties.put(BREAKER_FALLBACK, fallback);
+            payloadArea.setEnabled(RequestOptions.FALLBACK_PAYLOAD.equals(fallback));
+        });
+
+        return breakerPanel;
+    }
+
+    static JSpinner addSpinnerRow(JPanel panel, GridBagConstraints c, int row, String label, String propertyKey,
+                                  int min, int max, int step, String toolTip, boolean enabled, Map<String, Object> properties) {
+        c.gridx = 0;
+        c.gridy = row;
+        c.gridwidth = 1;
+        c.weightx = 0;
+        panel.add(new JLabel(label), c);
+
+        c.gridx = 1;
+        c.weightx = 1.0;
+        int value = (int) RequestOptions.parseLong(properties.get(propertyKey), min);
+        JSpinner spinner = new JSpinner(new SpinnerNumberModel(Math.max(min, Math.min(value, max)), min, max, step));
+        spinner.setToolTipText(toolTip);
+        spinner.setEnabled(enabled);
+        spinner.addChangeListener(e -> properties.put(propertyKey, spinner.getValue().toString()));
+        panel.add(spinner, c);
+        return spinner;
+    }
+
+    /**
+     * Adds a row with a choice between fixed values, shown with the given labels. The
+     * first value is selected if the property has none of them.
+     */
+    static JComboBox<String> addComboRow(JPanel panel, GridBagConstraints c, int row, String label, String propertyKey,
+                                         String[] values, String[] labels, String toolTip, boolean enabled,
+                                         Map<String, Object> properties) {
+        c.gridx = 0;
+        c.gridy = row;
+        c.gridwidth = 1;
+        c.weightx = 0;
+        panel.add(new JLabel(label), c);
+
+        c.gridx = 1;
+        c.weightx = 1.0;
+        JComboBox<String> combo = new JComboBox<>(labels);
+        combo.setToolTipText(toolTip);
+        String current = String.valueOf(properties.get(propertyKey));
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(current)) {
+                combo.setSelectedIndex(i);
+            }
+        }
+        combo.setEnabled(enabled);
+        combo.addActionListener(e -> properties.put(propertyKey, values[combo.getSelectedIndex()]));
+        panel.add(combo, c);
+        return combo;
+    }
+
+    static JTextField addTextRow(JPanel panel, GridBagConstraints c, int row, String label, String propertyKey,
+                                 String defaultValue, String toolTip, boolean enabled, Map<String, Object> properties) {
+        c.gridx = 0;
+        c.gridy = row;
+        c.gridwidth = 1;
+        c.weightx = 0;
+        panel.add(new JLabel(label), c);
+
+        c.gridx = 1;
+        c.weightx = 1.0;
+        JTextField field = new JTextField(properties.getOrDefault(propertyKey, defaultValue).toString(), 20);
+        field.setToolTipText(toolTip);
+        field.setEnabled(enabled);
+        field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void update() {
+                properties.put(propertyKey, field.getText());
+            }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { update(); }
+        });
+        panel.add(field, c);
+        return field;
+    }
+
+    private JPanel createRetryPanel(Map<String, Object> properties) {
+        JPanel retryPanel = new JPanel(new GridBagLayout());
+        retryPanel.setBorder(BorderFactory.createTitledBorder("Retries"));
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(2, 2, 2, 2);
+
+        JSpinner attemptsSpinner = addSpinnerRow(retryPanel, c, 0, "Max attempts:", RETRY_MAX_ATTEMPTS, 1, 10, 1,
+            "1 sends the request only once; GET, PUT and DELETE are retried, POST and PATCH only with an idempotency key",
+            true, properties);
+        boolean enabled = (Integer) attemptsSpinner.getValue() > 1;
+
+        JComponent[] fields = {
+            addTextRow(retryPanel, c, 1, "Retry on status codes:", RETRY_STATUS_CODES, RequestOptions.DEFAULT_RETRY_STATUS_CODES,
+                "Comma-separated HTTP status codes", enabled, properties),
+            addTextRow(retryPanel, c, 2, "Retry on exceptions:", RETRY_EXCEPTIONS, RequestOptions.DEFAULT_RETRY_EXCEPTIONS,
+                "Comma-separated exception class names, e.g. IOException also covers its subclasses", enabled, properties),
+            addSpinnerRow(retryPanel, c, 3, "Base delay (ms):", RETRY_BASE_DELAY, 0, 60000, 50,
+                "Upper bound of the random wait before the first retry; it doubles with every further retry", enabled, properties),
+            addSpinnerRow(retryPanel, c, 4, "Max delay (ms):", RETRY_MAX_DELAY, 0, 600000, 500,
+                "Longest wait between attempts; a longer Retry-After ends the retries", enabled, properties)
+        };
+
+        c.gridx = 0;
+        c.gridy = 5;
+        c.gridwidth = 2;
+        JCheckBox idempotencyCheckbox = new JCheckBox("Send an Idempotency-Key header to retry POST and PATCH");
+        idempotencyCheckbox.setSelected(Boolean.parseBoolean(properties.getOrDefault(RETRY_IDEMPOTENCY_KEY, "false").toString()));
+        idempotencyCheckbox.setEnabled(enabled);
+        idempotencyCheckbox.addActionListener(
+            e -> properties.put(RETRY_IDEMPOTENCY_KEY, Boolean.toString(idempotencyCheckbox.isSelected()))
+        );
+        retryPanel.add(idempotencyCheckbox, c);
+
+        attemptsSpinner.addChangeListener(e -> {
+            boolean retrying = (Integer) attemptsSpinner.getValue() > 1;
+            for (JComponent field : fields) {
+                field.setEnabled(retrying);
+            }
+            idempotencyCheckbox.setEnabled(retrying);
+        });
+
+        return retryPanel;
+    }
+
     private List<String> extractPathVariables(String url) {
         List<String> pathVars = new ArrayList<>();
         int start = 0;
@@ -1353,6 +1980,37 @@ public class SendAndReceiveNode extends Node {
         Graph.printAtt(out, BODY_MODE, this.getProperty(BODY_MODE).toString());
         Graph.printAtt(out, RAW_BODY, this.getProperty(RAW_BODY).toString());
         Graph.printAtt(out, TRUST_ALL_CERTS, this.getProperty(TRUST_ALL_CERTS).toString());
+        Graph.printAtt(out, CACHE_ENABLED, this.getProperty(CACHE_ENABLED).toString());
+        Graph.printAtt(out, CACHE_TTL, this.getProperty(CACHE_TTL).toString());
+        Graph.printAtt(out, CACHE_STALE_WHILE_REVALIDATE, this.getProperty(CACHE_STALE_WHILE_REVALIDATE).toString());
+        Graph.printAtt(out, CACHE_STALE_IF_ERROR, this.getProperty(CACHE_STALE_IF_ERROR).toString());
+        Graph.printAtt(out, CACHE_REFRESH_AHEAD, this.getProperty(CACHE_REFRESH_AHEAD).toString());
+        Graph.printAtt(out, RETRY_MAX_ATTEMPTS, this.getProperty(RETRY_MAX_ATTEMPTS).toString());
+        Graph.printAtt(out, RETRY_STATUS_CODES, this.getProperty(RETRY_STATUS_CODES).toString());
+        Graph.printAtt(out, RETRY_EXCEPTIONS, this.getProperty(RETRY_EXCEPTIONS).toString());
+        Graph.printAtt(out, RETRY_BASE_DELAY, this.getProperty(RETRY_BASE_DELAY).toString());
+        Graph.printAtt(out, RETRY_MAX_DELAY, this.getProperty(RETRY_MAX_DELAY).toString());
+        Graph.printAtt(out, RETRY_IDEMPOTENCY_KEY, this.getProperty(RETRY_IDEMPOTENCY_KEY).toString());
+        Graph.printAtt(out, HEDGE_ENABLED, this.getProperty(HEDGE_ENABLED).toString());
+        Graph.printAtt(out, HEDGE_DELAY, this.getProperty(HEDGE_DELAY).toString());
+        Graph.printAtt(out, HEDGE_PERCENTILE, this.getProperty(HEDGE_PERCENTILE).toString());
+        Graph.printAtt(out, LIMITER_WAIT, this.getProperty(LIMITER_WAIT).toString());
+        Graph.printAtt(out, REQUEST_TIMEOUT, this.getProperty(REQUEST_TIMEOUT).toString());
+        Graph.printAtt(out, RESPONSE_STREAMING, this.getProperty(RESPONSE_STREAMING).toString());
+        Graph.printAtt(out, MAX_RESPONSE_SIZE, this.getProperty(MAX_RESPONSE_SIZE).toString());
+        Graph.printAtt(out, OVERSIZE_RESPONSE, this.getProperty(OVERSIZE_RESPONSE).toString());
+        Graph.printAtt(out, DEADLINE_MODE, this.getProperty(DEADLINE_MODE).toString());
+        Graph.printAtt(out, DEADLINE_BUDGET, this.getProperty(DEADLINE_BUDGET).toString());
+        Graph.printAtt(out, DEADLINE_LATE_WRITE, this.getProperty(DEADLINE_LATE_WRITE).toString());
+        Graph.printAtt(out, COMPRESS_REQUEST, this.getProperty(COMPRESS_REQUEST).toString());
+        Graph.printAtt(out, COMPRESS_THRESHOLD, this.getProperty(COMPRESS_THRESHOLD).toString());
+        Graph.printAtt(out, PREFETCH, this.getProperty(PREFETCH).toString());
+        Graph.printAtt(out, PREFETCH_FROM, this.getProperty(PREFETCH_FROM).toString());
+        for (String key : PAGINATION_KEYS) {
+            Graph.printAtt(out, key, this.getProperty(key).toString());
+        }
+        Graph.printAtt(out, BREAKER_FALLBACK, this.getProperty(BREAKER_FALLBACK).toString());
+        Graph.printAtt(out, BREAKER_FALLBACK_PAYLOAD, this.getProperty(BREAKER_FALLBACK_PAYLOAD).toString());
     }
 
     @Override
@@ -1361,7 +2019,17 @@ public class SendAndReceiveNode extends Node {
             name.equals(QUERY_VARIABLES) || name.equals(BODY_VARIABLES) || name.equals(RESPONSE_MODE) ||
             name.equals(RESPONSE_MAPPINGS) || name.equals(RESPONSE_TARGET_VAR) || name.equals(RESPONSE_AS_STRING) ||
             name.equals(AUTH_TYPE) || name.equals(AUTH_VALUE) || name.equals(CUSTOM_HEADERS) ||
-            name.equals(BODY_MODE) || name.equals(RAW_BODY) || name.equals(TRUST_ALL_CERTS)) {
+            name.equals(BODY_MODE) || name.equals(RAW_BODY) || name.equals(TRUST_ALL_CERTS) ||
+            name.equals(CACHE_ENABLED) || name.equals(CACHE_TTL) || name.equals(CACHE_STALE_WHILE_REVALIDATE) ||
+            name.equals(CACHE_STALE_IF_ERROR) || name.equals(CACHE_REFRESH_AHEAD) || name.equals(RETRY_MAX_ATTEMPTS) ||
+            name.equals(RETRY_STATUS_CODES) || name.equals(RETRY_EXCEPTIONS) || name.equals(RETRY_BASE_DELAY) ||
+            name.equals(RETRY_MAX_DELAY) || name.equals(RETRY_IDEMPOTENCY_KEY) || name.equals(HEDGE_ENABLED) ||
+            name.equals(HEDGE_DELAY) || name.equals(HEDGE_PERCENTILE) || name.equals(BREAKER_FALLBACK) ||
+            name.equals(BREAKER_FALLBACK_PAYLOAD) || name.equals(LIMITER_WAIT) || name.equals(REQUEST_TIMEOUT) ||
+            name.equals(DEADLINE_MODE) || name.equals(DEADLINE_BUDGET) || name.equals(DEADLINE_LATE_WRITE) ||
+            name.equals(RESPONSE_STREAMING) || name.equals(MAX_RESPONSE_SIZE) || name.equals(OVERSIZE_RESPONSE) ||
+            name.equals(COMPRESS_REQUEST) || name.equals(COMPRESS_THRESHOLD) ||
+            name.equals(PREFETCH) || name.equals(PREFETCH_FROM) || Arrays.asList(PAGINATION_KEYS).contains(name)) {
             this.setProperty(name, value);
         } else {
             super.readAttribute(r, name, value, uid_map);
@@ -1374,6 +2042,8 @@ public class SendAndReceiveNode extends Node {
             return new Color(0, 150, 0);
         } else if (portNumber == 1) {
             return new Color(200, 0, 0);
+        } else if (portNumber == 2) {
+            return new Color(230, 140, 0);
         }
         return super.getPortColor(portNumber);
     }
@@ -1,5 +1,6 @@
 package com.clt.dialogos.httpplugin;
 
+import com.clt.dialogos.plugin.PluginRuntime;
 import com.clt.diamant.*;
 import com.clt.diamant.graph.Graph;
 import com.clt.diamant.graph.Node;
@@ -35,6 +36,10 @@ public class SendNode extends Node {
     private static final String BODY_MODE = "bodyMode";
     private static final String RAW_BODY = "rawBody";
     private static final String TRUST_ALL_CERTS = "trustAllCerts";
+    private static final String ASYNC_MODE = "asyncMode";
+    private static final String ASYNC_OVERFLOW = "asyncOverflow";
+    private static final String COMPRESS_REQUEST = "compressRequest";
+    private static final String COMPRESS_THRESHOLD = "compressThreshold";
     private static final String REMOVE_LABEL = "-";
     private static final Dimension COMPACT_BUTTON_SIZE = new Dimension(26, 22);
     private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{([^}]+)}");
@@ -57,6 +62,10 @@ public class SendNode extends Node {
         this.setProperty(BODY_MODE, "mapping");
         this.setProperty(RAW_BODY, "");
         this.setProperty(TRUST_ALL_CERTS, "false");
+        this.setProperty(ASYNC_MODE, "false");
+        this.setProperty(ASYNC_OVERFLOW, "drop");
+        this.setProperty(COMPRESS_REQUEST, "false");
+        this.setProperty(COMPRESS_THRESHOLD, "4");
     }
     
     @Override
@@ -69,6 +78,7 @@ public class SendNode extends Node {
     @Override
     public Node execute(WozInterface comm, InputCenter input, ExecutionLogger logger) {
         logNode(logger);
+        HttpPluginRuntime.nodeEntered(this, comm);
         
         try {
             String url = this.getProperty(HTTP_URL).toString();
@@ -104,9 +114,44 @@ public class SendNode extends Node {
             boolean trustAllCerts = Boolean.parseBoolean(
                 String.valueOf(this.getProperty(TRUST_ALL_CERTS))
             );
+            boolean asyncMode = Boolean.parseBoolean(String.valueOf(this.getProperty(ASYNC_MODE)));
+            RequestOptions options = RequestOptions.defaults()
+                .withRequestCompression(RequestOptions.compressAboveBytes(this::getProperty));
+
+            if (asyncMode) {
+                // Resolve everything now, the request is sent later by a background worker
+                HttpHandler.PreparedRequest request = HttpHandler.prepareRequest(
+                    url,
+                    httpMethod,
+                    pathVarMappings,
+                    queryParamMappings,
+                    jsonBody,
+                    this::getSlotOrNull,
+                    authType,
+                    authValue,
+                    customHeaders,
+                    trustAllCerts
+                );
+                HttpPluginRuntime runtime = getHttpRuntime(comm);
+                AsyncDispatcher dispatcher = (runtime != null ? runtime : HttpPluginRuntime.getFallback()).getAsyncDispatcher();
+                AsyncDispatcher.OverflowPolicy overflowPolicy =
+                    AsyncDispatcher.OverflowPolicy.fromProperty(String.valueOf(this.getProperty(ASYNC_OVERFLOW)));
+
+                if (dispatcher.submit(request, options, overflowPolicy)) {
+                    System.out.println("HTTP request queued for background delivery: " + request.method + " " + request.url);
+                    return getEdge(0).getTarget(); // Success edge
+                } else {
+                    return getEdge(1).getTarget(); // Error edge
+                }
+            }
             
+            // A request sent while the dialog waits counts against the turn deadline, if there is one
+            HttpPluginRuntime runtime = getHttpRuntime(comm);
+            options.withDeadline((runtime != null ? runtime : HttpPluginRuntime.getFallback()).getTurnDeadline());
+
             // Send HTTP request with JSON object
             HttpHandler.HttpResult result = HttpHandler.sendHttpRequest(
+                runtime,
                 url,
                 httpMethod,
                 pathVarMappings,
@@ -116,7 +161,8 @@ public class SendNode extends Node {
                 authType,
                 authValue,
                 customHeaders,
-                trustAllCerts
+                trustAllCerts,
+                options
             );
             
             if (result.success) {
@@ -131,6 +177,11 @@ public class SendNode extends Node {
         }
     }
     
+    private HttpPluginRuntime getHttpRuntime(WozInterface comm) {
+        PluginRuntime runtime = getPluginRuntime(HttpPlugin.class, comm);
+        return runtime instanceof HttpPluginRuntime ? (HttpPluginRuntime) runtime : null;
+    }
+
     private Slot getSlotOrNull(String name) {
         List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
         for (Slot slot : slots) {
@@ -168,6 +219,16 @@ public class SendNode extends Node {
 
     @Override
     public JComponent createEditorComponent(Map<String, Object> properties) {
+        JTabbedPane tabs = new JTabbedPane();
+
+        tabs.addTab("Send", createSendPanel(properties));
+
+        tabs.addTab("Options", createOptionsPanel(properties));
+
+        return tabs;
+    }
+
+    private JPanel createSendPanel(Map<String, Object> properties) {
         JPanel mainPanel = new JPanel(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.fill = GridBagConstraints.BOTH;
@@ -319,7 +380,57 @@ public class SendNode extends Node {
         
         return mainPanel;
     }
-    
+
+    private JPanel createOptionsPanel(Map<String, Object> properties) {
+        JPanel mainPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.anchor = GridBagConstraints.NORTHWEST;
+        gbc.gridx = 0;
+        gbc.weightx = 1.0;
+
+        gbc.gridy = 0;
+        mainPanel.add(createAsyncPanel(properties), gbc);
+
+        gbc.gridy = 1;
+        mainPanel.add(SendAndReceiveNode.createCompressionPanel(properties), gbc);
+
+        // push sections to the top
+        gbc.gridy = 99;
+        gbc.weighty = 1.0;
+        mainPanel.add(Box.createVerticalGlue(), gbc);
+
+        return mainPanel;
+    }
+
+    private JPanel createAsyncPanel(Map<String, Object> properties) {
+        JPanel asyncPanel = new JPanel(new GridBagLayout());
+        asyncPanel.setBorder(BorderFactory.createTitledBorder("Background Delivery"));
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(2, 2, 2, 2);
+
+        c.gridx = 0;
+        c.gridy = 0;
+        c.gridwidth = 2;
+        c.weightx = 1.0;
+        JCheckBox asyncCheckbox = new JCheckBox("Send in background and continue immediately (fire-and-forget)");
+        asyncCheckbox.setSelected(Boolean.parseBoolean(properties.getOrDefault(ASYNC_MODE, "false").toString()));
+        asyncPanel.add(asyncCheckbox, c);
+
+        JComboBox<String> overflowCombo = SendAndReceiveNode.addComboRow(asyncPanel, c, 1, "When queue is full:", ASYNC_OVERFLOW,
+            new String[]{"drop", "block", "error"}, new String[]{"Drop request", "Wait for free space", "Take error edge"},
+            null, asyncCheckbox.isSelected(), properties);
+
+        asyncCheckbox.addActionListener(e -> {
+            properties.put(ASYNC_MODE, Boolean.toString(asyncCheckbox.isSelected()));
+            overflowCombo.setEnabled(asyncCheckbox.isSelected());
+        });
+
+        return asyncPanel;
+    }
+
     private List<String> extractPathVariables(String url) {
         List<String> pathVars = new ArrayList<>();
         int start = 0;
@@ -1040,6 +1151,10 @@ public class SendNode extends Node {
         Graph.printAtt(out, BODY_MODE, this.getProperty(BODY_MODE).toString());
         Graph.printAtt(out, RAW_BODY, this.getProperty(RAW_BODY).toString());
         Graph.printAtt(out, TRUST_ALL_CERTS, this.getProperty(TRUST_ALL_CERTS).toString());
+        Graph.printAtt(out, ASYNC_MODE, this.getProperty(ASYNC_MODE).toString());
+        Graph.printAtt(out, ASYNC_OVERFLOW, this.getProperty(ASYNC_OVERFLOW).toString());
+        Graph.printAtt(out, COMPRESS_REQUEST, this.getProperty(COMPRESS_REQUEST).toString());
+        Graph.printAtt(out, COMPRESS_THRESHOLD, this.getProperty(COMPRESS_THRESHOLD).toString());
     }
 
     @Override
@@ -1047,7 +1162,9 @@ public class SendNode extends Node {
         if (name.equals(VARIABLE_NAMES) || name.equals(HTTP_URL) || name.equals(HTTP_METHOD) ||
             name.equals(PATH_VARIABLES) || name.equals(QUERY_PARAMETERS) ||
             name.equals(AUTH_TYPE) || name.equals(AUTH_VALUE) || name.equals(CUSTOM_HEADERS) ||
-            name.equals(BODY_MODE) || name.equals(RAW_BODY) || name.equals(TRUST_ALL_CERTS)) {
+            name.equals(BODY_MODE) || name.equals(RAW_BODY) || name.equals(TRUST_ALL_CERTS) ||
+            name.equals(ASYNC_MODE) || name.equals(ASYNC_OVERFLOW) ||
+            name.equals(COMPRESS_REQUEST) || name.equals(COMPRESS_THRESHOLD)) {
             this.setProperty(name, value);
         } else {
             super.readAttribute(r, name, value, uid_map);
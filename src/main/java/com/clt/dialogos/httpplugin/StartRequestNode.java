@@ -0,0 +1,193 @@
+package com.clt.dialogos.httpplugin;
+
+import com.clt.dialogos.plugin.PluginRuntime;
+import com.clt.diamant.*;
+import com.clt.diamant.graph.Graph;
+import com.clt.diamant.graph.Node;
+import com.clt.diamant.graph.nodes.NodeExecutionException;
+import com.clt.script.exp.values.StringValue;
+import com.clt.xml.XMLReader;
+import com.clt.xml.XMLWriter;
+import org.json.JSONObject;
+import org.xml.sax.SAXException;
+
+import javax.swing.*;
+import java.awt.*;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Starts a request in the background and continues at once, so that the request runs
+ * while the dialog plays prompts or waits for input. The handle of the request is
+ * stored in a slot; an {@link AwaitRequestNode} later waits for it and maps the
+ * response.
+ */
+public class StartRequestNode extends Node {
+    private static final String REQUEST = "request";
+    private static final String HANDLE_VAR = "handleVariable";
+    private static final String REQUEST_TIMEOUT = "requestTimeout";
+
+    public StartRequestNode() {
+        this.addEdge("Started");
+        this.addEdge("Error");
+
+        this.getEdge(0).setColor(new Color(0, 150, 0));
+        this.getEdge(1).setColor(new Color(200, 0, 0));
+
+        this.setProperty(REQUEST, new RequestDefinition().toJson().toString());
+        this.setProperty(HANDLE_VAR, "");
+        this.setProperty(REQUEST_TIMEOUT, "30000");
+    }
+
+    @Override
+    public void writeVoiceXML(XMLWriter w, IdMap uid_map) {}
+
+    public static String getNodeTypeName(Class<?> c) {
+        return "Http Start Request Node";
+    }
+
+    @Override
+    public Node execute(WozInterface comm, InputCenter input, ExecutionLogger logger) {
+        logNode(logger);
+        HttpPluginRuntime.nodeEntered(this, comm);
+        try {
+            RequestDefinition definition = parseDefinition(String.valueOf(this.getProperty(REQUEST)));
+            Slot handleSlot = getSlot(String.valueOf(this.getProperty(HANDLE_VAR)).trim());
+            HttpPluginRuntime runtime = getHttpRuntime(comm);
+            HttpPluginRuntime effectiveRuntime = runtime != null ? runtime : HttpPluginRuntime.getFallback();
+            Duration timeout = Duration.ofMillis(Math.max(1, RequestOptions.parseLong(this.getProperty(REQUEST_TIMEOUT), 30000)));
+
+            // Expressions are evaluated now, on the dialog thread; only the sending runs in the background
+            HttpHandler.PreparedRequest request = definition.prepare(this::getSlotOrNull);
+            CompletableFuture<HttpHandler.HttpResult> result = effectiveRuntime.submit(
+                () -> HttpHandler.execute(effectiveRuntime, request, timeout));
+            String description = request.method + " " + request.url;
+            String handle = effectiveRuntime.getPendingRequests().add(
+                new PendingRequests.Pending(result, definition, description));
+            handleSlot.setValue(new StringValue(handle));
+
+            System.out.println("Started request " + handle + ": " + description);
+            return getEdge(0).getTarget();
+
+        } catch (Exception e) {
+            System.err.println("Error in StartRequestNode: " + e.getMessage());
+            return getEdge(1).getTarget();
+        }
+    }
+
+    private static RequestDefinition parseDefinition(String json) {
+        if (json == null || json.trim().isEmpty()) {
+            return new RequestDefinition();
+        }
+        return RequestDefinition.fromJson(new JSONObject(json.trim()));
+    }
+
+    private Slot getSlot(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
+        }
+        throw new NodeExecutionException(this, "Unable to find variable: " + name);
+    }
+
+    private Slot getSlotOrNull(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
+        }
+        return null;
+    }
+
+    private HttpPluginRuntime getHttpRuntime(WozInterface comm) {
+        PluginRuntime runtime = getPluginRuntime(HttpPlugin.class, comm);
+        return runtime instanceof HttpPluginRuntime ? (HttpPluginRuntime) runtime : null;
+    }
+
+    @Override
+    public JComponent createEditorComponent(Map<String, Object> properties) {
+        JPanel mainPanel = new JPanel(new BorderLayout());
+
+        JPanel handlePanel = new JPanel(new GridBagLayout());
+        handlePanel.setBorder(BorderFactory.createTitledBorder("Background Request"));
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(2, 2, 2, 2);
+
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.weightx = 0;
+        handlePanel.add(new JLabel("Handle Variable:"), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JTextField handleField = new JTextField(properties.getOrDefault(HANDLE_VAR, "").toString(), 20);
+        handleField.setToolTipText("String variable that receives the handle for the await node");
+        handleField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void update() {
+                properties.put(HANDLE_VAR, handleField.getText());
+            }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { update(); }
+        });
+        handlePanel.add(handleField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.weightx = 0;
+        handlePanel.add(new JLabel("Request timeout (ms):"), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        int timeout = (int) RequestOptions.parseLong(properties.get(REQUEST_TIMEOUT), 30000);
+        JSpinner timeoutSpinner = new JSpinner(new SpinnerNumberModel(Math.max(100, Math.min(timeout, 600000)), 100, 600000, 500));
+        timeoutSpinner.addChangeListener(e -> properties.put(REQUEST_TIMEOUT, timeoutSpinner.getValue().toString()));
+        handlePanel.add(timeoutSpinner, gbc);
+
+        mainPanel.add(handlePanel, BorderLayout.NORTH);
+
+        RequestDefinition definition;
+        try {
+            definition = parseDefinition(properties.getOrDefault(REQUEST, "").toString());
+        } catch (Exception e) {
+            definition = new RequestDefinition();
+        }
+        RequestDefinition model = definition;
+        JComponent requestPanel = ParallelRequestNode.createRequestPanel(model,
+            () -> properties.put(REQUEST, model.toJson().toString()));
+        requestPanel.setBorder(BorderFactory.createTitledBorder("Request (the response is mapped by the await node)"));
+        mainPanel.add(requestPanel, BorderLayout.CENTER);
+
+        return mainPanel;
+    }
+
+    @Override
+    protected void writeAttributes(XMLWriter out, IdMap uid_map) {
+        Graph.printAtt(out, REQUEST, this.getProperty(REQUEST).toString());
+        Graph.printAtt(out, HANDLE_VAR, this.getProperty(HANDLE_VAR).toString());
+        Graph.printAtt(out, REQUEST_TIMEOUT, this.getProperty(REQUEST_TIMEOUT).toString());
+    }
+
+    @Override
+    protected void readAttribute(XMLReader r, String name, String value, IdMap uid_map) throws SAXException {
+        if (name.equals(REQUEST) || name.equals(HANDLE_VAR) || name.equals(REQUEST_TIMEOUT)) {
+            this.setProperty(name, value);
+        } else {
+            super.readAttribute(r, name, value, uid_map);
+        }
+    }
+
+    @Override
+    public Color getPortColor(int portNumber) {
+        if (portNumber == 0) {
+            return new Color(0, 150, 0); // Started - green
+        } else if (portNumber == 1) {
+            return new Color(200, 0, 0); // Error - red
+        }
+        return super.getPortColor(portNumber);
+    }
+}
@@ -0,0 +1,281 @@
+package com.clt.dialogos.httpplugin;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * A WebSocket connection that lives as long as the dialog, so that the handshake and
+ * authentication happen once instead of in every turn. Incoming text messages are
+ * queued until a node receives them. The connection is kept alive with pings and, if
+ * the server drops it, reconnected in the background with exponential backoff.
+ */
+class WebSocketConnection implements WebSocket.Listener {
+    static final int MAX_QUEUED_MESSAGES = 1000;
+    static final long KEEP_ALIVE_SECONDS = 30;
+    static final long INITIAL_BACKOFF_MILLIS = 500;
+    static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final long CLOSE_GRACE_MILLIS = 1000;
+
+    private final String name;
+    private final URI uri;
+    private final Map<String, String> headers;
+    private final HttpClient client;
+    private final ScheduledExecutorService scheduler;
+    private final BlockingQueue<String> messages = new LinkedBlockingQueue<>(MAX_QUEUED_MESSAGES);
+    private final StringBuilder partial = new StringBuilder();
+    private final ScheduledFuture<?> keepAlive;
+
+    private WebSocket socket;
+    private CompletableFuture<WebSocket> connecting;
+    private long backoffMillis = INITIAL_BACKOFF_MILLIS;
+    private boolean reconnectScheduled = false;
+    private boolean closed = false;
+
+    private long connects = 0;
+    private long received = 0;
+    private long sent = 0;
+    private long dropped = 0;
+
+    WebSocketConnection(String name, String url, Map<String, String> headers, HttpClient client,
+                        ScheduledExecutorService scheduler) {
+        this.name = name;
+        this.uri = URI.create(url);
+        this.headers = headers;
+        this.client = client;
+        this.scheduler = scheduler;
+        this.keepAlive = scheduler.scheduleAtFixedRate(this::ping, KEEP_ALIVE_SECONDS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    String getUrl() {
+        return uri.toString();
+    }
+
+    Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Returns the open socket, or starts connecting if there is none.
+     */
+    synchronized CompletableFuture<WebSocket> connect() {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("WebSocket '" + name + "' is closed"));
+        }
+        if (socket != null && !socket.isOutputClosed() && !socket.isInputClosed()) {
+            return CompletableFuture.completedFuture(socket);
+        }
+        if (connecting != null) {
+            return connecting;
+        }
+
+        WebSocket.Builder builder = client.newWebSocketBuilder().connectTimeout(CONNECT_TIMEOUT);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            try {
+                builder.header(header.getKey(), header.getValue());
+            } catch (IllegalArgumentException e) {
+                // headers of the handshake itself are set by the client
+                System.err.println("WebSocket '" + name + "': header " + header.getKey() + " is not allowed and skipped");
+            }
+        }
+        System.out.println("Connecting WebSocket '" + name + "': " + uri);
+        CompletableFuture<WebSocket> attempt = builder.buildAsync(uri, this);
+        connecting = attempt;
+        attempt.whenComplete((webSocket, error) -> connected(webSocket, error));
+        return attempt;
+    }
+
+    private synchronized void connected(WebSocket webSocket, Throwable error) {
+        connecting = null;
+        if (error != null) {
+            System.err.println("✗ WebSocket '" + name + "' could not connect: " + rootCause(error).getMessage());
+            scheduleReconnect();
+            return;
+        }
+        if (closed) {
+            webSocket.abort();
+            return;
+        }
+        socket = webSocket;
+        connects++;
+        backoffMillis = INITIAL_BACKOFF_MILLIS;
+        System.out.println("✓ WebSocket '" + name + "' connected" + (connects > 1 ? " again" : ""));
+    }
+
+    /**
+     * Sends a text message, connecting first if necessary.
+     */
+    void send(String text, long timeoutMillis) throws InterruptedException, ExecutionException, TimeoutException {
+        long start = System.currentTimeMillis();
+        WebSocket webSocket = connect().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        long remaining = Math.max(1, timeoutMillis - (System.currentTimeMillis() - start));
+        webSocket.sendText(text, true).get(remaining, TimeUnit.MILLISECONDS);
+        synchronized (this) {
+            sent++;
+        }
+    }
+
+    /**
+     * Waits for the next message that passes the filter; other messages are dropped.
+     * Returns null if none arrives in time.
+     */
+    String receive(long timeoutMillis, Predicate<String> filter) throws InterruptedException {
+        // a receive-only node must not wait for a connection nobody has opened
+        connect();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            long remaining = deadline - System.currentTimeMillis();
+            String message = messages.poll(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+            if (message == null) {
+                return null;
+            }
+            if (filter.test(message)) {
+                return message;
+            }
+            System.out.println("WebSocket '" + name + "': skipped message that does not match the filter");
+        }
+    }
+
+    /**
+     * Drops the messages that arrived before, so that a reply is not confused with
+     * them. Returns how many there were.
+     */
+    int discardQueued() {
+        int count = messages.size();
+        messages.clear();
+        return count;
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        String message = null;
+        synchronized (partial) {
+            partial.append(data);
+            if (last) {
+                message = partial.toString();
+                partial.setLength(0);
+            }
+        }
+        if (message != null) {
+            synchronized (this) {
+                received++;
+            }
+            while (!messages.offer(message)) {
+                // nobody is receiving: keep the latest messages
+                messages.poll();
+                synchronized (this) {
+                    dropped++;
+                }
+            }
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        System.out.println("WebSocket '" + name + "' closed by the server (" + statusCode
+            + (reason == null || reason.isEmpty() ? "" : ", " + reason) + ")");
+        disconnected(webSocket);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        System.err.println("✗ WebSocket '" + name + "' failed: " + error.getMessage());
+        disconnected(webSocket);
+    }
+
+    private synchronized void disconnected(WebSocket webSocket) {
+        if (socket == webSocket) {
+            socket = null;
+        }
+        synchronized (partial) {
+            partial.setLength(0);
+        }
+        scheduleReconnect();
+    }
+
+    private synchronized void scheduleReconnect() {
+        if (closed || reconnectScheduled) {
+            return;
+        }
+        reconnectScheduled = true;
+        long delay = backoffMillis;
+        backoffMillis = Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+        System.out.println("WebSocket '" + name + "': reconnecting in " + delay + " ms");
+        scheduler.schedule(() -> {
+            synchronized (this) {
+                reconnectScheduled = false;
+            }
+            connect();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void ping() {
+        WebSocket webSocket;
+        synchronized (this) {
+            webSocket = socket;
+        }
+        if (webSocket != null && !webSocket.isOutputClosed()) {
+            webSocket.sendPing(ByteBuffer.allocate(0));
+        }
+    }
+
+    /**
+     * Closes the connection for good; it is not reconnected.
+     */
+    void close() {
+        WebSocket webSocket;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            webSocket = socket;
+            socket = null;
+        }
+        keepAlive.cancel(false);
+        if (webSocket == null) {
+            return;
+        }
+        try {
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "dialog ended").get(CLOSE_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            webSocket.abort();
+        }
+    }
+
+    private static Throwable rootCause(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + ": connects=" + connects + ", sent=" + sent + ", received=" + received + ", dropped=" + dropped
+            + ", queued=" + messages.size();
+    }
+}
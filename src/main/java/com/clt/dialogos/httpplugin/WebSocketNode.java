@@ -0,0 +1,397 @@
+package com.clt.dialogos.httpplugin;
+
+import com.clt.dialogos.plugin.PluginRuntime;
+import com.clt.diamant.*;
+import com.clt.diamant.graph.Graph;
+import com.clt.diamant.graph.Node;
+import com.clt.diamant.graph.nodes.NodeExecutionException;
+import com.clt.xml.XMLReader;
+import com.clt.xml.XMLWriter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.xml.sax.SAXException;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * Sends and receives messages over a WebSocket connection that is opened once per
+ * dialog and shared by all nodes with the same connection name. Messages are built
+ * with the body mappings of a SendAndReceiveNode, and replies are mapped into slots
+ * with its response mappings.
+ */
+public class WebSocketNode extends Node {
+    private static final String CONNECTION_NAME = "connectionName";
+    private static final String ACTION = "webSocketAction";
+    private static final String REPLY_FILTER = "replyFilter";
+    private static final String RECEIVE_TIMEOUT = "receiveTimeout";
+
+    private static final String ACTION_SEND = "send";
+    private static final String ACTION_SEND_RECEIVE = "sendReceive";
+    private static final String ACTION_RECEIVE = "receive";
+    private static final String ACTION_CLOSE = "close";
+    private static final String[] ACTIONS = {ACTION_SEND_RECEIVE, ACTION_SEND, ACTION_RECEIVE, ACTION_CLOSE};
+    private static final String[] ACTION_LABELS = {"Send and wait for reply", "Send only", "Wait for message", "Close connection"};
+
+    private static final String[] REQUEST_KEYS = {
+        RequestDefinition.URL, RequestDefinition.PATH_VARIABLES, RequestDefinition.QUERY_VARIABLES,
+        RequestDefinition.BODY_VARIABLES, RequestDefinition.RESPONSE_MODE, RequestDefinition.RESPONSE_MAPPINGS,
+        RequestDefinition.RESPONSE_TARGET_VAR, RequestDefinition.RESPONSE_AS_STRING, RequestDefinition.AUTH_TYPE,
+        RequestDefinition.AUTH_VALUE, RequestDefinition.CUSTOM_HEADERS, RequestDefinition.BODY_MODE,
+        RequestDefinition.RAW_BODY, RequestDefinition.TRUST_ALL_CERTS
+    };
+    private static final String[] SOCKET_KEYS = {CONNECTION_NAME, ACTION, REPLY_FILTER, RECEIVE_TIMEOUT};
+
+    private static final String[] AUTH_TYPES = {"None", "Bearer Token", "Basic Auth", "API Key"};
+
+    public WebSocketNode() {
+        this.addEdge("Success");
+        this.addEdge("Error");
+        this.addEdge("Timeout");
+
+        this.getEdge(0).setColor(new Color(0, 150, 0));
+        this.getEdge(1).setColor(new Color(200, 0, 0));
+        this.getEdge(2).setColor(new Color(230, 140, 0));
+
+        this.setProperty(RequestDefinition.URL, "");
+        this.setProperty(RequestDefinition.PATH_VARIABLES, "");
+        this.setProperty(RequestDefinition.QUERY_VARIABLES, "");
+        this.setProperty(RequestDefinition.BODY_VARIABLES, "");
+        this.setProperty(RequestDefinition.RESPONSE_MODE, "multiple");
+        this.setProperty(RequestDefinition.RESPONSE_MAPPINGS, "");
+        this.setProperty(RequestDefinition.RESPONSE_TARGET_VAR, "");
+        this.setProperty(RequestDefinition.RESPONSE_AS_STRING, "false");
+        this.setProperty(RequestDefinition.AUTH_TYPE, "None");
+        this.setProperty(RequestDefinition.AUTH_VALUE, "");
+        this.setProperty(RequestDefinition.CUSTOM_HEADERS, "");
+        this.setProperty(RequestDefinition.BODY_MODE, "mapping");
+        this.setProperty(RequestDefinition.RAW_BODY, "");
+        this.setProperty(RequestDefinition.TRUST_ALL_CERTS, "false");
+        this.setProperty(CONNECTION_NAME, "default");
+        this.setProperty(ACTION, ACTION_SEND_RECEIVE);
+        this.setProperty(REPLY_FILTER, "");
+        this.setProperty(RECEIVE_TIMEOUT, "10000");
+    }
+
+    @Override
+    public void writeVoiceXML(XMLWriter w, IdMap uid_map) {}
+
+    public static String getNodeTypeName(Class<?> c) {
+        return "Http WebSocket Node";
+    }
+
+    @Override
+    public Node execute(WozInterface comm, InputCenter input, ExecutionLogger logger) {
+        logNode(logger);
+        HttpPluginRuntime.nodeEntered(this, comm);
+        try {
+            HttpPluginRuntime runtime = getHttpRuntime(comm);
+            if (runtime == null) {
+                runtime = HttpPluginRuntime.getFallback();
+            }
+            String name = property(CONNECTION_NAME).isEmpty() ? "default" : property(CONNECTION_NAME);
+            String action = property(ACTION);
+            if (ACTION_CLOSE.equals(action)) {
+                if (!runtime.closeWebSocket(name)) {
+                    System.out.println("WebSocket '" + name + "' is not open");
+                }
+                return getEdge(0).getTarget();
+            }
+
+            // the body is only sent in the message; the definition just needs a method that has one
+            RequestDefinition definition = RequestDefinition.fromProperties(this::getProperty);
+            definition.set(RequestDefinition.HTTP_METHOD, "POST");
+            HttpHandler.PreparedRequest request = definition.prepare(this::getSlotOrNull);
+            WebSocketConnection connection = runtime.getWebSocket(name, request.url, request.headers,
+                request.trustAllCertificates);
+            long timeout = RequestOptions.parseLong(this.getProperty(RECEIVE_TIMEOUT), 10000);
+
+            if (ACTION_SEND_RECEIVE.equals(action)) {
+                int discarded = connection.discardQueued();
+                if (discarded > 0) {
+                    System.out.println("WebSocket '" + name + "': discarded " + discarded + " earlier message(s)");
+                }
+            }
+            if (ACTION_SEND_RECEIVE.equals(action) || ACTION_SEND.equals(action)) {
+                System.out.println("WebSocket '" + name + "' send: " + ResponseBodyLimit.preview(request.body));
+                connection.send(request.body, timeout);
+            }
+            if (ACTION_SEND_RECEIVE.equals(action) || ACTION_RECEIVE.equals(action)) {
+                String message = connection.receive(timeout, replyFilter());
+                if (message == null) {
+                    System.err.println("✗ WebSocket '" + name + "': no message within " + timeout + " ms");
+                    return getTimeoutTarget();
+                }
+                System.out.println("WebSocket '" + name + "' received: " + ResponseBodyLimit.preview(message));
+                definition.mapResponse(new HttpHandler.HttpResult(true, message, 200, null), this::getSlot);
+            }
+            return getEdge(0).getTarget();
+
+        } catch (TimeoutException e) {
+            System.err.println("✗ WebSocket message could not be sent in time");
+            return getTimeoutTarget();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return getEdge(1).getTarget();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("Error in WebSocketNode: " + cause.getMessage());
+            return getEdge(1).getTarget();
+        } catch (Exception e) {
+            System.err.println("Error in WebSocketNode: " + e.getMessage());
+            return getEdge(1).getTarget();
+        }
+    }
+
+    /**
+     * Accepts the messages whose value at the filter path equals the filter value
+     * ("type=response"), or all messages if there is no filter.
+     */
+    private Predicate<String> replyFilter() {
+        String filter = property(REPLY_FILTER);
+        int separator = filter.indexOf('=');
+        if (separator <= 0) {
+            return message -> true;
+        }
+        String path = filter.substring(0, separator).trim();
+        String expected = filter.substring(separator + 1).trim();
+        return message -> {
+            try {
+                Object json = new JSONTokener(message).nextValue();
+                if (!(json instanceof JSONObject) && !(json instanceof JSONArray)) {
+                    return false;
+                }
+                Object value = JsonConverter.resolvePath(json, path);
+                return value != null && expected.equals(String.valueOf(value));
+            } catch (Exception e) {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * The timeout edge is optional; graphs that do not connect it take the error edge.
+     */
+    private Node getTimeoutTarget() {
+        if (numEdges() > 2 && getEdge(2).getTarget() != null) {
+            return getEdge(2).getTarget();
+        }
+        return getEdge(1).getTarget();
+    }
+
+    private String property(String key) {
+        Object value = this.getProperty(key);
+        return value == null ? "" : value.toString().trim();
+    }
+
+    private Slot getSlot(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
+        }
+        throw new NodeExecutionException(this, "Unable to find variable: " + name);
+    }
+
+    private Slot getSlotOrNull(String name) {
+        List<Slot> slots = this.getGraph().getAllVariables(Graph.LOCAL);
+        for (Slot slot : slots) {
+            if (name.equals(slot.getName()))
+                return slot;
+        }
+        return null;
+    }
+
+    private HttpPluginRuntime getHttpRuntime(WozInterface comm) {
+        PluginRuntime runtime = getPluginRuntime(HttpPlugin.class, comm);
+        return runtime instanceof HttpPluginRuntime ? (HttpPluginRuntime) runtime : null;
+    }
+
+    @Override
+    public JComponent createEditorComponent(Map<String, Object> properties) {
+        JPanel mainPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.anchor = GridBagConstraints.NORTHWEST;
+        gbc.gridx = 0;
+        gbc.weightx = 1.0;
+
+        gbc.gridy = 0;
+        mainPanel.add(createConnectionPanel(properties), gbc);
+
+        gbc.gridy = 1;
+        mainPanel.add(createMessagePanel(properties), gbc);
+
+        gbc.gridy = 2;
+        mainPanel.add(createReplyPanel(properties), gbc);
+
+        // push sections to the top
+        gbc.gridy = 99;
+        gbc.weighty = 1.0;
+        mainPanel.add(Box.createVerticalGlue(), gbc);
+
+        return new JScrollPane(mainPanel);
+    }
+
+    private JPanel createConnectionPanel(Map<String, Object> properties) {
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBorder(BorderFactory.createTitledBorder("Connection"));
+        int row = 0;
+
+        addTextRow(panel, row++, "Connection Name:", CONNECTION_NAME,
+            "Nodes with the same name share one connection for the whole dialog", properties);
+        addComboRow(panel, row++, "Action:", ACTIONS, ACTION_LABELS, ACTION, properties);
+        addTextRow(panel, row++, "WebSocket URL:", RequestDefinition.URL, "e.g. wss://api.example.com/agent/{session}", properties);
+        addTextRow(panel, row++, "Path Variables:", RequestDefinition.PATH_VARIABLES, "pathVar=variable, ...", properties);
+        addTextRow(panel, row++, "Query Parameters:", RequestDefinition.QUERY_VARIABLES, "paramKey=variable, ...", properties);
+        addComboRow(panel, row++, "Authorization:", AUTH_TYPES, AUTH_TYPES, RequestDefinition.AUTH_TYPE, properties);
+        addTextRow(panel, row++, "Authorization Value:", RequestDefinition.AUTH_VALUE,
+            "token, username:password or headerName:value", properties);
+        addTextRow(panel, row++, "Custom Headers:", RequestDefinition.CUSTOM_HEADERS,
+            "Header=value, ...; sent with the handshake", properties);
+        addCheckBoxRow(panel, row, "Trust all SSL certificates (insecure)", RequestDefinition.TRUST_ALL_CERTS, properties);
+
+        return panel;
+    }
+
+    private JPanel createMessagePanel(Map<String, Object> properties) {
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBorder(BorderFactory.createTitledBorder("Message"));
+        int row = 0;
+
+        addComboRow(panel, row++, "Body Mode:", new String[]{"mapping", "raw"}, new String[]{"mapping", "raw"},
+            RequestDefinition.BODY_MODE, properties);
+        addTextRow(panel, row++, "Body Mappings:", RequestDefinition.BODY_VARIABLES, "jsonKey=variable, ...", properties);
+        addTextRow(panel, row, "Raw JSON Body:", RequestDefinition.RAW_BODY, "Use ${variable} to insert slot values", properties);
+
+        return panel;
+    }
+
+    private JPanel createReplyPanel(Map<String, Object> properties) {
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBorder(BorderFactory.createTitledBorder("Reply"));
+        int row = 0;
+
+        addTextRow(panel, row++, "Reply Filter:", REPLY_FILTER,
+            "Optional jsonPath=value, e.g. type=response; other messages are skipped", properties);
+        addComboRow(panel, row++, "Response Mode:", new String[]{"multiple", "single"}, new String[]{"multiple", "single"},
+            RequestDefinition.RESPONSE_MODE, properties);
+        addTextRow(panel, row++, "Response Mappings:", RequestDefinition.RESPONSE_MAPPINGS,
+            "jsonPath=variable, e.g. suggestion.text=hintSlot", properties);
+        addTextRow(panel, row++, "Target Variable:", RequestDefinition.RESPONSE_TARGET_VAR,
+            "Single mode: variable that receives the whole message", properties);
+        addCheckBoxRow(panel, row++, "Store single message as String", RequestDefinition.RESPONSE_AS_STRING, properties);
+        addSpinnerRow(panel, row, "Timeout (ms):", RECEIVE_TIMEOUT, 10000,
+            "How long to wait for the connection, for sending and for the reply", properties);
+
+        return panel;
+    }
+
+    private void addTextRow(JPanel panel, int row, String label, String key, String tooltip,
+                            Map<String, Object> properties) {
+        GridBagConstraints gbc = rowConstraints(row);
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JTextField field = new JTextField(properties.getOrDefault(key, "").toString(), 25);
+        field.setToolTipText(tooltip);
+        field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void update() {
+                properties.put(key, field.getText());
+            }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { update(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { update(); }
+        });
+        panel.add(field, gbc);
+    }
+
+    private void addComboRow(JPanel panel, int row, String label, String[] values, String[] labels, String key,
+                             Map<String, Object> properties) {
+        GridBagConstraints gbc = rowConstraints(row);
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        JComboBox<String> combo = new JComboBox<>(labels);
+        int selected = Arrays.asList(values).indexOf(properties.getOrDefault(key, "").toString());
+        combo.setSelectedIndex(Math.max(0, selected));
+        combo.addActionListener(e -> properties.put(key, values[combo.getSelectedIndex()]));
+        panel.add(combo, gbc);
+    }
+
+    private void addSpinnerRow(JPanel panel, int row, String label, String key, int defaultValue, String tooltip,
+                               Map<String, Object> properties) {
+        GridBagConstraints gbc = rowConstraints(row);
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        int value = (int) RequestOptions.parseLong(properties.get(key), defaultValue);
+        JSpinner spinner = new JSpinner(new SpinnerNumberModel(Math.max(100, Math.min(value, 600000)), 100, 600000, 500));
+        spinner.setToolTipText(tooltip);
+        spinner.addChangeListener(e -> properties.put(key, spinner.getValue().toString()));
+        panel.add(spinner, gbc);
+    }
+
+    private void addCheckBoxRow(JPanel panel, int row, String label, String key, Map<String, Object> properties) {
+        GridBagConstraints gbc = rowConstraints(row);
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+
+        JCheckBox checkBox = new JCheckBox(label);
+        checkBox.setSelected(Boolean.parseBoolean(properties.getOrDefault(key, "false").toString()));
+        checkBox.addActionListener(e -> properties.put(key, Boolean.toString(checkBox.isSelected())));
+        panel.add(checkBox, gbc);
+    }
+
+    private static GridBagConstraints rowConstraints(int row) {
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(2, 2, 2, 2);
+        gbc.gridy = row;
+        gbc.gridx = 0;
+        gbc.weightx = 0;
+        return gbc;
+    }
+
+    @Override
+    protected void writeAttributes(XMLWriter out, IdMap uid_map) {
+        for (String key : REQUEST_KEYS) {
+            Graph.printAtt(out, key, this.getProperty(key).toString());
+        }
+        for (String key : SOCKET_KEYS) {
+            Graph.printAtt(out, key, this.getProperty(key).toString());
+        }
+    }
+
+    @Override
+    protected void readAttribute(XMLReader r, String name, String value, IdMap uid_map) throws SAXException {
+        if (Arrays.asList(REQUEST_KEYS).contains(name) || Arrays.asList(SOCKET_KEYS).contains(name)) {
+            this.setProperty(name, value);
+        } else {
+            super.readAttribute(r, name, value, uid_map);
+        }
+    }
+
+    @Override
+    public Color getPortColor(int portNumber) {
+        if (portNumber == 0) {
+            return new Color(0, 150, 0); // Success - green
+        } else if (portNumber == 1) {
+            return new Color(200, 0, 0); // Error - red
+        } else if (portNumber == 2) {
+            return new Color(230, 140, 0); // Timeout - orange
+        }
+        return super.getPortColor(portNumber);
+    }
+}
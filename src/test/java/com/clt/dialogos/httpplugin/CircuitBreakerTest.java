@@ -0,0 +1,140 @@
+package com.clt.dialogos.httpplugin;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    /** Opens at 50% failures or 50% calls of at least 1000 ms. */
+    private static CircuitBreaker breaker(long openMillis) {
+        return new CircuitBreaker("https://api.example.com", 50, 1000, 50, openMillis);
+    }
+
+    private static void record(CircuitBreaker breaker, int calls, boolean failure, long durationMillis) {
+        for (int i = 0; i < calls; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onResult(failure, durationMillis);
+        }
+    }
+
+    private static CircuitBreaker opened(long openMillis) {
+        CircuitBreaker breaker = breaker(openMillis);
+        record(breaker, CircuitBreaker.MINIMUM_CALLS, true, 10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        CircuitBreaker breaker = breaker(60000);
+
+        record(breaker, CircuitBreaker.MINIMUM_CALLS - 1, true, 10);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void opensAtFailureRate() {
+        CircuitBreaker breaker = breaker(60000);
+
+        record(breaker, 5, false, 10);
+        record(breaker, 4, true, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        record(breaker, 1, true, 10);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void opensAtSlowCallRate() {
+        CircuitBreaker breaker = breaker(60000);
+
+        record(breaker, 5, false, 10);
+        record(breaker, 5, false, 1000);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void oldOutcomesLeaveTheWindow() {
+        CircuitBreaker breaker = breaker(60000);
+
+        record(breaker, 4, true, 10);
+        record(breaker, CircuitBreaker.WINDOW_SIZE, false, 10);
+        record(breaker, 9, true, 10);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void rejectsWhileOpen() {
+        CircuitBreaker breaker = opened(60000);
+
+        assertFalse(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void letsLimitedProbesThroughAfterOpenDuration() {
+        CircuitBreaker breaker = opened(0);
+
+        for (int i = 0; i < CircuitBreaker.HALF_OPEN_PROBES; i++) {
+            assertTrue(breaker.tryAcquire());
+        }
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void closesWhenAllProbesSucceed() {
+        CircuitBreaker breaker = opened(0);
+
+        record(breaker, CircuitBreaker.HALF_OPEN_PROBES - 1, false, 10);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        record(breaker, 1, false, 10);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void reopensWhenProbeFailsOrIsSlow() {
+        CircuitBreaker failed = opened(0);
+        record(failed, 1, true, 10);
+        assertEquals(CircuitBreaker.State.OPEN, failed.getState());
+
+        CircuitBreaker slow = opened(0);
+        record(slow, 1, false, 5000);
+        assertEquals(CircuitBreaker.State.OPEN, slow.getState());
+    }
+
+    @Test
+    void ignoredProbeFreesItsSlotWithoutClosing() {
+        CircuitBreaker breaker = opened(0);
+
+        for (int i = 0; i < CircuitBreaker.HALF_OPEN_PROBES; i++) {
+            assertTrue(breaker.tryAcquire());
+        }
+        for (int i = 0; i < CircuitBreaker.HALF_OPEN_PROBES; i++) {
+            breaker.onIgnored();
+        }
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void ignoredCallsDoNotDiluteFailureRate() {
+        CircuitBreaker breaker = breaker(60000);
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onIgnored();
+        }
+        record(breaker, CircuitBreaker.MINIMUM_CALLS, true, 10);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
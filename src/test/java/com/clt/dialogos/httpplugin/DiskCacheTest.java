@@ -0,0 +1,197 @@
+package com.clt.dialogos.httpplugin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiskCacheTest {
+
+    private static final long MAX_BYTES = 2L * DiskCache.SEGMENT_SIZE;
+    private static final Map<String, List<String>> HEADERS =
+        Map.of("Content-Type", List.of("application/json"), "Vary", List.of("Accept", "Accept-Language"));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordRoundTrip() throws IOException {
+        DiskCache cache = DiskCache.open(directory, MAX_BYTES);
+        try {
+            assertTrue(cache.put("GET https://api.example.com/ä", 1000, 61000, 200, HEADERS, "{\"name\":\"Zoë\"}"));
+
+            DiskCache.Record record = cache.get("GET https://api.example.com/ä");
+
+            assertNotNull(record);
+            assertEquals(1000, record.storedAt);
+            assertEquals(61000, record.expiresAt);
+            assertEquals(200, record.statusCode);
+            assertEquals("{\"name\":\"Zoë\"}", record.body);
+            assertEquals(List.of("application/json"), record.headers.get("content-type"));
+            assertEquals(List.of("Accept", "Accept-Language"), record.headers.get("Vary"));
+            assertNull(cache.get("GET https://api.example.com/other"));
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    void recordsAreRecoveredAfterReopenWithLatestWinning() throws IOException {
+        DiskCache cache = DiskCache.open(directory, MAX_BYTES);
+        cache.put("a", 1, 2, 200, HEADERS, "first");
+        cache.put("b", 1, 2, 404, Collections.emptyMap(), "missing");
+        cache.put("a", 3, 4, 200, HEADERS, "second");
+        cache.close();
+
+        DiskCache reopened = DiskCache.open(directory, MAX_BYTES);
+        try {
+            assertEquals("second", reopened.get("a").body);
+            assertEquals(3, reopened.get("a").storedAt);
+            assertEquals(404, reopened.get("b").statusCode);
+            assertTrue(reopened.get("b").headers.isEmpty());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void removedEntriesStayRemovedAfterReopen() throws IOException {
+        DiskCache cache = DiskCache.open(directory, MAX_BYTES);
+        cache.put("a", 1, 2, 200, HEADERS, "gone");
+        cache.put("b", 1, 2, 200, HEADERS, "kept");
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        cache.close();
+
+        DiskCache reopened = DiskCache.open(directory, MAX_BYTES);
+        try {
+            assertNull(reopened.get("a"));
+            assertEquals("kept", reopened.get("b").body);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void evictedEntriesStayEvictedAfterReopen() throws IOException {
+        String body = "x".repeat(1024 * 1024);
+        int count = 3 * DiskCache.SEGMENT_SIZE / body.length();
+        DiskCache cache = DiskCache.open(directory, MAX_BYTES);
+        List<String> kept = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                assertTrue(cache.put("key-" + i, 1, 2, 200, HEADERS, body));
+            }
+            for (int i = 0; i < count; i++) {
+                if (cache.get("key-" + i) != null) {
+                    kept.add("key-" + i);
+                }
+            }
+        } finally {
+            cache.close();
+        }
+        assertNotEquals(count, kept.size());
+
+        DiskCache reopened = DiskCache.open(directory, MAX_BYTES);
+        try {
+            for (int i = 0; i < count; i++) {
+                String key = "key-" + i;
+                assertEquals(kept.contains(key), reopened.get(key) != null, key);
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void entryWrittenAfterRemovalIsRecovered() throws IOException {
+        DiskCache cache = DiskCache.open(directory, MAX_BYTES);
+        cache.put("a", 1, 2, 200, HEADERS, "old");
+        cache.remove("a");
+        cache.put("a", 3, 4, 200, HEADERS, "new");
+        cache.close();
+
+        DiskCache reopened = DiskCache.open(directory, MAX_BYTES);
+        try {
+            assertEquals("new", reopened.get("a").body);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void recordWithoutMagicIsNotReadBack() throws IOException {
+        DiskCache cache = DiskCache.open(directory, MAX_BYTES);
+        cache.put("a", 1, 2, 200, HEADERS, "torn");
+        cache.close();
+        // a crash before the magic number was written leaves the record without it
+        try (FileChannel segment = FileChannel.open(directory.resolve("segment-0.dat"), StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.allocate(4), 0);
+        }
+
+        DiskCache reopened = DiskCache.open(directory, MAX_BYTES);
+        try {
+            assertNull(reopened.get("a"));
+            assertTrue(reopened.put("b", 1, 2, 200, HEADERS, "after"));
+        } finally {
+            reopened.close();
+        }
+        DiskCache again = DiskCache.open(directory, MAX_BYTES);
+        try {
+            assertEquals("after", again.get("b").body);
+        } finally {
+            again.close();
+        }
+    }
+
+    @Test
+    void runtimesShareOneInstancePerDirectory() throws IOException {
+        DiskCache first = DiskCache.open(directory, MAX_BYTES);
+        DiskCache second = DiskCache.open(directory.resolve(".").resolve("sub").resolve(".."), MAX_BYTES);
+        assertSame(first, second);
+
+        first.put("a", 1, 2, 200, HEADERS, "shared");
+        first.close();
+        // still open for the second user
+        assertEquals("shared", second.get("a").body);
+        second.close();
+
+        DiskCache third = DiskCache.open(directory, MAX_BYTES);
+        try {
+            assertNotSame(first, third);
+            assertEquals("shared", third.get("a").body);
+        } finally {
+            third.close();
+        }
+    }
+
+    @Test
+    void recordLargerThanSegmentIsRefused() throws IOException {
+        DiskCache cache = DiskCache.open(directory, MAX_BYTES);
+        try {
+            String body = "x".repeat(DiskCache.SEGMENT_SIZE);
+
+            assertFalse(cache.put("big", 1, 2, 200, HEADERS, body));
+            assertNull(cache.get("big"));
+        } finally {
+            cache.close();
+        }
+    }
+}
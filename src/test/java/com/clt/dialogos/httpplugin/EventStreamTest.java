@@ -0,0 +1,94 @@
+package com.clt.dialogos.httpplugin;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EventStreamTest {
+
+    private static EventStream stream(String text) {
+        return new EventStream(new StringReader(text));
+    }
+
+    @Test
+    void readsEventsInOrder() throws IOException {
+        EventStream stream = stream("data: first\n\ndata: second\n\n");
+
+        assertEquals("first", stream.next().data);
+        assertEquals("second", stream.next().data);
+        assertNull(stream.next());
+    }
+
+    @Test
+    void joinsMultiLineDataWithNewlines() throws IOException {
+        EventStream.Event event = stream("data: line one\ndata: line two\n\n").next();
+
+        assertEquals("line one\nline two", event.data);
+    }
+
+    @Test
+    void removesOnlyOneLeadingSpace() throws IOException {
+        EventStream stream = stream("data:no space\n\ndata:  two spaces\n\n");
+
+        assertEquals("no space", stream.next().data);
+        assertEquals(" two spaces", stream.next().data);
+    }
+
+    @Test
+    void keepsTypeAndDefaultsToMessage() throws IOException {
+        EventStream stream = stream("event: delta\ndata: a\n\ndata: b\n\n");
+
+        assertEquals("delta", stream.next().type);
+        assertEquals("message", stream.next().type);
+    }
+
+    @Test
+    void lastEventIdCarriesOverToLaterEvents() throws IOException {
+        EventStream stream = stream("id: 7\ndata: a\n\ndata: b\n\n");
+
+        assertEquals("7", stream.next().id);
+        assertEquals("7", stream.next().id);
+    }
+
+    @Test
+    void skipsCommentsAndUnknownFields() throws IOException {
+        EventStream.Event event = stream(": keep-alive\nretry: 1000\nfoo: bar\ndata: text\n\n").next();
+
+        assertEquals("text", event.data);
+    }
+
+    @Test
+    void skipsEventsWithoutData() throws IOException {
+        EventStream stream = stream("event: ping\n\ndata: text\n\n");
+
+        EventStream.Event event = stream.next();
+        assertEquals("text", event.data);
+        assertEquals("message", event.type);
+    }
+
+    @Test
+    void fieldWithoutColonHasEmptyValue() throws IOException {
+        EventStream.Event event = stream("data\n\n").next();
+
+        assertEquals("", event.data);
+    }
+
+    @Test
+    void handlesCarriageReturnLineEndings() throws IOException {
+        EventStream.Event event = stream("data: a\r\ndata: b\r\n\r\n").next();
+
+        assertEquals("a\nb", event.data);
+    }
+
+    @Test
+    void dropsUnterminatedEventAtEndOfStream() throws IOException {
+        EventStream stream = stream("data: complete\n\ndata: cut off");
+
+        assertEquals("complete", stream.next().data);
+        assertNull(stream.next());
+    }
+}
@@ -0,0 +1,149 @@
+package com.clt.dialogos.httpplugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonPathExtractorTest {
+
+    private static Object extract(String json, String... paths) throws IOException {
+        return new JsonPathExtractor(Arrays.asList(paths)).extract(new StringReader(json));
+    }
+
+    @Test
+    void keepsOnlyWantedValues() throws IOException {
+        JSONObject result = (JSONObject) extract(
+            "{\"id\": 7, \"user\": {\"name\": \"Ada\", \"email\": \"ada@example.com\"}, \"tags\": [\"a\", \"b\"]}",
+            "user.name", "id");
+
+        assertEquals(7, result.getInt("id"));
+        assertEquals("Ada", result.getJSONObject("user").getString("name"));
+        assertFalse(result.getJSONObject("user").has("email"));
+        assertFalse(result.has("tags"));
+    }
+
+    @Test
+    void keepsWholeValueAtPath() throws IOException {
+        JSONObject result = (JSONObject) extract("{\"user\": {\"name\": \"Ada\", \"roles\": [\"admin\", \"dev\"]}}", "user");
+
+        JSONObject user = result.getJSONObject("user");
+        assertEquals("Ada", user.getString("name"));
+        assertEquals(2, user.getJSONArray("roles").length());
+    }
+
+    @Test
+    void keepsArrayElementsAtTheirIndex() throws IOException {
+        JSONObject result = (JSONObject) extract(
+            "{\"items\": [{\"name\": \"a\"}, {\"name\": \"b\"}, {\"name\": \"c\", \"size\": 3}]}", "items[2].name");
+
+        JSONArray items = result.getJSONArray("items");
+        assertEquals(3, items.length());
+        assertTrue(items.isNull(0));
+        assertTrue(items.isNull(1));
+        assertEquals("c", items.getJSONObject(2).getString("name"));
+        assertFalse(items.getJSONObject(2).has("size"));
+    }
+
+    @Test
+    void readsTopLevelArray() throws IOException {
+        JSONArray result = (JSONArray) extract("[{\"id\": 1}, {\"id\": 2}]", "[1].id");
+
+        assertEquals(2, result.getJSONObject(1).getInt("id"));
+    }
+
+    @Test
+    void skipsStringsWithEscapesAndBrackets() throws IOException {
+        JSONObject result = (JSONObject) extract(
+            "{\"noise\": \"a \\\"quoted\\\" } ] value\", \"nested\": {\"x\": [1, {\"y\": \"\\\\\"}]}, \"wanted\": \"ok\"}",
+            "wanted");
+
+        assertEquals("ok", result.getString("wanted"));
+        assertFalse(result.has("noise"));
+        assertFalse(result.has("nested"));
+    }
+
+    @Test
+    void decodesEscapedKeysAndValues() throws IOException {
+        JSONObject result = (JSONObject) extract("{\"caf\\u00e9\": \"line\\nbreak\"}", "café");
+
+        assertEquals("line\nbreak", result.getString("café"));
+    }
+
+    @Test
+    void keepsScalarTypes() throws IOException {
+        JSONObject result = (JSONObject) extract(
+            "{\"count\": -1.5e2, \"ok\": true, \"missing\": null}", "count", "ok", "missing");
+
+        assertEquals(-150.0, result.getDouble("count"));
+        assertTrue(result.getBoolean("ok"));
+        assertTrue(result.isNull("missing"));
+    }
+
+    @Test
+    void missingPathLeavesNoEntry() throws IOException {
+        JSONObject result = (JSONObject) extract("{\"a\": {\"b\": 1}}", "a.c", "a.b.c");
+
+        assertEquals(0, result.getJSONObject("a").length());
+    }
+
+    @Test
+    void stopsReadingOnceAllPathsAreFound() throws IOException {
+        StringBuilder json = new StringBuilder("{\"first\": 1, \"rest\": [");
+        for (int i = 0; i < 10000; i++) {
+            json.append(i).append(", ");
+        }
+        json.append("0]}");
+        Reader source = new StringReader(json.toString()) {
+            private int reads = 0;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                if (++reads > 1) {
+                    throw new IOException("read past the wanted value");
+                }
+                return super.read(buffer, offset, length);
+            }
+        };
+
+        JSONObject result = (JSONObject) new JsonPathExtractor(List.of("first")).extract(source);
+
+        assertEquals(1, result.getInt("first"));
+    }
+
+    @Test
+    void emptyDocumentGivesEmptyObject() throws IOException {
+        assertEquals(0, ((JSONObject) extract("  ", "a")).length());
+    }
+
+    @Test
+    void truncatedDocumentFails() {
+        assertThrows(IOException.class, () -> extract("{\"a\": {\"b\": \"cut", "a.b"));
+    }
+
+    @Test
+    void parsesPaths() {
+        assertEquals(List.of("items", 2, "name"), JsonPathExtractor.parsePath("items[2].name"));
+        assertEquals(List.of(0, "id"), JsonPathExtractor.parsePath("$root[0].id"));
+        assertEquals(List.of("a", "b"), JsonPathExtractor.parsePath("a.b"));
+        assertEquals(List.of("matrix", 1, 0), JsonPathExtractor.parsePath("matrix[1][ 0 ]"));
+    }
+
+    @Test
+    void rejectsMalformedPaths() {
+        assertNull(JsonPathExtractor.parsePath("items[2"));
+        assertNull(JsonPathExtractor.parsePath("items[x]"));
+        assertTrue(new JsonPathExtractor(List.of("items[")).isEmpty());
+    }
+}
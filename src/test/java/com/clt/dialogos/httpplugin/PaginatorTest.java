@@ -0,0 +1,152 @@
+package com.clt.dialogos.httpplugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PaginatorTest {
+
+    private static final HttpHandler.PreparedRequest FIRST =
+        new HttpHandler.PreparedRequest("GET", "https://api.example.com/items?limit=2", Collections.emptyMap(), null, false);
+
+    private static Paginator paginator(String... properties) {
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < properties.length; i += 2) {
+            values.put(properties[i], properties[i + 1]);
+        }
+        return Paginator.fromProperties(values::get);
+    }
+
+    private static HttpHandler.HttpResult page(Object payload, Map<String, List<String>> headers) {
+        return new HttpHandler.HttpResult(true, payload.toString(), 200, null, headers, payload);
+    }
+
+    private static JSONObject cursorPage(Object cursor) {
+        JSONObject page = new JSONObject();
+        page.put("items", new JSONArray().put(1).put(2));
+        page.put("next", cursor);
+        return page;
+    }
+
+    @Test
+    void noPaginatorWithoutMode() {
+        assertNull(paginator());
+        assertNull(paginator(Paginator.MODE, Paginator.MODE_NONE));
+        assertNotNull(paginator(Paginator.MODE, Paginator.MODE_LINK));
+    }
+
+    @Test
+    void nextLinkFindsRelNextAmongEntries() {
+        Map<String, List<String>> headers = Map.of("link", List.of(
+            "<https://api.example.com/items?page=1>; rel=\"prev\", <https://api.example.com/items?page=3>; rel=\"next\""));
+
+        assertEquals("https://api.example.com/items?page=3", Paginator.nextLink(headers));
+    }
+
+    @Test
+    void nextLinkAcceptsUnquotedAndMultipleRelations() {
+        assertEquals("/p2", Paginator.nextLink(Map.of("Link", List.of("</p2>; rel=next"))));
+        assertEquals("/p2", Paginator.nextLink(Map.of("Link", List.of("</p2>; rel=\"last next\""))));
+    }
+
+    @Test
+    void nextLinkIsNullWithoutNextEntry() {
+        assertNull(Paginator.nextLink(Map.of("Link", List.of("</p1>; rel=\"prev\", </p9>; rel=\"last\""))));
+        assertNull(Paginator.nextLink(Map.of("Content-Type", List.of("application/json"))));
+        assertNull(Paginator.nextLink(Collections.emptyMap()));
+    }
+
+    @Test
+    void withQueryParameterAppendsToUrlWithoutQuery() {
+        assertEquals("https://a.example/items?cursor=abc",
+            Paginator.withQueryParameter("https://a.example/items", "cursor", "abc"));
+    }
+
+    @Test
+    void withQueryParameterReplacesExistingValue() {
+        assertEquals("https://a.example/items?limit=2&offset=4&sort=name",
+            Paginator.withQueryParameter("https://a.example/items?limit=2&offset=2&sort=name", "offset", "4"));
+    }
+
+    @Test
+    void withQueryParameterAddsToExistingQueryAndEncodes() {
+        assertEquals("https://a.example/items?limit=2&cursor=a+b%2Fc%3D",
+            Paginator.withQueryParameter("https://a.example/items?limit=2", "cursor", "a b/c="));
+    }
+
+    @Test
+    void cursorTokenGoesIntoQueryParameter() {
+        Paginator paginator = paginator(Paginator.MODE, Paginator.MODE_CURSOR, Paginator.CURSOR_PATH, "next",
+            Paginator.CURSOR_PARAM, "after");
+        JSONObject payload = cursorPage("t2");
+
+        HttpHandler.PreparedRequest next = paginator.nextRequest(FIRST, page(payload, Collections.emptyMap()), payload, 2);
+
+        assertEquals("https://api.example.com/items?limit=2&after=t2", next.url);
+        assertEquals("GET", next.method);
+    }
+
+    @Test
+    void cursorUrlIsResolvedAgainstRequest() {
+        Paginator paginator = paginator(Paginator.MODE, Paginator.MODE_CURSOR, Paginator.CURSOR_PATH, "next");
+        JSONObject payload = cursorPage("/items?page=2");
+
+        HttpHandler.PreparedRequest next = paginator.nextRequest(FIRST, page(payload, Collections.emptyMap()), payload, 2);
+
+        assertEquals("https://api.example.com/items?page=2", next.url);
+    }
+
+    @Test
+    void missingOrEmptyCursorEndsPaging() {
+        Paginator paginator = paginator(Paginator.MODE, Paginator.MODE_CURSOR, Paginator.CURSOR_PATH, "next");
+
+        for (Object cursor : new Object[]{JSONObject.NULL, "", false}) {
+            JSONObject payload = cursorPage(cursor);
+            assertNull(paginator.nextRequest(FIRST, page(payload, Collections.emptyMap()), payload, 2));
+        }
+        JSONObject withoutCursor = new JSONObject().put("items", new JSONArray());
+        assertNull(paginator.nextRequest(FIRST, page(withoutCursor, Collections.emptyMap()), withoutCursor, 0));
+    }
+
+    @Test
+    void linkModeFollowsRelativeNextLink() {
+        Paginator paginator = paginator(Paginator.MODE, Paginator.MODE_LINK);
+        JSONArray payload = new JSONArray().put(1);
+        Map<String, List<String>> headers = Map.of("Link", List.of("</items?page=2>; rel=\"next\""));
+
+        HttpHandler.PreparedRequest next = paginator.nextRequest(FIRST, page(payload, headers), payload, 1);
+
+        assertEquals("https://api.example.com/items?page=2", next.url);
+        assertNull(paginator.nextRequest(FIRST, page(payload, Collections.emptyMap()), payload, 1));
+    }
+
+    @Test
+    void offsetModeAdvancesByItemCount() {
+        Paginator paginator = paginator(Paginator.MODE, Paginator.MODE_OFFSET, Paginator.OFFSET_PARAM, "skip");
+        JSONArray payload = new JSONArray().put(1).put(2);
+
+        HttpHandler.PreparedRequest second = paginator.nextRequest(FIRST, page(payload, Collections.emptyMap()), payload, 2);
+        HttpHandler.PreparedRequest third = paginator.nextRequest(second, page(payload, Collections.emptyMap()), payload, 2);
+
+        assertEquals("https://api.example.com/items?limit=2&skip=2", second.url);
+        assertEquals("https://api.example.com/items?limit=2&skip=4", third.url);
+    }
+
+    @Test
+    void sameUrlAgainEndsPaging() {
+        Paginator paginator = paginator(Paginator.MODE, Paginator.MODE_LINK);
+        JSONArray payload = new JSONArray().put(1);
+        Map<String, List<String>> headers = Map.of("Link", List.of("<" + FIRST.url + ">; rel=\"next\""));
+
+        assertNull(paginator.nextRequest(FIRST, page(payload, headers), payload, 1));
+    }
+}
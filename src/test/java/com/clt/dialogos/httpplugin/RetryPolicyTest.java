@@ -0,0 +1,180 @@
+package com.clt.dialogos.httpplugin;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+
+    private static final HttpHandler.PreparedRequest GET =
+        new HttpHandler.PreparedRequest("GET", "https://api.example.com/items", Collections.emptyMap(), null, false);
+    private static final HttpHandler.PreparedRequest POST =
+        new HttpHandler.PreparedRequest("POST", "https://api.example.com/items", Collections.emptyMap(), "{}", false);
+
+    private static HttpHandler.HttpResult status(int statusCode, String retryAfter) {
+        Map<String, List<String>> headers = retryAfter == null
+            ? Collections.emptyMap() : Map.of("Retry-After", List.of(retryAfter));
+        return new HttpHandler.HttpResult(statusCode < 400, "", statusCode, statusCode < 400 ? null : "HTTP " + statusCode,
+            headers, null);
+    }
+
+    private static HttpHandler.HttpResult failure(Throwable cause) {
+        return HttpHandler.HttpResult.failure(0, cause.getMessage(), cause);
+    }
+
+    private static RetryPolicy policy(int maxAttempts) {
+        return new RetryPolicy(maxAttempts, "429, 503", "SocketTimeoutException", 0, 0, false);
+    }
+
+    @Test
+    void backoffStaysWithinExponentialCap() {
+        RetryPolicy policy = new RetryPolicy(5, "", "", 100, 1000, false);
+
+        for (int i = 0; i < 200; i++) {
+            long first = policy.backoff(1);
+            long third = policy.backoff(3);
+            long tenth = policy.backoff(10);
+            assertTrue(first >= 0 && first <= 100, "attempt 1: " + first);
+            assertTrue(third >= 0 && third <= 400, "attempt 3: " + third);
+            assertTrue(tenth >= 0 && tenth <= 1000, "attempt 10: " + tenth);
+        }
+    }
+
+    @Test
+    void backoffIsZeroWithoutBaseDelay() {
+        assertEquals(0, policy(3).backoff(1));
+        assertEquals(0, policy(3).backoff(30));
+    }
+
+    @Test
+    void backoffDoesNotOverflowForLateAttempts() {
+        RetryPolicy policy = new RetryPolicy(100, "", "", 1000, 5000, false);
+
+        long delay = policy.backoff(90);
+
+        assertTrue(delay >= 0 && delay <= 5000, "attempt 90: " + delay);
+    }
+
+    @Test
+    void retryAfterInSeconds() {
+        assertEquals(3000, RetryPolicy.retryAfterMillis(status(429, "3")));
+        assertEquals(120000, RetryPolicy.retryAfterMillis(status(503, " 120 ")));
+    }
+
+    @Test
+    void retryAfterAsHttpDate() {
+        String inTenSeconds = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(10));
+
+        long millis = RetryPolicy.retryAfterMillis(status(503, inTenSeconds));
+
+        // the date has whole seconds only
+        assertTrue(millis > 8000 && millis <= 10000, "wait: " + millis);
+    }
+
+    @Test
+    void retryAfterInThePastIsZero() {
+        assertEquals(0, RetryPolicy.retryAfterMillis(status(429, "Wed, 21 Oct 2015 07:28:00 GMT")));
+        assertEquals(0, RetryPolicy.retryAfterMillis(status(429, "-5")));
+    }
+
+    @Test
+    void retryAfterIgnoredForOtherStatusOrInvalidValue() {
+        assertEquals(0, RetryPolicy.retryAfterMillis(status(500, "3")));
+        assertEquals(0, RetryPolicy.retryAfterMillis(status(429, "soon")));
+        assertEquals(0, RetryPolicy.retryAfterMillis(status(429, null)));
+    }
+
+    @Test
+    void retryableStatusCodesAndExceptions() {
+        RetryPolicy policy = policy(3);
+
+        assertTrue(policy.isRetryable(status(503, null)));
+        assertFalse(policy.isRetryable(status(500, null)));
+        assertFalse(policy.isRetryable(status(200, null)));
+        assertTrue(policy.isRetryable(failure(new SocketTimeoutException("read timed out"))));
+        assertFalse(policy.isRetryable(failure(new IOException("connection reset"))));
+        assertFalse(policy.isRetryable(failure(new InterruptedException())));
+    }
+
+    @Test
+    void retriesUntilSuccess() {
+        Deque<HttpHandler.HttpResult> results = new ArrayDeque<>(List.of(status(503, null), status(429, null), status(200, null)));
+        AtomicInteger calls = new AtomicInteger();
+
+        HttpHandler.HttpResult result = policy(5).run(GET, new RetryBudget(10), null, request -> {
+            calls.incrementAndGet();
+            return results.poll();
+        });
+
+        assertTrue(result.success);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void stopsAfterMaxAttempts() {
+        AtomicInteger calls = new AtomicInteger();
+
+        HttpHandler.HttpResult result = policy(3).run(GET, new RetryBudget(10), null, request -> {
+            calls.incrementAndGet();
+            return status(503, null);
+        });
+
+        assertEquals(503, result.statusCode);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void doesNotRetryNonIdempotentRequests() {
+        AtomicInteger calls = new AtomicInteger();
+
+        policy(3).run(POST, new RetryBudget(10), null, request -> {
+            calls.incrementAndGet();
+            return status(503, null);
+        });
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void doesNotWaitLongerThanMaxDelayForRetryAfter() {
+        AtomicInteger calls = new AtomicInteger();
+
+        HttpHandler.HttpResult result = policy(3).run(GET, new RetryBudget(10), null, request -> {
+            calls.incrementAndGet();
+            return status(429, "60");
+        });
+
+        assertEquals(429, result.statusCode);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void stopsWhenBudgetIsExhausted() {
+        RetryBudget budget = new RetryBudget(0);
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            policy(5).run(GET, budget, null, request -> {
+                calls.incrementAndGet();
+                return status(503, null);
+            });
+        }
+
+        // the budget starts with ten tokens and earns none at 0%
+        assertEquals(3 + 10, calls.get());
+    }
+}